@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core;
+
+import com.couchbase.client.core.config.ClusterConfig;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import com.couchbase.client.core.env.WaitStrategyType;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.GetResponse;
+import com.couchbase.client.core.node.Node;
+import com.couchbase.client.core.util.BenchmarkConfigs;
+import com.couchbase.client.core.util.LoopbackNode;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import rx.Observable;
+import rx.functions.Action1;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full key/value request to response path of the core without a server.
+ *
+ * Requests are published into the request {@link RingBuffer}, routed by the {@link RequestHandler} and its
+ * locator, encoded and decoded by the key/value pipeline of {@link LoopbackNode}s and completed through the
+ * response {@link RingBuffer} and the {@link ResponseHandler}, wired up the same way {@link CouchbaseCore} does.
+ *
+ * The sample time mode reports percentiles (including p99) of single round trips, the throughput of the
+ * pipelined benchmark shows how many operations per second the core can push with many requests in flight.
+ * Add -prof gc to see the allocation rate.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeyValuePathBenchmark {
+
+    private static final String BUCKET = "default";
+    private static final int NUM_KEYS = 1024;
+    private static final int PIPELINE_DEPTH = 128;
+
+    private static final EventTranslatorOneArg<RequestEvent, CouchbaseRequest> REQUEST_TRANSLATOR =
+        new EventTranslatorOneArg<RequestEvent, CouchbaseRequest>() {
+            @Override
+            public void translateTo(RequestEvent event, long sequence, CouchbaseRequest request) {
+                event.setRequest(request);
+            }
+        };
+
+    private static final Action1<CouchbaseResponse> RELEASE_CONTENT = new Action1<CouchbaseResponse>() {
+        @Override
+        public void call(CouchbaseResponse response) {
+            ((GetResponse) response).content().release();
+        }
+    };
+
+    @Param({"4"})
+    public int numNodes;
+
+    @Param({"256"})
+    public int documentSize;
+
+    @Param({"BLOCKING", "YIELDING", "BUSY_SPIN"})
+    public WaitStrategyType waitStrategy;
+
+    private CoreEnvironment environment;
+    private ExecutorService executor;
+    private Disruptor<RequestEvent> requestDisruptor;
+    private Disruptor<ResponseEvent> responseDisruptor;
+    private RingBuffer<RequestEvent> requestRingBuffer;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        environment = DefaultCoreEnvironment.builder().build();
+        executor = Executors.newFixedThreadPool(2, new DefaultThreadFactory("cb-bench", true));
+
+        ClusterFacade cluster = new ClusterFacade() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <R extends CouchbaseResponse> Observable<R> send(CouchbaseRequest request) {
+                requestRingBuffer.publishEvent(REQUEST_TRANSLATOR, request);
+                return (Observable<R>) request.observable();
+            }
+        };
+
+        responseDisruptor = new Disruptor<ResponseEvent>(new ResponseEventFactory(),
+            environment.responseBufferSize(), executor, ProducerType.MULTI, waitStrategy.newWaitStrategy());
+        responseDisruptor.handleEventsWith(new ResponseHandler(environment, cluster, null));
+        responseDisruptor.start();
+        RingBuffer<ResponseEvent> responseRingBuffer = responseDisruptor.getRingBuffer();
+
+        byte[] document = new byte[documentSize];
+        Set<Node> nodes = new CopyOnWriteArraySet<Node>();
+        for (int i = 0; i < numNodes; i++) {
+            nodes.add(new LoopbackNode(BenchmarkConfigs.nodeAddress(i), BUCKET, responseRingBuffer, document));
+        }
+        ClusterConfig config = BenchmarkConfigs.cluster(BenchmarkConfigs.couchbaseBucket(BUCKET, numNodes, 1024, 1));
+
+        requestDisruptor = new Disruptor<RequestEvent>(new RequestEventFactory(),
+            environment.requestBufferSize(), executor, ProducerType.MULTI, waitStrategy.newWaitStrategy());
+        requestDisruptor.handleEventsWith(new RequestHandler(nodes, environment, Observable.just(config),
+            responseRingBuffer));
+        requestDisruptor.start();
+        requestRingBuffer = requestDisruptor.getRingBuffer();
+
+        keys = new String[NUM_KEYS];
+        for (int i = 0; i < NUM_KEYS; i++) {
+            keys[i] = "benchmark-key-" + i;
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        requestDisruptor.shutdown();
+        responseDisruptor.shutdown();
+        executor.shutdownNow();
+        environment.shutdown().toBlocking().single();
+    }
+
+    /**
+     * Per-thread position in the key space.
+     */
+    @State(Scope.Thread)
+    public static class KeyIndex {
+        int next;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    public CouchbaseResponse getRoundTrip(final KeyIndex index) {
+        GetRequest request = new GetRequest(keys[index.next++ & (NUM_KEYS - 1)], BUCKET);
+        requestRingBuffer.publishEvent(REQUEST_TRANSLATOR, request);
+        CouchbaseResponse response = request.observable().observeOn(environment.scheduler()).toBlocking().single();
+        RELEASE_CONTENT.call(response);
+        return response;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public void getPipelined(final KeyIndex index) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(PIPELINE_DEPTH);
+        Action1<CouchbaseResponse> onResponse = new Action1<CouchbaseResponse>() {
+            @Override
+            public void call(CouchbaseResponse response) {
+                RELEASE_CONTENT.call(response);
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            GetRequest request = new GetRequest(keys[index.next++ & (NUM_KEYS - 1)], BUCKET);
+            requestRingBuffer.publishEvent(REQUEST_TRANSLATOR, request);
+            request.observable().observeOn(environment.scheduler()).subscribe(onResponse);
+        }
+        latch.await();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core;
+
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import com.couchbase.client.core.message.cluster.DisconnectRequest;
+import com.couchbase.client.core.message.cluster.OpenBucketRequest;
+import com.couchbase.client.core.message.cluster.OpenBucketResponse;
+import com.couchbase.client.core.message.cluster.SeedNodesRequest;
+import com.couchbase.client.core.message.cluster.SeedNodesResponse;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.GetResponse;
+import com.couchbase.client.core.message.kv.UpsertRequest;
+import com.couchbase.client.core.message.kv.UpsertResponse;
+import com.couchbase.client.core.util.mock.MockCouchbaseCluster;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import rx.Observable;
+import rx.functions.Func1;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures key/value round trips of a fully bootstrapped {@link CouchbaseCore} over TCP against a
+ * {@link MockCouchbaseCluster}, including the network stack and server side latency if configured.
+ *
+ * Run with multiple threads (-t) to see the effect of more than one request shard. The sample time mode reports
+ * the latency percentiles, which show the effect of completing responses without the response buffer.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MockClusterBenchmark {
+
+    private static final String BUCKET = "default";
+    private static final int NUM_KEYS = 1024;
+
+    @Param({"1", "3"})
+    public int numNodes;
+
+    @Param({"0"})
+    public int latencyMicros;
+
+    @Param({"1", "4"})
+    public int requestShards;
+
+    @Param({"false", "true"})
+    public boolean responseFastPath;
+
+    private MockCouchbaseCluster mock;
+    private CoreEnvironment environment;
+    private ClusterFacade core;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        mock = MockCouchbaseCluster.builder().nodes(numNodes).partitions(1024).build().start();
+        mock.latency(latencyMicros, TimeUnit.MICROSECONDS);
+        environment = DefaultCoreEnvironment.builder()
+            .bootstrapCarrierDirectPort(mock.carrierPort())
+            .bootstrapHttpDirectPort(mock.configPort())
+            .requestShards(requestShards)
+            .responseFastPath(responseFastPath)
+            .build();
+        core = new CouchbaseCore(environment);
+        core.<SeedNodesResponse>send(new SeedNodesRequest(mock.seedNode())).flatMap(
+            new Func1<SeedNodesResponse, Observable<OpenBucketResponse>>() {
+                @Override
+                public Observable<OpenBucketResponse> call(SeedNodesResponse response) {
+                    return core.send(new OpenBucketRequest(BUCKET, mock.password()));
+                }
+            }
+        ).toBlocking().single();
+
+        keys = new String[NUM_KEYS];
+        KeyIndex index = new KeyIndex();
+        for (int i = 0; i < NUM_KEYS; i++) {
+            keys[i] = "benchmark-key-" + i;
+            upsert(index);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        core.send(new DisconnectRequest()).toBlocking().first();
+        mock.stop();
+    }
+
+    /**
+     * Per-thread position in the key space.
+     */
+    @State(Scope.Thread)
+    public static class KeyIndex {
+        int next;
+    }
+
+    @Benchmark
+    public GetResponse get(final KeyIndex index) {
+        String key = keys[index.next++ & (NUM_KEYS - 1)];
+        GetResponse response = core.<GetResponse>send(new GetRequest(key, BUCKET)).toBlocking().single();
+        response.content().release();
+        return response;
+    }
+
+    @Benchmark
+    public UpsertResponse upsert(final KeyIndex index) {
+        String key = keys[index.next++ & (NUM_KEYS - 1)];
+        UpsertResponse response = core.<UpsertResponse>send(
+            new UpsertRequest(key, Unpooled.copiedBuffer(new byte[128]), BUCKET)).toBlocking().single();
+        response.content().release();
+        return response;
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.dcp;
+
+import com.couchbase.client.core.endpoint.AbstractEndpoint;
+import com.couchbase.client.core.endpoint.kv.KeyValueFrameDecoder;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.message.dcp.DCPRequest;
+import com.couchbase.client.core.message.dcp.MutationMessage;
+import com.couchbase.client.core.message.dcp.StreamRequestRequest;
+import com.couchbase.client.core.message.dcp.StreamRequestResponse;
+import com.couchbase.client.core.util.CollectingResponseEventSink;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheClientCodec;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheObjectAggregator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures decoding a stream of DCP messages through the {@link DCPHandler}.
+ *
+ * The handler either sits behind the {@link KeyValueFrameDecoder}, like on a real {@link DCPEndpoint}, or behind
+ * the memcache codec and aggregator it used before. Run it with the GC profiler ({@code -prof gc}) to get the
+ * allocated bytes per message next to the time per message.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DCPHandlerBenchmark {
+
+    private static final String BUCKET = "default";
+    private static final int STREAM_ID = 1;
+    private static final String KEY = "benchmark-key";
+
+    @Param({"false", "true"})
+    public boolean aggregating;
+
+    @Param({"32", "1024"})
+    public int documentSize;
+
+    private EmbeddedChannel channel;
+    private byte[] mutation;
+    private byte[] snapshotMarker;
+
+    @Setup
+    public void setup() {
+        CoreEnvironment environment = mock(CoreEnvironment.class);
+        when(environment.scheduler()).thenReturn(Schedulers.immediate());
+        AbstractEndpoint endpoint = mock(AbstractEndpoint.class);
+        when(endpoint.environment()).thenReturn(environment);
+
+        CollectingResponseEventSink sink = new CollectingResponseEventSink();
+        DCPHandler handler = new DCPHandler(endpoint, sink);
+        channel = aggregating
+            ? new EmbeddedChannel(new BinaryMemcacheClientCodec(),
+                new BinaryMemcacheObjectAggregator(Integer.MAX_VALUE), handler)
+            : new EmbeddedChannel(new KeyValueFrameDecoder(), handler);
+        channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+
+        channel.writeOutbound(new StreamRequestRequest((short) 0, BUCKET));
+        Object outbound;
+        while ((outbound = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(outbound);
+        }
+        channel.writeInbound(frame(DCPHandler.OP_STREAM_REQUEST, new byte[0], new byte[0], new byte[0]));
+        StreamRequestResponse response = (StreamRequestResponse) sink.responseEvents().get(0).getMessage();
+        response.stream().subscribe(new Action1<DCPRequest>() {
+            @Override
+            public void call(final DCPRequest message) {
+                if (message instanceof MutationMessage) {
+                    ((MutationMessage) message).content().release();
+                }
+            }
+        });
+
+        byte[] mutationExtras = new byte[31];
+        mutation = toBytes(frame(DCPHandler.OP_MUTATION, mutationExtras, KEY.getBytes(), new byte[documentSize]));
+        byte[] markerExtras = new byte[20];
+        snapshotMarker = toBytes(frame(DCPHandler.OP_SNAPSHOT_MARKER, markerExtras, new byte[0], new byte[0]));
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finish();
+    }
+
+    @Benchmark
+    public void decodeMutation() {
+        channel.writeInbound(PooledByteBufAllocator.DEFAULT.buffer(mutation.length).writeBytes(mutation));
+    }
+
+    @Benchmark
+    public void decodeSnapshotMarker() {
+        channel.writeInbound(PooledByteBufAllocator.DEFAULT.buffer(snapshotMarker.length).writeBytes(snapshotMarker));
+    }
+
+    /**
+     * Builds a message of the stream as the server sends it.
+     */
+    private static ByteBuf frame(final byte opcode, final byte[] extras, final byte[] key, final byte[] value) {
+        return Unpooled.buffer()
+            .writeByte(0x80)
+            .writeByte(opcode)
+            .writeShort(key.length)
+            .writeByte(extras.length)
+            .writeByte(0)
+            .writeShort(0)
+            .writeInt(extras.length + key.length + value.length)
+            .writeInt(STREAM_ID)
+            .writeLong(0)
+            .writeBytes(extras)
+            .writeBytes(key)
+            .writeBytes(value);
+    }
+
+    private static byte[] toBytes(final ByteBuf buffer) {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.readBytes(bytes);
+        buffer.release();
+        return bytes;
+    }
+}
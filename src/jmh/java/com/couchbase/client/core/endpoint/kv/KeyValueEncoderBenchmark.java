@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.core.message.kv.BinaryRequest;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.UpsertRequest;
+import com.couchbase.client.core.util.BenchmarkEndpoint;
+import com.couchbase.client.core.util.DiscardingResponseEventSink;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheClientCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding requests through the memcache codec with writing them directly into pooled buffers.
+ *
+ * Run it with the GC profiler ({@code -prof gc}) to get the allocated bytes per operation next to the
+ * time per operation.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyValueEncoderBenchmark {
+
+    private static final String BUCKET = "default";
+
+    @Param({"false", "true"})
+    public boolean directEncoding;
+
+    @Param({"32", "1024"})
+    public int documentSize;
+
+    private EmbeddedChannel channel;
+    private Queue<BinaryRequest> sentRequests;
+    private byte[] document;
+
+    @Setup
+    public void setup() {
+        document = new byte[documentSize];
+        sentRequests = new ArrayDeque<BinaryRequest>();
+        KeyValueHandler handler = new KeyValueHandler(new BenchmarkEndpoint(BUCKET, null),
+            new DiscardingResponseEventSink(), sentRequests, directEncoding);
+        channel = directEncoding ? new EmbeddedChannel(handler)
+            : new EmbeddedChannel(new BinaryMemcacheClientCodec(), handler);
+        channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+    }
+
+    @Benchmark
+    public int encodeGet() {
+        GetRequest request = new GetRequest("benchmark-key", BUCKET);
+        request.partition((short) 512);
+        return write(request);
+    }
+
+    @Benchmark
+    public int encodeUpsert() {
+        ByteBuf content = PooledByteBufAllocator.DEFAULT.buffer(documentSize).writeBytes(document);
+        UpsertRequest request = new UpsertRequest("benchmark-key", content, BUCKET);
+        request.partition((short) 512);
+        int written = write(request);
+        content.release();
+        return written;
+    }
+
+    /**
+     * Writes the request, drains the encoded frame and forgets the request again.
+     *
+     * @param request the request to encode.
+     * @return the number of bytes encoded.
+     */
+    private int write(final BinaryRequest request) {
+        channel.writeOutbound(request);
+        int written = 0;
+        Object outbound;
+        while ((outbound = channel.readOutbound()) != null) {
+            written += ((ByteBuf) outbound).readableBytes();
+            ReferenceCountUtil.release(outbound);
+        }
+        sentRequests.clear();
+        return written;
+    }
+}
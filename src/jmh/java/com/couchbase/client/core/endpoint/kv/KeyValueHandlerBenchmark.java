@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.UpsertRequest;
+import com.couchbase.client.core.util.BenchmarkConfigs;
+import com.couchbase.client.core.util.DiscardingResponseEventSink;
+import com.couchbase.client.core.util.LoopbackNode;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding a request and decoding its response through the {@link KeyValueHandler} pipeline.
+ *
+ * The handler runs in an {@link io.netty.channel.embedded.EmbeddedChannel} together with the request encoder
+ * and the {@link KeyValueFrameDecoder}, exactly like on a real {@link KeyValueEndpoint}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyValueHandlerBenchmark {
+
+    private static final String BUCKET = "default";
+
+    @Param({"32", "1024"})
+    public int documentSize;
+
+    private LoopbackNode node;
+    private DiscardingResponseEventSink sink;
+    private byte[] document;
+
+    @Setup
+    public void setup() {
+        document = new byte[documentSize];
+        sink = new DiscardingResponseEventSink();
+        node = new LoopbackNode(BenchmarkConfigs.nodeAddress(0), BUCKET, sink, document);
+    }
+
+    @Benchmark
+    public long getRoundTrip() {
+        GetRequest request = new GetRequest("benchmark-key", BUCKET);
+        request.partition((short) 512);
+        node.send(request);
+        return sink.published();
+    }
+
+    @Benchmark
+    public long upsertRoundTrip() {
+        ByteBuf content = PooledByteBufAllocator.DEFAULT.buffer(documentSize).writeBytes(document);
+        UpsertRequest request = new UpsertRequest("benchmark-key", content, BUCKET);
+        request.partition((short) 512);
+        node.send(request);
+        return sink.published();
+    }
+}
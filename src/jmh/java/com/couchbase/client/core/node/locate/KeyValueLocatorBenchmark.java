@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.node.locate;
+
+import com.couchbase.client.core.config.ClusterConfig;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.ReplicaGetRequest;
+import com.couchbase.client.core.node.Node;
+import com.couchbase.client.core.util.BenchmarkConfigs;
+import com.couchbase.client.core.util.LoopbackNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of locating the target {@link Node} for key/value requests.
+ *
+ * Run with the gc profiler (-prof gc) to see the allocation rate per located request, which is expected to be
+ * zero (gc.alloc.rate.norm) for both masters and replicas once the partition table has been built.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyValueLocatorBenchmark {
+
+    private static final String BUCKET = "default";
+    private static final int NUM_KEYS = 1024;
+
+    @Param({"1", "4", "20"})
+    public int numNodes;
+
+    private Locator locator;
+    private Set<Node> nodes;
+    private ClusterConfig config;
+    private GetRequest[] requests;
+    private ReplicaGetRequest[] replicaRequests;
+    private int index;
+
+    @Setup
+    public void setup() {
+        locator = new KeyValueLocator();
+        config = BenchmarkConfigs.cluster(BenchmarkConfigs.couchbaseBucket(BUCKET, numNodes, 1024, 1));
+        nodes = new CopyOnWriteArraySet<Node>();
+        for (int i = 0; i < numNodes; i++) {
+            nodes.add(new LoopbackNode(BenchmarkConfigs.nodeAddress(i), BUCKET, null, new byte[0]));
+        }
+        requests = new GetRequest[NUM_KEYS];
+        for (int i = 0; i < NUM_KEYS; i++) {
+            requests[i] = new GetRequest("benchmark-key-" + i, BUCKET);
+        }
+        replicaRequests = new ReplicaGetRequest[NUM_KEYS];
+        for (int i = 0; i < NUM_KEYS; i++) {
+            replicaRequests[i] = new ReplicaGetRequest("benchmark-key-" + i, BUCKET, (short) 1);
+        }
+    }
+
+    @Benchmark
+    public Node[] locateGet() {
+        GetRequest request = requests[index++ & (NUM_KEYS - 1)];
+        return locator.locate(request, nodes, config);
+    }
+
+    @Benchmark
+    public Node[] locateReplicaGet() {
+        ReplicaGetRequest request = replicaRequests[index++ & (NUM_KEYS - 1)];
+        return locator.locate(request, nodes, config);
+    }
+
+    @Benchmark
+    public long hashKey() {
+        return KeyValueLocator.crc32(requests[index++ & (NUM_KEYS - 1)].keyBytes());
+    }
+}
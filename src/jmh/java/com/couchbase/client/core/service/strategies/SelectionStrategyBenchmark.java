@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.service.strategies;
+
+import com.couchbase.client.core.endpoint.Endpoint;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.message.view.ViewQueryRequest;
+import com.couchbase.client.core.state.LifecycleState;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import rx.Observable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link SelectionStrategy}s against endpoints with skewed latency.
+ *
+ * One of the simulated endpoints answers {@link #skew} times slower than the others. Every invocation selects an
+ * endpoint for a new request and lets time advance by one tick, in which every endpoint may complete requests
+ * at its own rate. Next to the cost of the selection itself, the {@link QueueDepth} counters track how many requests
+ * are queued in front of each new one, which is the latency the strategy causes. Both counters are reported as time
+ * per count, so the mean number of requests queued ahead is the "selections" result divided by the "queued" one.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SelectionStrategyBenchmark {
+
+    @Param({"random", "leastOutstanding"})
+    public String strategyName;
+
+    @Param({"4", "12"})
+    public int numEndpoints;
+
+    @Param({"1", "10"})
+    public int skew;
+
+    private SelectionStrategy strategy;
+    private SimulatedEndpoint[] endpoints;
+    private CouchbaseRequest request;
+    private long tick;
+
+    @Setup
+    public void setup() {
+        if ("random".equals(strategyName)) {
+            strategy = new RandomSelectionStrategy();
+        } else if ("leastOutstanding".equals(strategyName)) {
+            strategy = new LeastOutstandingSelectionStrategy();
+        } else {
+            throw new IllegalArgumentException("Unknown strategy " + strategyName);
+        }
+
+        // all endpoints together complete more requests per tick than arrive, so only the skew causes queueing
+        int period = Math.max(1, numEndpoints / 2);
+        endpoints = new SimulatedEndpoint[numEndpoints];
+        endpoints[0] = new SimulatedEndpoint(period * skew);
+        for (int i = 1; i < numEndpoints; i++) {
+            endpoints[i] = new SimulatedEndpoint(period);
+        }
+        request = new ViewQueryRequest("design", "view", false, "", "default", null);
+    }
+
+    @Benchmark
+    public Endpoint select(final QueueDepth depth) {
+        SimulatedEndpoint selected = (SimulatedEndpoint) strategy.select(request, endpoints);
+        depth.queued += selected.outstanding++;
+        depth.selections++;
+
+        tick++;
+        for (SimulatedEndpoint endpoint : endpoints) {
+            if (endpoint.outstanding > 0 && tick % endpoint.period == 0) {
+                endpoint.outstanding--;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Counts the selections and the requests queued in front of them, reported next to the primary result.
+     */
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class QueueDepth {
+
+        public long selections;
+        public long queued;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            selections = 0;
+            queued = 0;
+        }
+    }
+
+    /**
+     * A connected endpoint which completes one outstanding request every given number of ticks.
+     */
+    static class SimulatedEndpoint implements Endpoint {
+
+        private final int period;
+        private int outstanding;
+
+        SimulatedEndpoint(final int period) {
+            this.period = period;
+        }
+
+        @Override
+        public Observable<LifecycleState> connect() {
+            return Observable.just(LifecycleState.CONNECTED);
+        }
+
+        @Override
+        public Observable<LifecycleState> disconnect() {
+            return Observable.just(LifecycleState.DISCONNECTED);
+        }
+
+        @Override
+        public void send(final CouchbaseRequest request) {
+            throw new UnsupportedOperationException("The SimulatedEndpoint does not send requests.");
+        }
+
+        @Override
+        public int outstandingRequests() {
+            return outstanding;
+        }
+
+        @Override
+        public Observable<LifecycleState> states() {
+            return Observable.just(LifecycleState.CONNECTED);
+        }
+
+        @Override
+        public LifecycleState state() {
+            return LifecycleState.CONNECTED;
+        }
+
+        @Override
+        public boolean isState(final LifecycleState state) {
+            return state == LifecycleState.CONNECTED;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util;
+
+import com.couchbase.client.core.config.BucketConfig;
+import com.couchbase.client.core.config.ClusterConfig;
+import com.couchbase.client.core.config.CouchbaseBucketConfig;
+import com.couchbase.client.core.config.DefaultClusterConfig;
+import com.couchbase.client.core.config.parser.BucketConfigParser;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Generates synthetic cluster configurations so benchmarks do not depend on a running server.
+ *
+ * All nodes are placed on loopback addresses (127.0.0.1, 127.0.0.2, ...), so no name resolution is
+ * involved when the configuration gets parsed.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public final class BenchmarkConfigs {
+
+    private BenchmarkConfigs() {
+    }
+
+    /**
+     * Returns the loopback address used for the node at the given index.
+     *
+     * @param index the index of the node.
+     * @return the address of the node.
+     */
+    public static InetAddress nodeAddress(final int index) {
+        try {
+            return InetAddress.getByName("127.0.0." + (index + 1));
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Could not build loopback address for node " + index, e);
+        }
+    }
+
+    /**
+     * Creates a couchbase bucket configuration with the partitions spread evenly across all nodes.
+     *
+     * @param bucket the name of the bucket.
+     * @param numNodes the number of nodes in the cluster.
+     * @param numPartitions the number of partitions (vbuckets), needs to be a power of two.
+     * @param numReplicas the number of replicas per partition.
+     * @return the parsed bucket configuration.
+     */
+    public static CouchbaseBucketConfig couchbaseBucket(final String bucket, final int numNodes,
+        final int numPartitions, final int numReplicas) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"rev\":1,\"name\":\"").append(bucket).append("\",\"nodeLocator\":\"vbucket\",")
+            .append("\"uri\":\"/pools/default/buckets/").append(bucket).append("\",")
+            .append("\"streamingUri\":\"/pools/default/bucketsStreaming/").append(bucket).append("\",")
+            .append("\"nodes\":[");
+        for (int i = 0; i < numNodes; i++) {
+            String host = nodeAddress(i).getHostAddress();
+            json.append(i == 0 ? "" : ",")
+                .append("{\"couchApiBase\":\"http://").append(host).append(":8092/").append(bucket).append("\",")
+                .append("\"hostname\":\"").append(host).append(":8091\",")
+                .append("\"ports\":{\"direct\":11210}}");
+        }
+        json.append("],\"vBucketServerMap\":{\"hashAlgorithm\":\"CRC\",\"numReplicas\":").append(numReplicas)
+            .append(",\"serverList\":[");
+        for (int i = 0; i < numNodes; i++) {
+            json.append(i == 0 ? "" : ",").append('"').append(nodeAddress(i).getHostAddress()).append(":11210\"");
+        }
+        json.append("],\"vBucketMap\":[");
+        for (int p = 0; p < numPartitions; p++) {
+            json.append(p == 0 ? "[" : ",[").append(p % numNodes);
+            for (int r = 1; r <= numReplicas; r++) {
+                json.append(',').append(r < numNodes ? (p + r) % numNodes : -1);
+            }
+            json.append(']');
+        }
+        json.append("]}}");
+        return (CouchbaseBucketConfig) BucketConfigParser.parse(json.toString());
+    }
+
+    /**
+     * Wraps the given bucket configurations into a {@link ClusterConfig}.
+     *
+     * @param configs the bucket configurations.
+     * @return the cluster configuration.
+     */
+    public static ClusterConfig cluster(final BucketConfig... configs) {
+        ClusterConfig cluster = new DefaultClusterConfig();
+        for (BucketConfig config : configs) {
+            cluster.setBucketConfig(config.name(), config);
+        }
+        return cluster;
+    }
+}
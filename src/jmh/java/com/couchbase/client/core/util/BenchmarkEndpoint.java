@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util;
+
+import com.couchbase.client.core.endpoint.AbstractEndpoint;
+import io.netty.channel.ChannelPipeline;
+
+/**
+ * An {@link AbstractEndpoint} which never connects, used as the endpoint reference for handlers
+ * which are driven through an {@link io.netty.channel.embedded.EmbeddedChannel}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class BenchmarkEndpoint extends AbstractEndpoint {
+
+    /**
+     * Creates a new {@link BenchmarkEndpoint}.
+     *
+     * @param bucket the name of the bucket.
+     * @param password the password of the bucket.
+     */
+    public BenchmarkEndpoint(final String bucket, final String password) {
+        super(bucket, password, null);
+    }
+
+    @Override
+    protected void customEndpointHandlers(final ChannelPipeline pipeline) {
+        throw new UnsupportedOperationException("The BenchmarkEndpoint does not connect.");
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util;
+
+import com.couchbase.client.core.ResponseEvent;
+import com.couchbase.client.core.message.kv.BinaryResponse;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+
+/**
+ * A {@link CollectingResponseEventSink} which does not hold on to the published events, but releases their
+ * content right away so that benchmarks can run for an arbitrary number of iterations.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class DiscardingResponseEventSink extends CollectingResponseEventSink {
+
+    /**
+     * The event which is reused for every translation.
+     */
+    private final ResponseEvent event = new ResponseEvent();
+
+    /**
+     * The number of events published so far.
+     */
+    private long published;
+
+    @Override
+    public <A, B> void publishEvent(EventTranslatorTwoArg<ResponseEvent, A, B> translator, A arg0, B arg1) {
+        translator.translateTo(event, published++, arg0, arg1);
+        if (event.getMessage() instanceof BinaryResponse) {
+            BinaryResponse response = (BinaryResponse) event.getMessage();
+            if (response.content() != null && response.content().refCnt() > 0) {
+                response.content().release();
+            }
+        }
+        event.setMessage(null);
+        event.setObservable(null);
+    }
+
+    /**
+     * Returns the number of events published into this sink.
+     *
+     * @return the number of published events.
+     */
+    public long published() {
+        return published;
+    }
+}
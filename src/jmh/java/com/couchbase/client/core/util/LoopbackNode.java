@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util;
+
+import com.couchbase.client.core.ResponseEvent;
+import com.couchbase.client.core.endpoint.kv.KeyValueFrameDecoder;
+import com.couchbase.client.core.endpoint.kv.KeyValueHandler;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.message.internal.AddServiceRequest;
+import com.couchbase.client.core.message.internal.RemoveServiceRequest;
+import com.couchbase.client.core.message.internal.SignalFlush;
+import com.couchbase.client.core.node.Node;
+import com.couchbase.client.core.service.Service;
+import com.couchbase.client.core.state.LifecycleState;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequestEncoder;
+import com.lmax.disruptor.EventSink;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import rx.Observable;
+
+import java.net.InetAddress;
+
+/**
+ * A {@link Node} which runs the full key/value pipeline inside an {@link EmbeddedChannel} and answers every
+ * request itself, so that the complete encode and decode path can be measured without a server.
+ *
+ * Every encoded request frame written by the {@link KeyValueHandler} is answered with a successful response
+ * carrying the same opcode and opaque. Reads return the configured document, all other operations return
+ * an empty body. Everything happens synchronously on the thread calling {@link #send(CouchbaseRequest)}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class LoopbackNode implements Node {
+
+    /**
+     * The size of the binary protocol header.
+     */
+    private static final int HEADER_SIZE = 24;
+
+    private final InetAddress hostname;
+    private final EmbeddedChannel channel;
+    private final ByteBuf cumulation;
+    private final byte[] document;
+
+    /**
+     * Creates a new {@link LoopbackNode}.
+     *
+     * @param hostname the hostname of the node.
+     * @param bucket the name of the bucket served.
+     * @param responseBuffer where decoded responses are published into.
+     * @param document the document returned for all read operations.
+     */
+    public LoopbackNode(final InetAddress hostname, final String bucket,
+        final EventSink<ResponseEvent> responseBuffer, final byte[] document) {
+        this.hostname = hostname;
+        this.document = document;
+        this.cumulation = PooledByteBufAllocator.DEFAULT.heapBuffer();
+        this.channel = new EmbeddedChannel(
+            new BinaryMemcacheRequestEncoder(),
+            new KeyValueFrameDecoder(),
+            new KeyValueHandler(new BenchmarkEndpoint(bucket, null), responseBuffer)
+        );
+        channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+    }
+
+    @Override
+    public void send(final CouchbaseRequest request) {
+        if (request instanceof SignalFlush) {
+            return;
+        }
+
+        channel.writeOutbound(request);
+        Object outbound;
+        while ((outbound = channel.readOutbound()) != null) {
+            ByteBuf buf = (ByteBuf) outbound;
+            cumulation.writeBytes(buf);
+            buf.release();
+        }
+        answerCompleteFrames();
+    }
+
+    /**
+     * Answers all complete request frames in the cumulation buffer and feeds the responses back in.
+     */
+    private void answerCompleteFrames() {
+        while (cumulation.readableBytes() >= HEADER_SIZE) {
+            int start = cumulation.readerIndex();
+            int bodyLength = cumulation.getInt(start + 8);
+            if (cumulation.readableBytes() < HEADER_SIZE + bodyLength) {
+                break;
+            }
+
+            byte opcode = cumulation.getByte(start + 1);
+            int opaque = cumulation.getInt(start + 12);
+            cumulation.skipBytes(HEADER_SIZE + bodyLength);
+            channel.writeInbound(response(opcode, opaque));
+        }
+        cumulation.discardSomeReadBytes();
+    }
+
+    /**
+     * Creates a successful response frame for the given opcode.
+     *
+     * @param opcode the opcode of the request.
+     * @param opaque the opaque of the request.
+     * @return the encoded response.
+     */
+    private ByteBuf response(final byte opcode, final int opaque) {
+        boolean read = opcode == KeyValueHandler.OP_GET || opcode == KeyValueHandler.OP_GET_AND_LOCK
+            || opcode == KeyValueHandler.OP_GET_AND_TOUCH || opcode == KeyValueHandler.OP_GET_REPLICA;
+        int extrasLength = read ? 4 : 0;
+        int valueLength = read ? document.length : 0;
+
+        ByteBuf response = channel.alloc().buffer(HEADER_SIZE + extrasLength + valueLength);
+        response
+            .writeByte(0x81)
+            .writeByte(opcode)
+            .writeShort(0)
+            .writeByte(extrasLength)
+            .writeByte(0)
+            .writeShort(0)
+            .writeInt(extrasLength + valueLength)
+            .writeInt(opaque)
+            .writeLong(1L);
+        if (read) {
+            response.writeInt(0);
+            response.writeBytes(document);
+        }
+        return response;
+    }
+
+    @Override
+    public InetAddress hostname() {
+        return hostname;
+    }
+
+    @Override
+    public Observable<LifecycleState> connect() {
+        return Observable.just(LifecycleState.CONNECTED);
+    }
+
+    @Override
+    public Observable<LifecycleState> disconnect() {
+        return Observable.just(LifecycleState.DISCONNECTED);
+    }
+
+    @Override
+    public Observable<Service> addService(final AddServiceRequest request) {
+        return Observable.just((Service) null);
+    }
+
+    @Override
+    public Observable<Service> removeService(final RemoveServiceRequest request) {
+        return Observable.just((Service) null);
+    }
+
+    @Override
+    public Observable<LifecycleState> states() {
+        return Observable.just(LifecycleState.CONNECTED);
+    }
+
+    @Override
+    public LifecycleState state() {
+        return LifecycleState.CONNECTED;
+    }
+
+    @Override
+    public boolean isState(final LifecycleState state) {
+        return state == LifecycleState.CONNECTED;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core;
+
+import com.couchbase.client.core.env.BackpressureStrategy;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.metrics.CoreMetrics;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.RingBuffer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides if and how requests get admitted into their request {@link RingBuffer}, according to the configured
+ * {@link BackpressureStrategy}.
+ *
+ * Every rejected request is counted in the {@link CoreMetrics}, under {@link #REJECTED_FULL} if the RingBuffer had
+ * no free slot and under {@link #REJECTED_RATE_LIMITED} if the token bucket of its bucket was empty.
+ *
+ * Retried requests bypass the strategy: they have been admitted once already and are sent from the shared retry
+ * worker, which must neither wait for a free slot nor have its retries rate limited. A retry which finds the
+ * RingBuffer full is rejected right away.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+class AdmissionController {
+
+    /**
+     * Counts the requests rejected because the request RingBuffer was full.
+     */
+    static final String REJECTED_FULL = "request.rejected.bufferFull";
+
+    /**
+     * Counts the requests rejected by the token bucket limiter.
+     */
+    static final String REJECTED_RATE_LIMITED = "request.rejected.rateLimited";
+
+    private final BackpressureStrategy strategy;
+    private final long maxWaitNanos;
+    private final int tokenBucketRate;
+    private final int tokenBucketCapacity;
+    private final CoreMetrics metrics;
+    private final ConcurrentMap<String, TokenBucket> tokenBuckets;
+
+    /**
+     * Creates a new {@link AdmissionController}.
+     *
+     * @param environment the environment to read the strategy and its settings from.
+     * @param metrics the metrics to count rejections into.
+     */
+    AdmissionController(final CoreEnvironment environment, final CoreMetrics metrics) {
+        this.strategy = environment.backpressureStrategy();
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(environment.backpressureMaxWaitMicros());
+        this.tokenBucketRate = environment.tokenBucketRate();
+        this.tokenBucketCapacity = environment.tokenBucketCapacity();
+        this.metrics = metrics;
+        this.tokenBuckets = new ConcurrentHashMap<String, TokenBucket>();
+    }
+
+    /**
+     * Tries to publish the request into the given {@link RingBuffer}.
+     *
+     * @param ringBuffer the ringbuffer of the request shard.
+     * @param translator the translator to publish with.
+     * @param request the request to publish.
+     * @param <E> the type of the events.
+     * @return true if the request got published, false if it has been rejected.
+     */
+    <E> boolean publish(final RingBuffer<E> ringBuffer, final EventTranslatorOneArg<E, CouchbaseRequest> translator,
+        final CouchbaseRequest request) {
+        if (request.retryCount() > 0) {
+            if (ringBuffer.tryPublishEvent(translator, request)) {
+                return true;
+            }
+            metrics.increment(REJECTED_FULL);
+            return false;
+        }
+
+        if (strategy == BackpressureStrategy.TOKEN_BUCKET && !tokenBucket(request.bucket()).tryAcquire()) {
+            metrics.increment(REJECTED_RATE_LIMITED);
+            return false;
+        }
+
+        if (ringBuffer.tryPublishEvent(translator, request)) {
+            return true;
+        }
+
+        if (strategy == BackpressureStrategy.BOUNDED_WAIT && maxWaitNanos > 0) {
+            long deadline = System.nanoTime() + maxWaitNanos;
+            do {
+                Thread.yield();
+                if (ringBuffer.tryPublishEvent(translator, request)) {
+                    return true;
+                }
+            } while (deadline - System.nanoTime() > 0);
+        }
+
+        metrics.increment(REJECTED_FULL);
+        return false;
+    }
+
+    /**
+     * Returns the token bucket for the given bucket name, creating it if needed.
+     *
+     * @param bucket the name of the bucket, might be null for cluster-wide requests.
+     * @return the token bucket.
+     */
+    private TokenBucket tokenBucket(final String bucket) {
+        String name = bucket == null ? "" : bucket;
+        TokenBucket tokenBucket = tokenBuckets.get(name);
+        if (tokenBucket == null) {
+            TokenBucket created = new TokenBucket(tokenBucketRate, tokenBucketCapacity);
+            tokenBucket = tokenBuckets.putIfAbsent(name, created);
+            if (tokenBucket == null) {
+                tokenBucket = created;
+            }
+        }
+        return tokenBucket;
+    }
+}
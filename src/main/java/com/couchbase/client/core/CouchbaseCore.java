@@ -43,6 +43,7 @@ import com.couchbase.client.core.message.cluster.OpenBucketRequest;
 import com.couchbase.client.core.message.cluster.OpenBucketResponse;
 import com.couchbase.client.core.message.cluster.SeedNodesRequest;
 import com.couchbase.client.core.message.cluster.SeedNodesResponse;
+import com.couchbase.client.core.message.dcp.DCPRequest;
 import com.couchbase.client.core.message.internal.AddNodeRequest;
 import com.couchbase.client.core.message.internal.AddNodeResponse;
 import com.couchbase.client.core.message.internal.AddServiceRequest;
@@ -52,18 +53,28 @@ import com.couchbase.client.core.message.internal.RemoveNodeRequest;
 import com.couchbase.client.core.message.internal.RemoveNodeResponse;
 import com.couchbase.client.core.message.internal.RemoveServiceRequest;
 import com.couchbase.client.core.message.internal.RemoveServiceResponse;
+import com.couchbase.client.core.message.kv.AbstractBulkRequest;
+import com.couchbase.client.core.message.kv.BinaryRequest;
+import com.couchbase.client.core.metrics.CoreMetrics;
+import com.couchbase.client.core.metrics.Gauge;
 import com.couchbase.client.core.service.Service;
 import com.couchbase.client.core.state.LifecycleState;
 import com.lmax.disruptor.EventTranslatorOneArg;
 import com.lmax.disruptor.ExceptionHandler;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import rx.Observable;
+import rx.Observer;
 import rx.functions.Func1;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The general implementation of a {@link ClusterFacade}.
@@ -95,9 +106,20 @@ public class CouchbaseCore implements ClusterFacade {
     private static final BackpressureException BACKPRESSURE_EXCEPTION = new BackpressureException();
 
     /**
-     * The {@link RequestEvent} {@link RingBuffer}.
+     * A preconstructed {@link RequestTimeoutException}.
      */
-    private final RingBuffer<RequestEvent> requestRingBuffer;
+    private static final RequestTimeoutException TIMEOUT_EXCEPTION = new RequestTimeoutException(
+        "Deadline of the request passed.");
+
+    /**
+     * The tick duration of the deadline timer in milliseconds.
+     */
+    private static final long DEADLINE_TICK_MILLIS = 10;
+
+    /**
+     * The {@link RequestEvent} {@link RingBuffer}s, one per shard.
+     */
+    private final RingBuffer<RequestEvent>[] requestRingBuffers;
 
     /**
      * The handler for all cluster nodes.
@@ -111,10 +133,25 @@ public class CouchbaseCore implements ClusterFacade {
 
     private final CoreEnvironment environment;
 
-    private final Disruptor<RequestEvent> requestDisruptor;
+    /**
+     * The metrics collected by this core.
+     */
+    private final CoreMetrics metrics;
+
+    /**
+     * Admits requests into the request {@link RingBuffer}s.
+     */
+    private final AdmissionController admissionController;
+
+    private final Disruptor<RequestEvent>[] requestDisruptors;
     private final Disruptor<ResponseEvent> responseDisruptor;
     private final ExecutorService disruptorExecutor;
 
+    /**
+     * The timer which enforces the deadlines of all requests sent through this core.
+     */
+    private final HashedWheelTimer deadlineTimer;
+
     private volatile boolean sharedEnvironment = true;
 
     /**
@@ -122,6 +159,7 @@ public class CouchbaseCore implements ClusterFacade {
      */
     static {
         BACKPRESSURE_EXCEPTION.setStackTrace(new StackTraceElement[0]);
+        TIMEOUT_EXCEPTION.setStackTrace(new StackTraceElement[0]);
     }
 
     /**
@@ -134,19 +172,33 @@ public class CouchbaseCore implements ClusterFacade {
 
     /**
      * Creates a new {@link CouchbaseCore}.
+     *
+     * One request {@link RingBuffer} is created for every configured request shard (see
+     * {@link CoreEnvironment#requestShards()}), all of them dispatched by the same {@link RequestHandler} but
+     * each one drained by its own thread. The wait strategy of the request and response {@link RingBuffer}s is
+     * taken from the environment as well. Both always use a multi producer sequencer, since requests are also
+     * published by the retry and config threads and responses by the IO threads and the request handler.
      */
     public CouchbaseCore(final CoreEnvironment environment) {
         LOGGER.info(environment.toString());
         LOGGER.debug(Diagnostics.collectAndFormat());
 
         this.environment = environment;
+        metrics = new CoreMetrics();
+        admissionController = new AdmissionController(environment, metrics);
+        deadlineTimer = new HashedWheelTimer(new DefaultThreadFactory("cb-timer", true), DEADLINE_TICK_MILLIS,
+            TimeUnit.MILLISECONDS);
         configProvider = new DefaultConfigurationProvider(this, environment);
-        disruptorExecutor = Executors.newFixedThreadPool(2, new DefaultThreadFactory("cb-core", true));
+        int requestShards = Math.max(1, environment.requestShards());
+        disruptorExecutor = Executors.newFixedThreadPool(1 + requestShards,
+            new DefaultThreadFactory("cb-core", true));
 
         responseDisruptor = new Disruptor<ResponseEvent>(
             new ResponseEventFactory(),
             environment.responseBufferSize(),
-            disruptorExecutor
+            disruptorExecutor,
+            ProducerType.MULTI,
+            environment.responseBufferWaitStrategy().newWaitStrategy()
         );
         responseDisruptor.handleExceptionsWith(new ExceptionHandler() {
             @Override
@@ -164,17 +216,13 @@ public class CouchbaseCore implements ClusterFacade {
                 LOGGER.info("Exception while shutting down Response RingBuffer {}", ex);
             }
         });
-        responseDisruptor.handleEventsWith(new ResponseHandler(environment, this, configProvider));
+        responseDisruptor.handleEventsWith(new ResponseHandler(environment, this, configProvider, metrics));
         responseDisruptor.start();
         RingBuffer<ResponseEvent> responseRingBuffer = responseDisruptor.getRingBuffer();
+        metrics.register("responseBuffer.occupancy", new RingBufferOccupancy(responseRingBuffer));
 
-        requestDisruptor = new Disruptor<RequestEvent>(
-            new RequestEventFactory(),
-            environment.requestBufferSize(),
-            disruptorExecutor
-        );
         requestHandler = new RequestHandler(environment, configProvider.configs(), responseRingBuffer);
-        requestDisruptor.handleExceptionsWith(new ExceptionHandler() {
+        ExceptionHandler requestExceptionHandler = new ExceptionHandler() {
             @Override
             public void handleEventException(Throwable ex, long sequence, Object event) {
                 LOGGER.warn("Exception while Handling Request Events {}, {}", event, ex);
@@ -189,10 +237,29 @@ public class CouchbaseCore implements ClusterFacade {
             public void handleOnShutdownException(Throwable ex) {
                 LOGGER.info("Exception while shutting down Request RingBuffer {}", ex);
             }
-        });
-        requestDisruptor.handleEventsWith(requestHandler);
-        requestDisruptor.start();
-        requestRingBuffer = requestDisruptor.getRingBuffer();
+        };
+
+        @SuppressWarnings("unchecked")
+        Disruptor<RequestEvent>[] disruptors = (Disruptor<RequestEvent>[]) new Disruptor<?>[requestShards];
+        @SuppressWarnings("unchecked")
+        RingBuffer<RequestEvent>[] ringBuffers = (RingBuffer<RequestEvent>[]) new RingBuffer<?>[requestShards];
+        requestDisruptors = disruptors;
+        requestRingBuffers = ringBuffers;
+        for (int i = 0; i < requestShards; i++) {
+            Disruptor<RequestEvent> requestDisruptor = new Disruptor<RequestEvent>(
+                new RequestEventFactory(),
+                environment.requestBufferSize(),
+                disruptorExecutor,
+                ProducerType.MULTI,
+                environment.requestBufferWaitStrategy().newWaitStrategy()
+            );
+            requestDisruptor.handleExceptionsWith(requestExceptionHandler);
+            requestDisruptor.handleEventsWith(requestHandler);
+            requestDisruptor.start();
+            requestDisruptors[i] = requestDisruptor;
+            requestRingBuffers[i] = requestDisruptor.getRingBuffer();
+            metrics.register("requestBuffer." + i + ".occupancy", new RingBufferOccupancy(requestRingBuffers[i]));
+        }
     }
 
     @Override
@@ -203,15 +270,78 @@ public class CouchbaseCore implements ClusterFacade {
         } else if (request instanceof ClusterRequest) {
             handleClusterRequest(request);
         } else {
-            boolean published = requestRingBuffer.tryPublishEvent(REQUEST_TRANSLATOR, request);
-            if (!published) {
+            boolean published = admissionController.publish(requestRingBuffer(request), REQUEST_TRANSLATOR, request);
+            if (!published && (request.retryCount() > 0 || request instanceof AbstractBulkRequest)) {
+                // the content has been kept around for the retry or handed over with a bulk, so it needs to be released
+                ResponseHandler.fail(request, BACKPRESSURE_EXCEPTION);
+            } else if (!published) {
                 request.observable().onError(BACKPRESSURE_EXCEPTION);
+            } else if (request.deadline() != 0) {
+                scheduleDeadline(request);
             }
         }
 
         return (Observable<R>) request.observable().observeOn(environment.scheduler());
     }
 
+    /**
+     * Arms the deadline timer for the given request.
+     *
+     * The timer task is attached to the request and cancelled as soon as the request completes, so the timer only
+     * holds on to requests which are still outstanding. Retried requests keep their initial deadline and are not
+     * armed again.
+     *
+     * @param request the request with a deadline.
+     */
+    private void scheduleDeadline(final CouchbaseRequest request) {
+        if (request.retryCount() > 0) {
+            return;
+        }
+        long remaining = request.deadline() - System.nanoTime();
+        DeadlineTask task = new DeadlineTask(request);
+        Timeout timeout = deadlineTimer.newTimeout(task, Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        task.timeout = timeout;
+        request.deadlineTimeout(timeout);
+        request.observable().subscribe(task);
+    }
+
+    /**
+     * Returns the metrics collected by this core, like rejected requests and the occupancy of the
+     * {@link RingBuffer}s.
+     *
+     * @return the metrics of this core.
+     */
+    public CoreMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Selects the request {@link RingBuffer} (shard) the request is published into.
+     *
+     * Key/value requests are sharded by their key and DCP requests by their partition, so that the relative
+     * order of operations on the same document or partition is kept. All other requests are sharded by bucket.
+     *
+     * @param request the request to publish.
+     * @return the ringbuffer of the shard responsible for the request.
+     */
+    private RingBuffer<RequestEvent> requestRingBuffer(final CouchbaseRequest request) {
+        int shards = requestRingBuffers.length;
+        if (shards == 1) {
+            return requestRingBuffers[0];
+        }
+
+        int hash;
+        if (request instanceof BinaryRequest && ((BinaryRequest) request).key() != null) {
+            hash = ((BinaryRequest) request).key().hashCode();
+        } else if (request instanceof DCPRequest) {
+            hash = ((DCPRequest) request).partition();
+        } else {
+            hash = request.bucket() == null ? 0 : request.bucket().hashCode();
+        }
+        hash ^= hash >>> 16;
+        return requestRingBuffers[(hash & Integer.MAX_VALUE) % shards];
+    }
+
     /**
      * Helper method to handle the cluster requests.
      *
@@ -272,9 +402,13 @@ public class CouchbaseCore implements ClusterFacade {
                 }).map(new Func1<Boolean, Boolean>() {
                     @Override
                     public Boolean call(Boolean success) {
-                        requestDisruptor.shutdown();
+                        for (Disruptor<RequestEvent> requestDisruptor : requestDisruptors) {
+                            requestDisruptor.shutdown();
+                        }
                         responseDisruptor.shutdown();
                         disruptorExecutor.shutdownNow();
+                        requestHandler.shutdown();
+                        deadlineTimer.stop();
                         return success;
                     }
                 })
@@ -346,4 +480,61 @@ public class CouchbaseCore implements ClusterFacade {
                 .onError(new IllegalArgumentException("Unknown request " + request));
         }
     }
+
+    /**
+     * Samples the number of claimed but not yet consumed slots of a {@link RingBuffer}.
+     */
+    private static class RingBufferOccupancy implements Gauge {
+
+        private final RingBuffer<?> ringBuffer;
+
+        RingBufferOccupancy(final RingBuffer<?> ringBuffer) {
+            this.ringBuffer = ringBuffer;
+        }
+
+        @Override
+        public long value() {
+            return ringBuffer.getBufferSize() - ringBuffer.remainingCapacity();
+        }
+    }
+
+    /**
+     * Fails a request once its deadline has passed, and cancels itself if the request completes before.
+     */
+    private static class DeadlineTask implements TimerTask, Observer<CouchbaseResponse> {
+
+        private final CouchbaseRequest request;
+        private volatile Timeout timeout;
+
+        DeadlineTask(final CouchbaseRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public void run(final Timeout timeout) throws Exception {
+            request.observable().onError(TIMEOUT_EXCEPTION);
+        }
+
+        @Override
+        public void onCompleted() {
+            cancel();
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            cancel();
+        }
+
+        @Override
+        public void onNext(final CouchbaseResponse response) {
+            // the timer is cancelled once the request completes.
+        }
+
+        private void cancel() {
+            Timeout armed = timeout;
+            if (armed != null) {
+                armed.cancel();
+            }
+        }
+    }
 }
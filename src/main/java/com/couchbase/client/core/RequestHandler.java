@@ -24,6 +24,7 @@ package com.couchbase.client.core;
 import com.couchbase.client.core.config.BucketConfig;
 import com.couchbase.client.core.config.ClusterConfig;
 import com.couchbase.client.core.config.NodeInfo;
+import com.couchbase.client.core.endpoint.WriteBatch;
 import com.couchbase.client.core.env.CoreEnvironment;
 import com.couchbase.client.core.logging.CouchbaseLogger;
 import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
@@ -33,10 +34,12 @@ import com.couchbase.client.core.message.config.ConfigRequest;
 import com.couchbase.client.core.message.dcp.DCPRequest;
 import com.couchbase.client.core.message.internal.AddServiceRequest;
 import com.couchbase.client.core.message.internal.RemoveServiceRequest;
-import com.couchbase.client.core.message.internal.SignalFlush;
+import com.couchbase.client.core.message.kv.AbstractBulkRequest;
+import com.couchbase.client.core.message.kv.AnyReplicaGetRequest;
 import com.couchbase.client.core.message.kv.BinaryRequest;
 import com.couchbase.client.core.message.query.QueryRequest;
 import com.couchbase.client.core.message.view.ViewRequest;
+import com.couchbase.client.core.metrics.LatencyTracker;
 import com.couchbase.client.core.node.CouchbaseNode;
 import com.couchbase.client.core.node.Node;
 import com.couchbase.client.core.node.locate.ConfigLocator;
@@ -45,12 +48,15 @@ import com.couchbase.client.core.node.locate.KeyValueLocator;
 import com.couchbase.client.core.node.locate.Locator;
 import com.couchbase.client.core.node.locate.QueryLocator;
 import com.couchbase.client.core.node.locate.ViewLocator;
+import com.couchbase.client.core.retry.RetryReason;
 import com.couchbase.client.core.service.Service;
 import com.couchbase.client.core.service.ServiceType;
 import com.couchbase.client.core.state.LifecycleState;
 import com.lmax.disruptor.EventHandler;
 import com.lmax.disruptor.RingBuffer;
 import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action0;
 import rx.functions.Action1;
 import rx.functions.Func1;
 
@@ -61,11 +67,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The {@link RequestHandler} handles the overall concept of {@link Node}s and manages them concurrently.
  *
+ * If more than one request shard is configured, the same handler drains all request ringbuffers, so
+ * {@link #onEvent(RequestEvent, long, boolean)} is called concurrently from one thread per shard.
+ *
  * @author Michael Nitschinger
  * @since 1.0
  */
@@ -81,25 +91,45 @@ public class RequestHandler implements EventHandler<RequestEvent> {
      */
     private static final int INITIAL_NODE_SIZE = 128;
 
+    /**
+     * A preconstructed {@link RequestTimeoutException}, used if the deadline passed before dispatching.
+     */
+    private static final RequestTimeoutException TIMEOUT_EXCEPTION = new RequestTimeoutException(
+        "Deadline passed before the request could be dispatched.");
+
+    /**
+     * The minimum time to wait before a hedged copy of an {@link AnyReplicaGetRequest} is sent.
+     */
+    private static final long MIN_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    static {
+        TIMEOUT_EXCEPTION.setStackTrace(new StackTraceElement[0]);
+    }
+
+    /**
+     * The response time estimates of the managed nodes.
+     */
+    private final LatencyTracker latencies = new LatencyTracker();
+
     /**
      * The node locator for the binary service.
      */
-    private final Locator binaryLocator = new KeyValueLocator();
+    private final KeyValueLocator binaryLocator = new KeyValueLocator(latencies);
 
     /**
      * The node locator for the view service.
      */
-    private final Locator viewLocator = new ViewLocator();
+    private final ViewLocator viewLocator = new ViewLocator();
 
     /**
      * The node locator for the query service.
      */
-    private final Locator queryLocator = new QueryLocator();
+    private final QueryLocator queryLocator = new QueryLocator();
 
     /**
      * The node locator for the config service.
      */
-    private final Locator configLocator = new ConfigLocator();
+    private final ConfigLocator configLocator = new ConfigLocator();
 
     /**
      * The node locator for DCP service.
@@ -126,6 +156,11 @@ public class RequestHandler implements EventHandler<RequestEvent> {
      */
     private final RingBuffer<ResponseEvent> responseBuffer;
 
+    /**
+     * The worker hedged copies of {@link AnyReplicaGetRequest}s are scheduled on, created on first use.
+     */
+    private volatile Scheduler.Worker hedgeWorker;
+
     /**
      * Create a new {@link RequestHandler}.
      */
@@ -164,14 +199,27 @@ public class RequestHandler implements EventHandler<RequestEvent> {
 
     @Override
     public void onEvent(final RequestEvent event, long sequence, final boolean endOfBatch) throws Exception {
+        final WriteBatch batch = WriteBatch.begin();
         try {
             final CouchbaseRequest request = event.getRequest();
 
+            long deadline = request.deadline();
+            if (deadline != 0 && deadline - System.nanoTime() <= 0) {
+                ResponseHandler.fail(request, TIMEOUT_EXCEPTION);
+                return;
+            }
+
             //prevent non-bootstrap requests to go through if bucket not part of config
             if (!(request instanceof BootstrapMessage)) {
                 ClusterConfig config = configuration.get();
                 if (config == null || (request.bucket() != null  && !config.hasBucket(request.bucket()))) {
-                    request.observable().onError(new BucketClosedException(request.bucket() + " has been closed"));
+                    BucketClosedException error = new BucketClosedException(request.bucket() + " has been closed");
+                    if (request instanceof AbstractBulkRequest) {
+                        // the contents of the mutations have been handed over with the bulk
+                        ResponseHandler.fail(request, error);
+                    } else {
+                        request.observable().onError(error);
+                    }
                     return;
                 }
             }
@@ -184,13 +232,22 @@ public class RequestHandler implements EventHandler<RequestEvent> {
                 return;
             }
 
+            if (request instanceof AbstractBulkRequest) {
+                dispatchBulk((AbstractBulkRequest) request);
+                return;
+            }
+            if (request instanceof AnyReplicaGetRequest) {
+                dispatchAnyReplica((AnyReplicaGetRequest) request);
+                return;
+            }
+
             Node[] found = locator(request).locate(request, nodes, configuration.get());
 
             if (found == null) {
                 return;
             }
             if (found.length == 0) {
-                responseBuffer.publishEvent(ResponseHandler.RESPONSE_TRANSLATOR, request, request.observable());
+                responseBuffer.publishEvent(ResponseHandler.RETRY_TRANSLATOR, request, RetryReason.NODE_NOT_AVAILABLE);
             }
             for (int i = 0; i < found.length; i++) {
                 try {
@@ -199,13 +256,12 @@ public class RequestHandler implements EventHandler<RequestEvent> {
                     request.observable().onError(ex);
                 }
             }
-            if (endOfBatch) {
-                for (Node node : nodes) {
-                    node.send(SignalFlush.INSTANCE);
-                }
-            }
         } finally {
             event.setRequest(null);
+            // flush even if the request itself got short-circuited, earlier ones of the batch might be pending
+            if (endOfBatch) {
+                batch.end();
+            }
         }
     }
 
@@ -236,7 +292,7 @@ public class RequestHandler implements EventHandler<RequestEvent> {
             LOGGER.debug("Node {} already registered, skipping.", hostname);
             return Observable.just(node.state());
         }
-        return addNode(new CouchbaseNode(hostname, environment, responseBuffer));
+        return addNode(new CouchbaseNode(hostname, environment, responseBuffer, latencies));
     }
 
     /**
@@ -259,6 +315,7 @@ public class RequestHandler implements EventHandler<RequestEvent> {
             public LifecycleState call(LifecycleState lifecycleState) {
                 LOGGER.debug("Connect finished, registering for use.");
                 nodes.add(node);
+                nodesChanged();
                 return lifecycleState;
             }
         });
@@ -283,9 +340,21 @@ public class RequestHandler implements EventHandler<RequestEvent> {
     Observable<LifecycleState> removeNode(final Node node) {
         LOGGER.debug("Got instructed to remove Node {}", node.hostname());
         nodes.remove(node);
+        latencies.remove(node.hostname());
+        nodesChanged();
         return node.disconnect();
     }
 
+    /**
+     * Signals all locators which keep state derived from the managed nodes that a node has been added or removed.
+     */
+    private void nodesChanged() {
+        binaryLocator.nodesChanged();
+        viewLocator.nodesChanged();
+        queryLocator.nodesChanged();
+        configLocator.nodesChanged();
+    }
+
     /**
      * Add the service to the node.
      *
@@ -327,6 +396,114 @@ public class RequestHandler implements EventHandler<RequestEvent> {
         return null;
     }
 
+    /**
+     * Splits an {@link AbstractBulkRequest} into one part per {@link Node} and sends the parts off.
+     *
+     * The keys whose node is not available are put into a part of their own and rescheduled.
+     *
+     * @param request the bulk request.
+     */
+    private void dispatchBulk(final AbstractBulkRequest request) {
+        Map<Node, int[]> grouped = binaryLocator.locate(request, nodes, configuration.get());
+        for (Map.Entry<Node, int[]> group : grouped.entrySet()) {
+            AbstractBulkRequest part = request.part(group.getValue());
+            if (group.getKey() == null) {
+                responseBuffer.publishEvent(ResponseHandler.RETRY_TRANSLATOR, part, RetryReason.NODE_NOT_AVAILABLE);
+                continue;
+            }
+            try {
+                group.getKey().send(part);
+            } catch (Exception ex) {
+                part.observable().onError(ex);
+            }
+        }
+    }
+
+    /**
+     * Sends a copy of the request to the node expected to answer fastest, and hedges it if enabled.
+     *
+     * The hedged copy goes to the next fastest node if the first one did not answer within its estimated 95th
+     * percentile of response times (but at least {@link #MIN_HEDGE_DELAY_NANOS}).
+     *
+     * @param request the request to dispatch.
+     */
+    private void dispatchAnyReplica(final AnyReplicaGetRequest request) {
+        final short[] copies = binaryLocator.locateCopies(request, nodes, configuration.get());
+        if (copies.length == 0) {
+            responseBuffer.publishEvent(ResponseHandler.RETRY_TRANSLATOR, request, RetryReason.NODE_NOT_AVAILABLE);
+            return;
+        }
+
+        Node node = sendCopy(request, copies[0]);
+        if (node == null || !request.hedged() || copies.length < 2) {
+            return;
+        }
+        long delay = Math.max(MIN_HEDGE_DELAY_NANOS, latencies.percentile95(node.hostname()));
+        hedgeWorker().schedule(new Action0() {
+            @Override
+            public void call() {
+                if (!request.done()) {
+                    sendCopy(request, copies[1]);
+                }
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sends a copy of the request reading from the given replica.
+     *
+     * @param request the request to copy.
+     * @param replica the replica to read from, 0 for the active copy.
+     * @return the node the copy has been sent to, or null if it has been rescheduled or failed.
+     */
+    private Node sendCopy(final AnyReplicaGetRequest request, final short replica) {
+        BinaryRequest copy = request.copy(replica);
+        Node[] found = binaryLocator.locate(copy, nodes, configuration.get());
+        if (found == null) {
+            return null;
+        }
+        if (found.length == 0) {
+            responseBuffer.publishEvent(ResponseHandler.RETRY_TRANSLATOR, copy, RetryReason.NODE_NOT_AVAILABLE);
+            return null;
+        }
+        try {
+            found[0].send(copy);
+            return found[0];
+        } catch (Exception ex) {
+            copy.observable().onError(ex);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the worker hedged copies are scheduled on, creating it on first use.
+     *
+     * @return the worker.
+     */
+    private Scheduler.Worker hedgeWorker() {
+        Scheduler.Worker worker = hedgeWorker;
+        if (worker == null) {
+            synchronized (this) {
+                if (hedgeWorker == null) {
+                    hedgeWorker = environment.scheduler().createWorker();
+                }
+                worker = hedgeWorker;
+            }
+        }
+        return worker;
+    }
+
+    /**
+     * Stops the worker hedged copies are scheduled on, so that pending hedges are not sent anymore.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (hedgeWorker != null) {
+                hedgeWorker.unsubscribe();
+            }
+        }
+    }
+
     /**
      * Helper method to detect the correct locator for the given request type.
      *
@@ -23,6 +23,7 @@ package com.couchbase.client.core;
 
 import com.couchbase.client.core.message.CouchbaseMessage;
 import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.retry.RetryReason;
 import rx.subjects.Subject;
 
 /**
@@ -40,6 +41,11 @@ public class ResponseEvent {
 
     private Subject<CouchbaseResponse, CouchbaseResponse> observable;
 
+    /**
+     * Why the request carried as the message needs to be retried, if it is one.
+     */
+    private RetryReason retryReason;
+
     /**
      * Set the new response as a payload for this event.
      *
@@ -69,11 +75,21 @@ public class ResponseEvent {
         return this;
     }
 
+    public RetryReason getRetryReason() {
+        return retryReason;
+    }
+
+    public ResponseEvent setRetryReason(final RetryReason retryReason) {
+        this.retryReason = retryReason;
+        return this;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("ResponseEvent{");
         sb.append("message=").append(message);
         sb.append(", observable=").append(observable);
+        sb.append(", retryReason=").append(retryReason);
         sb.append('}');
         return sb.toString();
     }
@@ -28,20 +28,73 @@ import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.CouchbaseResponse;
 import com.couchbase.client.core.message.ResponseStatus;
 import com.couchbase.client.core.message.internal.SignalConfigReload;
+import com.couchbase.client.core.message.kv.AbstractBulkRequest;
+import com.couchbase.client.core.message.kv.AppendRequest;
 import com.couchbase.client.core.message.kv.BinaryResponse;
+import com.couchbase.client.core.message.kv.BinaryStoreRequest;
+import com.couchbase.client.core.message.kv.PrependRequest;
+import com.couchbase.client.core.metrics.CoreMetrics;
+import com.couchbase.client.core.retry.ExponentialBackoffRetryStrategy;
+import com.couchbase.client.core.retry.RetryReason;
+import com.couchbase.client.core.retry.RetryStrategy;
 import com.lmax.disruptor.EventHandler;
 import com.lmax.disruptor.EventTranslatorTwoArg;
+import io.netty.buffer.ByteBuf;
 import io.netty.util.CharsetUtil;
 import rx.Scheduler;
 import rx.functions.Action0;
 import rx.subjects.Subject;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ResponseHandler implements EventHandler<ResponseEvent> {
 
+    /**
+     * The prefix of the retry counters, followed by the {@link RetryReason}.
+     */
+    public static final String RETRY_METRIC_PREFIX = "retry.";
+
+    /**
+     * Counts the requests failed because the {@link RetryStrategy} gave up on them.
+     */
+    public static final String RETRY_GIVEN_UP = "retry.givenUp";
+
+    /**
+     * Counts the requests failed because the retry budget was exhausted.
+     */
+    public static final String RETRY_BUDGET_EXHAUSTED = "retry.budgetExhausted";
+
+    /**
+     * A preconstructed {@link BackpressureException}, used if the retry budget is exhausted.
+     */
+    private static final BackpressureException BACKPRESSURE_EXCEPTION = new BackpressureException();
+
+    /**
+     * A preconstructed {@link RequestTimeoutException}, used if the deadline of a request to retry passed.
+     */
+    private static final RequestTimeoutException TIMEOUT_EXCEPTION = new RequestTimeoutException(
+        "Deadline passed while the request was waiting to be retried.");
+
+    /**
+     * The names of the retry counters, indexed by the ordinal of the {@link RetryReason}.
+     */
+    private static final String[] RETRY_METRICS = new String[RetryReason.values().length];
+
+    static {
+        BACKPRESSURE_EXCEPTION.setStackTrace(new StackTraceElement[0]);
+        TIMEOUT_EXCEPTION.setStackTrace(new StackTraceElement[0]);
+        for (RetryReason reason : RetryReason.values()) {
+            RETRY_METRICS[reason.ordinal()] = RETRY_METRIC_PREFIX + reason;
+        }
+    }
+
     private final ClusterFacade cluster;
     private final ConfigurationProvider configurationProvider;
     private final Scheduler.Worker worker;
+    private final RetryStrategy retryStrategy;
+    private final int retryBudget;
+    private final AtomicInteger pendingRetries;
+    private final CoreMetrics metrics;
 
     /**
      * Creates a new {@link ResponseHandler}.
@@ -51,9 +104,27 @@ public class ResponseHandler implements EventHandler<ResponseEvent> {
      * @param provider th configuration provider.
      */
     public ResponseHandler(CoreEnvironment environment, ClusterFacade cluster, ConfigurationProvider provider) {
+        this(environment, cluster, provider, new CoreMetrics());
+    }
+
+    /**
+     * Creates a new {@link ResponseHandler}.
+     *
+     * @param environment the global environment.
+     * @param cluster the cluster reference.
+     * @param provider th configuration provider.
+     * @param metrics the metrics to count retries into.
+     */
+    public ResponseHandler(CoreEnvironment environment, ClusterFacade cluster, ConfigurationProvider provider,
+        CoreMetrics metrics) {
         this.cluster = cluster;
         this.configurationProvider = provider;
         this.worker = environment.scheduler().createWorker();
+        this.retryStrategy = environment.retryStrategy() == null
+            ? ExponentialBackoffRetryStrategy.INSTANCE : environment.retryStrategy();
+        this.retryBudget = environment.retryBudget() > 0 ? environment.retryBudget() : Integer.MAX_VALUE;
+        this.pendingRetries = new AtomicInteger();
+        this.metrics = metrics;
     }
 
     /**
@@ -70,6 +141,21 @@ public class ResponseHandler implements EventHandler<ResponseEvent> {
             }
         };
 
+    /**
+     * Translates {@link CouchbaseRequest}s which could not be dispatched into {@link ResponseEvent}s, together
+     * with the reason why they need to be retried.
+     */
+    public static final EventTranslatorTwoArg<ResponseEvent, CouchbaseRequest, RetryReason> RETRY_TRANSLATOR =
+        new EventTranslatorTwoArg<ResponseEvent, CouchbaseRequest, RetryReason>() {
+            @Override
+            public void translateTo(ResponseEvent event, long sequence, CouchbaseRequest request,
+                RetryReason reason) {
+                event.setMessage(request);
+                event.setObservable(request.observable());
+                event.setRetryReason(reason);
+            }
+        };
+
     /**
      * Handles {@link ResponseEvent}s that come into the response RingBuffer.
      *
@@ -97,8 +183,10 @@ public class ResponseHandler implements EventHandler<ResponseEvent> {
                     case EXISTS:
                     case NOT_EXISTS:
                     case FAILURE:
-                        event.getObservable().onNext(response);
-                        event.getObservable().onCompleted();
+                        if (!discardIfTimedOut(response.request(), response)) {
+                            event.getObservable().onNext(response);
+                            event.getObservable().onCompleted();
+                        }
                         break;
                     case RETRY:
                         retry(event);
@@ -114,18 +202,21 @@ public class ResponseHandler implements EventHandler<ResponseEvent> {
         } finally {
            event.setMessage(null);
            event.setObservable(null);
+           event.setRetryReason(null);
         }
     }
 
     private void retry(final ResponseEvent event) {
         final CouchbaseMessage message = event.getMessage();
         if (message instanceof CouchbaseRequest) {
-            scheduleForRetry((CouchbaseRequest) message);
+            RetryReason reason = event.getRetryReason();
+            scheduleForRetry((CouchbaseRequest) message, reason == null ? RetryReason.NODE_NOT_AVAILABLE : reason);
         } else {
 
             CouchbaseRequest request = ((CouchbaseResponse) message).request();
             if (request != null) {
-                scheduleForRetry(request);
+                scheduleForRetry(request, message instanceof BinaryResponse
+                    ? RetryReason.NOT_MY_VBUCKET : RetryReason.SERVER_RETRY);
             } else {
                 event.getObservable().onError(new CouchbaseException("Operation failed because it does not "
                     + "support cloning."));
@@ -146,12 +237,105 @@ public class ResponseHandler implements EventHandler<ResponseEvent> {
         }
     }
 
-    private void scheduleForRetry(final CouchbaseRequest request) {
+    /**
+     * Schedules the request to be sent again, after the delay the {@link RetryStrategy} asks for.
+     *
+     * The request is failed instead if the strategy gives up on it, if too many retries are pending already or if
+     * its deadline passes before the retry would be sent.
+     *
+     * @param request the request to retry.
+     * @param reason the reason for the retry.
+     */
+    private void scheduleForRetry(final CouchbaseRequest request, final RetryReason reason) {
+        request.incrementRetryCount();
+        long delay = retryStrategy.retryDelay(request, reason);
+        if (delay < 0) {
+            metrics.increment(RETRY_GIVEN_UP);
+            fail(request, new RequestCancelledException("Could not dispatch request after "
+                + request.retryCount() + " retries (last reason " + reason + "), cancelling."));
+            return;
+        }
+
+        final long deadline = request.deadline();
+        if (deadline != 0 && deadline - System.nanoTime() - TimeUnit.MICROSECONDS.toNanos(delay) <= 0) {
+            fail(request, TIMEOUT_EXCEPTION);
+            return;
+        }
+
+        if (pendingRetries.incrementAndGet() > retryBudget) {
+            pendingRetries.decrementAndGet();
+            metrics.increment(RETRY_BUDGET_EXHAUSTED);
+            fail(request, BACKPRESSURE_EXCEPTION);
+            return;
+        }
+
+        metrics.increment(RETRY_METRICS[reason.ordinal()]);
         worker.schedule(new Action0() {
             @Override
             public void call() {
-                cluster.send(request);
+                pendingRetries.decrementAndGet();
+                if (deadline != 0 && deadline - System.nanoTime() <= 0) {
+                    fail(request, TIMEOUT_EXCEPTION);
+                } else {
+                    cluster.send(request);
+                }
             }
-        }, 10, TimeUnit.MILLISECONDS);
+        }, delay, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Fails a request which is not dispatched anymore and releases the content it kept around for the retry.
+     *
+     * A bulk root releases what its keys still hold. Parts are left alone, failing them reports into their root
+     * which releases them already.
+     *
+     * @param request the request to fail.
+     * @param error the error to fail it with.
+     */
+    static void fail(final CouchbaseRequest request, final Throwable error) {
+        ByteBuf content = null;
+        if (request instanceof BinaryStoreRequest) {
+            content = ((BinaryStoreRequest) request).content();
+        } else if (request instanceof AppendRequest) {
+            content = ((AppendRequest) request).content();
+        } else if (request instanceof PrependRequest) {
+            content = ((PrependRequest) request).content();
+        } else if (request instanceof AbstractBulkRequest) {
+            AbstractBulkRequest bulk = (AbstractBulkRequest) request;
+            if (bulk.root() == bulk) {
+                bulk.releaseOnFailure();
+            }
+        }
+        if (content != null && content.refCnt() > 0) {
+            content.release();
+        }
+        request.observable().onError(error);
+    }
+
+    /**
+     * Releases a response whose request has already been failed because its deadline passed.
+     *
+     * The observable of such a request is terminated, so the response would never reach anybody and its content
+     * would leak. Responses asking for a retry are left alone, the retry path fails them and handles the config
+     * they might carry. A bulk part also releases the responses it collected for the caller.
+     *
+     * @param request the request of the response, may be null.
+     * @param response the response.
+     * @return true if the response has been discarded.
+     */
+    public static boolean discardIfTimedOut(final CouchbaseRequest request, final CouchbaseResponse response) {
+        if (request == null || response.status() == ResponseStatus.RETRY || !request.timedOut()) {
+            return false;
+        }
+        if (response instanceof BinaryResponse) {
+            ByteBuf content = ((BinaryResponse) response).content();
+            if (content != null && content.refCnt() > 0) {
+                content.release();
+            }
+        }
+        if (request instanceof AbstractBulkRequest) {
+            ((AbstractBulkRequest) request).releaseResults();
+        }
+        return true;
     }
 }
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket which admits a sustained rate of permits plus a bounded burst.
+ *
+ * Instead of refilling a token count, the bucket tracks the theoretical arrival time of the next permit: every
+ * permit pushes it further into the future by one interval, and a permit is denied if that would move it more
+ * than the burst capacity ahead of now.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong nextFree;
+
+    /**
+     * Creates a new {@link TokenBucket}.
+     *
+     * @param ratePerSecond the sustained number of permits per second.
+     * @param capacity the number of permits which can be taken in a burst.
+     */
+    TokenBucket(final int ratePerSecond, final int capacity) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("The rate needs to be positive.");
+        }
+        this.intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        this.capacityNanos = intervalNanos * Math.max(1, capacity);
+        this.nextFree = new AtomicLong(System.nanoTime() - capacityNanos);
+    }
+
+    /**
+     * Tries to take a permit without waiting.
+     *
+     * @return true if the permit has been granted, false otherwise.
+     */
+    boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Tries to take a permit at the given time.
+     *
+     * @param now the current time in nanoseconds, as returned by {@link System#nanoTime()}.
+     * @return true if the permit has been granted, false otherwise.
+     */
+    boolean tryAcquire(final long now) {
+        while (true) {
+            long current = nextFree.get();
+            long next = Math.max(current, now - capacityNanos) + intervalNanos;
+            if (next - now > 0) {
+                return false;
+            }
+            if (nextFree.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
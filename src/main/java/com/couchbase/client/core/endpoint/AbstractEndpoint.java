@@ -30,6 +30,7 @@ import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.internal.SignalConfigReload;
 import com.couchbase.client.core.message.internal.SignalFlush;
+import com.couchbase.client.core.retry.RetryReason;
 import com.couchbase.client.core.state.AbstractStateMachine;
 import com.couchbase.client.core.state.LifecycleState;
 import com.couchbase.client.core.state.NotConnectedException;
@@ -60,6 +61,7 @@ import javax.net.ssl.SSLEngine;
 import java.net.SocketAddress;
 import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The common parent implementation for all {@link Endpoint}s.
@@ -97,10 +99,6 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
      */
     private static final NotConnectedException NOT_CONNECTED_EXCEPTION = new NotConnectedException();
 
-    /**
-     * A static listener which logs failed writes.
-     */
-    private static final WriteLogListener WRITE_LOG_LISTENER = new WriteLogListener();
 
     /**
      * The netty bootstrap adapter.
@@ -142,6 +140,21 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
      */
     private volatile boolean hasWritten;
 
+    /**
+     * Listener which logs failed writes and keeps track of the pending ones.
+     */
+    private final WriteLogListener writeListener = new WriteLogListener();
+
+    /**
+     * Number of requests written into the channel, but not yet on the wire.
+     */
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    /**
+     * Number of requests on the wire waiting for their response, as reported by the handler.
+     */
+    private volatile int inFlight;
+
     /**
      * Number of reconnects already done.
      */
@@ -205,7 +218,7 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
             .group(environment.ioPool())
             .channel(channelClass)
             .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
-            .option(ChannelOption.TCP_NODELAY, false)
+            .option(ChannelOption.TCP_NODELAY, environment.tcpNodelayEnabled())
             .handler(new ChannelInitializer<Channel>() {
                 @Override
                 protected void initChannel(Channel channel) throws Exception {
@@ -213,6 +226,10 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
                     if (environment.sslEnabled()) {
                         pipeline.addLast(new SslHandler(sslEngineFactory.get()));
                     }
+                    if (environment.flushDelay() > 0) {
+                        pipeline.addLast(new DelayedFlushHandler(environment.flushDelay(),
+                            environment.flushMaxBytes()));
+                    }
                     if (LOGGER.isTraceEnabled()) {
                         pipeline.addLast(LOGGING_HANDLER_INSTANCE);
                     }
@@ -333,15 +350,24 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
         if (state() == LifecycleState.CONNECTED) {
             if (request instanceof SignalFlush) {
                 if (hasWritten) {
-                    channel.flush();
+                    // reset before flushing, so a concurrent write from another request shard is never lost
                     hasWritten = false;
+                    channel.flush();
                 }
             } else {
                 if (channel.isActive() && channel.isWritable()) {
-                    channel.write(request).addListener(WRITE_LOG_LISTENER);
-                    hasWritten = true;
+                    WriteBatch batch = WriteBatch.current();
+                    pendingWrites.incrementAndGet();
+                    if (batch == null) {
+                        channel.writeAndFlush(request).addListener(writeListener);
+                    } else {
+                        channel.write(request).addListener(writeListener);
+                        hasWritten = true;
+                        batch.written(this);
+                    }
                 } else {
-                    responseBuffer.publishEvent(ResponseHandler.RESPONSE_TRANSLATOR, request, request.observable());
+                    responseBuffer.publishEvent(ResponseHandler.RETRY_TRANSLATOR, request,
+                        RetryReason.CHANNEL_NOT_WRITABLE);
                 }
             }
         } else {
@@ -423,6 +449,22 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
         return responseBuffer;
     }
 
+    @Override
+    public int outstandingRequests() {
+        return pendingWrites.get() + inFlight;
+    }
+
+    /**
+     * Updates the number of requests waiting for their response.
+     *
+     * Called by the {@link AbstractGenericHandler} from the event loop whenever its outstanding requests change.
+     *
+     * @param count the number of requests waiting for their response.
+     */
+    void inFlight(final int count) {
+        inFlight = count;
+    }
+
     /**
      * Simple log helper to give logs a common prefix.
      *
@@ -441,10 +483,11 @@ public abstract class AbstractEndpoint extends AbstractStateMachine<LifecycleSta
      * Note that {@link ClosedChannelException}s are ignored because they are handled
      * gracefully by the {@link AbstractGenericHandler}.
      */
-    static class WriteLogListener implements GenericFutureListener<Future<Void>> {
+    class WriteLogListener implements GenericFutureListener<Future<Void>> {
 
         @Override
         public void operationComplete(Future<Void> future) throws Exception {
+            pendingWrites.decrementAndGet();
             if (!future.isSuccess() && !(future.cause() instanceof ClosedChannelException)) {
                 LOGGER.warn("Error during IO write phase.", future.cause());
             }
@@ -30,6 +30,8 @@ import com.couchbase.client.core.logging.CouchbaseLogger;
 import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.metrics.LatencyTracker;
 import com.lmax.disruptor.EventSink;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
@@ -37,8 +39,12 @@ import io.netty.util.CharsetUtil;
 import rx.subjects.Subject;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.charset.Charset;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
 
@@ -83,6 +89,21 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
 
     private DecodingState currentDecodingState;
 
+    /**
+     * If responses which need no retry should bypass the response buffer.
+     */
+    private final boolean responseFastPath;
+
+    /**
+     * The response time estimates of the core, or null if response times are not recorded.
+     */
+    private final LatencyTracker latencies;
+
+    /**
+     * The response time estimate of the remote node, resolved with the first recorded response.
+     */
+    private LatencyTracker.Estimate latencyEstimate;
+
     /**
      * Creates a new {@link AbstractGenericHandler} with the default queue.
      *
@@ -102,10 +123,26 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
      */
     protected AbstractGenericHandler(final AbstractEndpoint endpoint, final EventSink<ResponseEvent> responseBuffer,
         final Queue<REQUEST> queue) {
+        this(endpoint, responseBuffer, queue, null);
+    }
+
+    /**
+     * Creates a new {@link AbstractGenericHandler} with a custom queue which records response times.
+     *
+     * @param endpoint the endpoint reference.
+     * @param responseBuffer the response buffer.
+     * @param queue the queue.
+     * @param latencies the response time estimates of the core, may be null.
+     */
+    protected AbstractGenericHandler(final AbstractEndpoint endpoint, final EventSink<ResponseEvent> responseBuffer,
+        final Queue<REQUEST> queue, final LatencyTracker latencies) {
         this.endpoint = endpoint;
+        this.latencies = latencies;
         this.responseBuffer = responseBuffer;
         this.sentRequestQueue = queue;
         this.currentDecodingState = DecodingState.INITIAL;
+        CoreEnvironment environment = endpoint == null ? null : endpoint.environment();
+        this.responseFastPath = environment != null && environment.responseFastPath();
     }
 
     /**
@@ -137,14 +174,15 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
     @Override
     protected void encode(ChannelHandlerContext ctx, REQUEST msg, List<Object> out) throws Exception {
         ENCODED request = encodeRequest(ctx, msg);
-        sentRequestQueue.offer(msg);
+        addSentRequest(msg, request);
+        updateInFlight();
         out.add(request);
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, RESPONSE msg, List<Object> out) throws Exception {
         if (currentDecodingState == DecodingState.INITIAL) {
-            currentRequest = sentRequestQueue.poll();
+            currentRequest = pollSentRequest(msg);
             currentDecodingState = DecodingState.STARTED;
             if (LOGGER.isTraceEnabled()) {
                 LOGGER.trace(logIdent(ctx, endpoint) + "Started decoding of " + currentRequest);
@@ -153,33 +191,163 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
 
         try {
             CouchbaseResponse response = decodeResponse(ctx, msg);
-            if (response != null) {
+            if (response != null && !ResponseHandler.discardIfTimedOut(currentRequest, response)) {
                 publishResponse(response, currentRequest.observable());
             }
         } catch (CouchbaseException e) {
-            currentRequest.observable().onError(e);
+            failCurrentRequest(ctx, e);
         } catch (Exception e) {
-            currentRequest.observable().onError(new CouchbaseException(e));
+            failCurrentRequest(ctx, new CouchbaseException(e));
         }
 
         if (currentDecodingState == DecodingState.FINISHED) {
             if (LOGGER.isTraceEnabled()) {
                 LOGGER.trace(logIdent(ctx, endpoint) + "Finished decoding of " + currentRequest);
             }
+            if (currentRequest != null && currentRequest.retryCount() == 0 && tracksLatency(currentRequest)) {
+                recordLatency(ctx, System.nanoTime() - currentRequest.creationTime());
+            }
             currentRequest = null;
             currentDecodingState = DecodingState.INITIAL;
+            updateInFlight();
+        }
+    }
+
+    /**
+     * Fails the request whose response could not be decoded.
+     *
+     * If no request belongs to the response (for example because its opaque is unknown), there is nobody to
+     * notify, so the response is dropped.
+     *
+     * @param ctx the handler context.
+     * @param cause the cause of the failure.
+     */
+    private void failCurrentRequest(final ChannelHandlerContext ctx, final CouchbaseException cause) {
+        if (currentRequest == null) {
+            LOGGER.warn(logIdent(ctx, endpoint) + "Dropping undecodable response without a request in flight.", cause);
+            finishedDecoding();
+        } else {
+            currentRequest.observable().onError(cause);
+        }
+    }
+
+    /**
+     * Decides if the response time of the given request goes into the {@link LatencyTracker} of the remote node.
+     *
+     * The response time is measured from the creation of the request, so only requests which have not been
+     * retried are recorded. The generic implementation records nothing.
+     *
+     * @param request the request whose response has been decoded.
+     * @return true if its response time should be recorded.
+     */
+    protected boolean tracksLatency(final REQUEST request) {
+        return false;
+    }
+
+    /**
+     * Records a response time for the remote node of the channel.
+     *
+     * @param ctx the handler context.
+     * @param latency the response time in nanoseconds.
+     */
+    private void recordLatency(final ChannelHandlerContext ctx, final long latency) {
+        if (latencies == null) {
+            return;
+        }
+        if (latencyEstimate == null) {
+            SocketAddress address = ctx.channel().remoteAddress();
+            if (!(address instanceof InetSocketAddress)) {
+                return;
+            }
+            latencyEstimate = latencies.estimate(((InetSocketAddress) address).getAddress());
+        }
+        latencyEstimate.record(latency);
+    }
+
+    /**
+     * Reports the number of requests waiting for their response to the endpoint.
+     *
+     * The request whose response is currently being decoded has already been taken out of the sent requests, but
+     * is still in flight until its response is complete.
+     */
+    protected void updateInFlight() {
+        if (endpoint != null) {
+            endpoint.inFlight(sentRequestCount() + (currentRequest != null ? 1 : 0));
         }
     }
 
+    /**
+     * Remembers a request which has just been encoded, so that its response can be matched later.
+     *
+     * The default implementation appends it to the queue of sent requests, which implies that responses arrive
+     * in the order the requests have been written.
+     *
+     * @param request the request which has been encoded.
+     * @param encoded the encoded request.
+     */
+    protected void addSentRequest(final REQUEST request, final ENCODED encoded) {
+        sentRequestQueue.offer(request);
+    }
+
+    /**
+     * Returns (and forgets) the sent request the given response belongs to.
+     *
+     * The default implementation takes the oldest request from the queue of sent requests.
+     *
+     * @param response the response which starts to get decoded.
+     * @return the request of the response, or null if there is none.
+     */
+    protected REQUEST pollSentRequest(final RESPONSE response) {
+        return sentRequestQueue.poll();
+    }
+
+    /**
+     * Returns the number of sent requests which wait for their response.
+     *
+     * Handlers which override {@link #addSentRequest(CouchbaseRequest, Object)} to track requests on their own
+     * need to override this method as well.
+     *
+     * @return the number of outstanding requests.
+     */
+    protected int sentRequestCount() {
+        return sentRequestQueue.size();
+    }
+
+    /**
+     * Returns (and forgets) all sent requests which wait for their response, every request only once.
+     *
+     * Handlers which override {@link #addSentRequest(CouchbaseRequest, Object)} to track requests on their own
+     * need to override this method as well.
+     *
+     * @return the outstanding requests.
+     */
+    protected Collection<REQUEST> drainSentRequests() {
+        List<REQUEST> drained = new ArrayList<REQUEST>(sentRequestQueue.size());
+        REQUEST request;
+        while ((request = sentRequestQueue.poll()) != null) {
+            drained.add(request);
+        }
+        return drained;
+    }
+
     /**
      * Publishes a response with the attached observable.
      *
+     * If the fast response path is enabled (see {@link CoreEnvironment#responseFastPath()}), every response which
+     * does not need to be retried is completed right away from the event loop. The observable is observed on the
+     * scheduler anyway, so this saves the hop through the response buffer.
+     *
      * @param response the response to publish.
      * @param observable pushing into the event sink.
      */
     protected void publishResponse(final CouchbaseResponse response,
         final Subject<CouchbaseResponse, CouchbaseResponse> observable) {
-        responseBuffer.publishEvent(ResponseHandler.RESPONSE_TRANSLATOR, response, observable);
+        if (responseFastPath && response.status() != ResponseStatus.RETRY) {
+            observable.onNext(response);
+            observable.onCompleted();
+        } else {
+            responseBuffer.publishEvent(ResponseHandler.RESPONSE_TRANSLATOR, response, observable);
+        }
     }
 
     /**
@@ -237,14 +405,14 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
      * @param ctx the handler context.
      */
     private void handleOutstandingOperations(final ChannelHandlerContext ctx) {
-        if (sentRequestQueue.isEmpty()) {
+        if (sentRequestCount() == 0) {
             LOGGER.trace(logIdent(ctx, endpoint) + "Not cancelling operations - sent queue is empty.");
             return;
         }
 
-        LOGGER.debug(logIdent(ctx, endpoint) + "Cancelling " + sentRequestQueue.size() + " outstanding requests.");
-        while (!sentRequestQueue.isEmpty()) {
-            REQUEST req = sentRequestQueue.poll();
+        Collection<REQUEST> outstanding = drainSentRequests();
+        LOGGER.debug(logIdent(ctx, endpoint) + "Cancelling " + outstanding.size() + " outstanding requests.");
+        for (REQUEST req : outstanding) {
             try {
                 sideEffectRequestToCancel(req);
                 req.observable().onError(new RequestCancelledException("Request cancelled in-flight."));
@@ -252,6 +420,7 @@ public abstract class AbstractGenericHandler<RESPONSE, ENCODED, REQUEST extends
                 LOGGER.info("Exception thrown while cancelling outstanding operation: " + req, ex);
             }
         }
+        updateInFlight();
     }
 
 
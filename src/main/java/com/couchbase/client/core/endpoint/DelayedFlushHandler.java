@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Postpones flushes of a channel for a bounded time, so that more writes are coalesced into one syscall.
+ *
+ * A flush passes right away once the configured number of bytes is pending or the channel is not writable anymore,
+ * otherwise it is postponed until the delay has passed. Since the handler only runs in the event loop of its
+ * channel, no synchronization is needed.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class DelayedFlushHandler extends ChannelOutboundHandlerAdapter {
+
+    /**
+     * The maximum delay of a flush in microseconds.
+     */
+    private final long delay;
+
+    /**
+     * The number of pending bytes which forces a flush.
+     */
+    private final int maxBytes;
+
+    /**
+     * The number of bytes written since the last flush.
+     */
+    private long pendingBytes;
+
+    /**
+     * If a delayed flush is scheduled already.
+     */
+    private boolean flushScheduled;
+
+    /**
+     * Creates a new {@link DelayedFlushHandler}.
+     *
+     * @param delay the maximum delay of a flush in microseconds.
+     * @param maxBytes the number of pending bytes which forces a flush.
+     */
+    public DelayedFlushHandler(final long delay, final int maxBytes) {
+        this.delay = delay;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise)
+        throws Exception {
+        if (msg instanceof ByteBuf) {
+            pendingBytes += ((ByteBuf) msg).readableBytes();
+        } else if (msg instanceof ByteBufHolder) {
+            pendingBytes += ((ByteBufHolder) msg).content().readableBytes();
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(final ChannelHandlerContext ctx) throws Exception {
+        if (pendingBytes >= maxBytes || !ctx.channel().isWritable()) {
+            flushNow(ctx);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushScheduled = false;
+                    flushNow(ctx);
+                }
+            }, delay, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    private void flushNow(final ChannelHandlerContext ctx) {
+        pendingBytes = 0;
+        ctx.flush();
+    }
+}
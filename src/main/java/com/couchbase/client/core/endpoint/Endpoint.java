@@ -56,4 +56,14 @@ public interface Endpoint extends Stateful<LifecycleState> {
      */
     void send(CouchbaseRequest request);
 
+    /**
+     * Returns the number of requests sent into the endpoint which did not complete yet.
+     *
+     * This includes requests still waiting to be written as well as the ones waiting for their response. The number
+     * is updated from different threads and should only be used as an estimate of the current load.
+     *
+     * @return the number of outstanding requests.
+     */
+    int outstandingRequests();
+
 }
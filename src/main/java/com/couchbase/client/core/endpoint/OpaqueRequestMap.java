@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint;
+
+import rx.functions.Func1;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the requests in flight on one connection, keyed by the opaque value they have been written with.
+ *
+ * This allows to match responses which arrive out of order. It is an open addressing hash map with linear probing
+ * on primitive int keys, so (like an {@link java.util.ArrayDeque}) it only allocates when it needs to grow.
+ * Removed entries are backward shifted instead of leaving tombstones behind.
+ *
+ * Like the queue it replaces, it is not thread safe and needs to be used from the event loop only.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class OpaqueRequestMap<R> {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Creates a new {@link OpaqueRequestMap} with the default capacity.
+     */
+    public OpaqueRequestMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new {@link OpaqueRequestMap}.
+     *
+     * @param expected the number of requests expected to be in flight at the same time.
+     */
+    public OpaqueRequestMap(final int expected) {
+        int capacity = 2;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a request under the given opaque, replacing the one which might have been stored under it.
+     *
+     * @param opaque the opaque the request has been written with.
+     * @param request the request.
+     * @return the request previously stored under the opaque, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public R put(final int opaque, final R request) {
+        if (request == null) {
+            throw new NullPointerException("Request cannot be null.");
+        }
+
+        int index = index(opaque);
+        while (values[index] != null) {
+            if (keys[index] == opaque) {
+                R old = (R) values[index];
+                values[index] = request;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = opaque;
+        values[index] = request;
+        if (++size > (mask + 1) >> 1) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the request stored under the given opaque without removing it.
+     *
+     * @param opaque the opaque to look up.
+     * @return the request or null if none is stored.
+     */
+    @SuppressWarnings("unchecked")
+    public R get(final int opaque) {
+        int index = index(opaque);
+        while (values[index] != null) {
+            if (keys[index] == opaque) {
+                return (R) values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns the request stored under the given opaque.
+     *
+     * @param opaque the opaque of the response.
+     * @return the request or null if none is stored.
+     */
+    @SuppressWarnings("unchecked")
+    public R remove(final int opaque) {
+        int index = index(opaque);
+        while (values[index] != null) {
+            if (keys[index] == opaque) {
+                R removed = (R) values[index];
+                removeAt(index);
+                return removed;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of opaques a request is stored under.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if no request is stored.
+     *
+     * @return true if the map is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries whose request matches the given predicate.
+     *
+     * @param predicate decides which requests to remove.
+     * @return the number of removed entries.
+     */
+    @SuppressWarnings("unchecked")
+    public int removeIf(final Func1<? super R, Boolean> predicate) {
+        int[] matching = null;
+        int found = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && predicate.call((R) values[i])) {
+                if (matching == null) {
+                    matching = new int[size];
+                }
+                matching[found++] = keys[i];
+            }
+        }
+        for (int i = 0; i < found; i++) {
+            remove(matching[i]);
+        }
+        return found;
+    }
+
+    /**
+     * Removes all entries and returns the requests they have been stored with.
+     *
+     * A request stored under more than one opaque (like a pipelined bulk request) is returned only once, so
+     * it can be cancelled exactly once when the channel goes away.
+     *
+     * @return the distinct requests, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public List<R> drain() {
+        List<R> drained = new ArrayList<R>(size);
+        Map<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>(size);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && seen.put(values[i], Boolean.TRUE) == null) {
+                drained.add((R) values[i]);
+            }
+            values[i] = null;
+        }
+        size = 0;
+        return drained;
+    }
+
+    private int index(final int opaque) {
+        int hash = opaque * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Clears the slot at the given index and shifts following entries of the same probe sequence back.
+     */
+    private void removeAt(int index) {
+        values[index] = null;
+        size--;
+
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            int home = index(keys[next]);
+            boolean movable = index <= next ? (home <= index || home > next) : (home <= index && home > next);
+            if (movable) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                values[next] = null;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int capacity = oldValues.length << 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = index(oldKeys[i]);
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
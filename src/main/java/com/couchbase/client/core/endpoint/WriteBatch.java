@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint;
+
+import com.couchbase.client.core.message.internal.SignalFlush;
+
+import java.util.Arrays;
+
+/**
+ * Collects the {@link Endpoint}s written to during one batch of requests, so only those get flushed at its end.
+ *
+ * A thread draining a request ringbuffer binds a batch with {@link #begin()}, which the endpoints find through
+ * {@link #current()} when a request is written on that thread, and flushes it with {@link #end()} once the batch of
+ * requests is done. The batch stays bound to the thread and is reused by the next {@link #begin()}, so a thread
+ * draining requests allocates it only once. Writes from threads without a batch are not collected.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public final class WriteBatch {
+
+    /**
+     * The batch of the current thread, if any.
+     */
+    private static final ThreadLocal<WriteBatch> CURRENT = new ThreadLocal<WriteBatch>();
+
+    /**
+     * The endpoints written to since the last flush.
+     */
+    private Endpoint[] endpoints = new Endpoint[16];
+
+    /**
+     * The number of endpoints written to since the last flush.
+     */
+    private int size;
+
+    private WriteBatch() {
+    }
+
+    /**
+     * Returns the batch of the current thread, creating and binding it if there is none.
+     *
+     * @return the batch of the current thread.
+     */
+    public static WriteBatch begin() {
+        WriteBatch batch = CURRENT.get();
+        if (batch == null) {
+            batch = new WriteBatch();
+            CURRENT.set(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the batch of the current thread.
+     *
+     * @return the batch, or null if the current thread does not collect writes.
+     */
+    public static WriteBatch current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Marks the endpoint as written to.
+     *
+     * Consecutive writes mostly go to the same few endpoints, so a linear scan over the (short) list is cheaper than
+     * hashing.
+     *
+     * @param endpoint the endpoint written to.
+     */
+    public void written(final Endpoint endpoint) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (endpoints[i] == endpoint) {
+                return;
+            }
+        }
+        if (size == endpoints.length) {
+            endpoints = Arrays.copyOf(endpoints, size << 1);
+        }
+        endpoints[size++] = endpoint;
+    }
+
+    /**
+     * Flushes all endpoints written to since the last flush.
+     */
+    public void flush() {
+        for (int i = 0; i < size; i++) {
+            endpoints[i].send(SignalFlush.INSTANCE);
+            endpoints[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Flushes all endpoints written to during the batch.
+     *
+     * The flushed slots are cleared, so the batch bound to the thread holds no references to endpoints in between.
+     */
+    public void end() {
+        flush();
+    }
+
+    /**
+     * Unbinds the batch from the current thread.
+     *
+     * This method should only be used for testing purposes.
+     */
+    static void unbind() {
+        CURRENT.remove();
+    }
+}
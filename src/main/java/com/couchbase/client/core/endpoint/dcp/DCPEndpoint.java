@@ -25,15 +25,18 @@ package com.couchbase.client.core.endpoint.dcp;
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.endpoint.kv.KeyValueAuthHandler;
+import com.couchbase.client.core.endpoint.kv.KeyValueFrameDecoder;
 import com.couchbase.client.core.env.CoreEnvironment;
-import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheClientCodec;
-import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheObjectAggregator;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequestEncoder;
 import com.lmax.disruptor.RingBuffer;
 import io.netty.channel.ChannelPipeline;
 
 /**
  * This endpoint defines the pipeline for DCP requests and responses.
  *
+ * Like on the {@link com.couchbase.client.core.endpoint.kv.KeyValueEndpoint}, incoming messages are decoded from
+ * whole frames in place, so the stream of mutations is not aggregated chunk by chunk.
+ *
  * @author Sergey Avseyev
  * @since 1.1.0
  */
@@ -47,8 +50,8 @@ public class DCPEndpoint extends AbstractEndpoint {
     @Override
     protected void customEndpointHandlers(ChannelPipeline pipeline) {
         pipeline
-                .addLast(new BinaryMemcacheClientCodec())
-                .addLast(new BinaryMemcacheObjectAggregator(Integer.MAX_VALUE))
+                .addLast(new BinaryMemcacheRequestEncoder())
+                .addLast(new KeyValueFrameDecoder())
                 .addLast(new KeyValueAuthHandler(bucket(), password()))
                 .addLast(new DCPHandler(this, responseBuffer()));
 
@@ -25,11 +25,11 @@ package com.couchbase.client.core.endpoint.dcp;
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.endpoint.AbstractGenericHandler;
+import com.couchbase.client.core.endpoint.OpaqueRequestMap;
 import com.couchbase.client.core.logging.CouchbaseLogger;
 import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseResponse;
 import com.couchbase.client.core.message.ResponseStatus;
-import com.couchbase.client.core.message.dcp.AbstractDCPRequest;
 import com.couchbase.client.core.message.dcp.DCPRequest;
 import com.couchbase.client.core.message.dcp.FailoverLogEntry;
 import com.couchbase.client.core.message.dcp.MutationMessage;
@@ -48,10 +48,10 @@ import com.lmax.disruptor.EventSink;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import rx.Scheduler;
-import rx.functions.Action1;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,18 +75,23 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
     private final Map<Integer, DCPStream> streams;
 
     /**
-     * Counter for stream identifiers.
+     * Counter for stream identifiers, starting at 1 since the opaque 0 is used by the open connection request.
      */
-    private int nextStreamId = 0;
+    private int nextStreamId = 1;
 
     /**
-     * Creates a new {@link DCPHandler} with the default queue for requests.
+     * The requests in flight keyed by their opaque, null if a plain queue is used.
+     */
+    private final OpaqueRequestMap<DCPRequest> sentRequestMap;
+
+    /**
+     * Creates a new {@link DCPHandler} which matches responses to requests by their opaque value.
      *
      * @param endpoint       the {@link AbstractEndpoint} to coordinate with.
      * @param responseBuffer the {@link EventSink} to push responses into.
      */
     public DCPHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer) {
-        this(endpoint, responseBuffer, new ArrayDeque<DCPRequest>());
+        this(endpoint, responseBuffer, new ArrayDeque<DCPRequest>(0), new OpaqueRequestMap<DCPRequest>());
     }
 
     /**
@@ -97,8 +102,45 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
      * @param queue          the queue which holds all outstanding open requests.
      */
     public DCPHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer, Queue<DCPRequest> queue) {
+        this(endpoint, responseBuffer, queue, null);
+    }
+
+    private DCPHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer, Queue<DCPRequest> queue,
+        OpaqueRequestMap<DCPRequest> requestMap) {
         super(endpoint, responseBuffer, queue);
         streams = new HashMap<Integer, DCPStream>();
+        sentRequestMap = requestMap;
+    }
+
+    @Override
+    protected void addSentRequest(final DCPRequest request, final BinaryMemcacheRequest encoded) {
+        if (sentRequestMap == null) {
+            super.addSentRequest(request, encoded);
+        } else {
+            sentRequestMap.put(encoded.getOpaque(), request);
+        }
+    }
+
+    /**
+     * Messages of open streams carry the opaque of their stream request, which has already been answered, so
+     * they are not matched to any request in flight.
+     */
+    @Override
+    protected DCPRequest pollSentRequest(final FullBinaryMemcacheResponse response) {
+        if (sentRequestMap == null) {
+            return super.pollSentRequest(response);
+        }
+        return sentRequestMap.remove(response.getOpaque());
+    }
+
+    @Override
+    protected int sentRequestCount() {
+        return sentRequestMap == null ? super.sentRequestCount() : sentRequestMap.size();
+    }
+
+    @Override
+    protected Collection<DCPRequest> drainSentRequests() {
+        return sentRequestMap == null ? super.drainSentRequests() : sentRequestMap.drain();
     }
 
     /**
@@ -178,22 +220,9 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
              */
             final DCPRequest oldRequest = currentRequest();
             final DCPStream stream = streams.get(msg.getOpaque());
-            final DCPRequest dummy = new AbstractDCPRequest(stream.bucket(), null) {
-            };
-            dummy.observable().subscribe(new Action1<CouchbaseResponse>() {
-                @Override
-                public void call(CouchbaseResponse couchbaseResponse) {
-                    // skip
-                }
-            }, new Action1<Throwable>() {
-                @Override
-                public void call(Throwable throwable) {
-                    stream.subject().onError(throwable);
-                }
-            });
             try {
-                currentRequest(dummy);
-                handleDCPRequest(ctx, msg);
+                currentRequest(stream.decodingRequest());
+                handleDCPRequest(msg);
             } finally {
                 currentRequest(oldRequest);
             }
@@ -207,8 +236,10 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
 
     /**
      * Handles incoming stream of DCP messages.
+     *
+     * The fields of the extras are read in place, without copying them first.
      */
-    private void handleDCPRequest(ChannelHandlerContext ctx, FullBinaryMemcacheResponse msg) {
+    private void handleDCPRequest(FullBinaryMemcacheResponse msg) {
         final DCPStream stream = streams.get(msg.getOpaque());
         DCPRequest request = null;
         int flags = 0;
@@ -218,13 +249,11 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
                 long startSequenceNumber = 0;
                 long endSequenceNumber = 0;
                 if (msg.getExtrasLength() > 0) {
-                    final ByteBuf extrasReleased = msg.getExtras();
-                    final ByteBuf extras = ctx.alloc().buffer(msg.getExtrasLength());
-                    extras.writeBytes(extrasReleased, extrasReleased.readerIndex(), extrasReleased.readableBytes());
-                    startSequenceNumber = extras.readLong();
-                    endSequenceNumber = extras.readLong();
-                    flags = extras.readInt();
-                    extras.release();
+                    final ByteBuf extras = msg.getExtras();
+                    final int offset = extras.readerIndex();
+                    startSequenceNumber = extras.getLong(offset);
+                    endSequenceNumber = extras.getLong(offset + 8);
+                    flags = extras.getInt(offset + 16);
                 }
                 request = new SnapshotMarkerMessage(msg.getStatus(), startSequenceNumber, endSequenceNumber,
                         flags, stream.bucket());
@@ -235,14 +264,11 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
                 int lockTime = 0;
 
                 if (msg.getExtrasLength() > 0) {
-                    final ByteBuf extrasReleased = msg.getExtras();
-                    final ByteBuf extras = ctx.alloc().buffer(msg.getExtrasLength());
-                    extras.writeBytes(extrasReleased, extrasReleased.readerIndex(), extrasReleased.readableBytes());
-                    extras.skipBytes(16); /* by_seqno, rev_seqno */
-                    flags = extras.readInt();
-                    expiration = extras.readInt();
-                    lockTime = extras.readInt();
-                    extras.release();
+                    final ByteBuf extras = msg.getExtras();
+                    final int offset = extras.readerIndex() + 16; /* by_seqno, rev_seqno */
+                    flags = extras.getInt(offset);
+                    expiration = extras.getInt(offset + 4);
+                    lockTime = extras.getInt(offset + 8);
                 }
                 request = new MutationMessage(msg.getStatus(), msg.getKey(), msg.content().retain(),
                         expiration, flags, lockTime, msg.getCAS(), stream.bucket());
@@ -266,7 +292,7 @@ public class DCPHandler extends AbstractGenericHandler<FullBinaryMemcacheRespons
         byte extrasLength = (byte) extras.readableBytes();
 
         String key = msg.connectionName();
-        short keyLength = (short) key.length();
+        short keyLength = (short) key.getBytes(CHARSET).length;
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key, extras);
         request.setOpcode(OP_OPEN_CONNECTION);
         request.setKeyLength(keyLength);
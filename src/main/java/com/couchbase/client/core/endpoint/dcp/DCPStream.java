@@ -22,7 +22,10 @@
 
 package com.couchbase.client.core.endpoint.dcp;
 
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.dcp.AbstractDCPRequest;
 import com.couchbase.client.core.message.dcp.DCPRequest;
+import rx.functions.Action1;
 import rx.subjects.PublishSubject;
 import rx.subjects.ReplaySubject;
 
@@ -37,6 +40,13 @@ public class DCPStream {
     public final String bucket;
     public final PublishSubject<DCPRequest> subject;
 
+    /**
+     * Stands in for the current request while messages of this stream get decoded, so errors reach the subject.
+     *
+     * Created once per stream instead of once per message.
+     */
+    private final DCPRequest decodingRequest;
+
     /**
      * Creates new {@link DCPStream} instance.
      *
@@ -47,6 +57,19 @@ public class DCPStream {
         this.id = id;
         this.bucket = bucket;
         subject = PublishSubject.create();
+        decodingRequest = new AbstractDCPRequest(bucket, null) {
+        };
+        decodingRequest.observable().subscribe(new Action1<CouchbaseResponse>() {
+            @Override
+            public void call(CouchbaseResponse couchbaseResponse) {
+                // skip
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                subject.onError(throwable);
+            }
+        });
     }
 
     public PublishSubject<DCPRequest> subject() {
@@ -56,4 +79,8 @@ public class DCPStream {
     public String bucket() {
         return bucket;
     }
+
+    public DCPRequest decodingRequest() {
+        return decodingRequest;
+    }
 }
@@ -24,10 +24,10 @@ package com.couchbase.client.core.endpoint.kv;
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.metrics.LatencyTracker;
 import com.lmax.disruptor.RingBuffer;
 import io.netty.channel.ChannelPipeline;
-import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheClientCodec;
-import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheObjectAggregator;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequestEncoder;
 
 /**
  * This endpoint defines the pipeline for binary requests and responses.
@@ -37,6 +37,11 @@ import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMe
  */
 public class KeyValueEndpoint extends AbstractEndpoint {
 
+    /**
+     * The response time estimates of the core, may be null.
+     */
+    private final LatencyTracker latencies;
+
     /**
      * Create a new {@link KeyValueEndpoint}.
      *
@@ -45,17 +50,30 @@ public class KeyValueEndpoint extends AbstractEndpoint {
      */
     public KeyValueEndpoint(final String hostname, final String bucket, final String password, int port,
         final CoreEnvironment env, final RingBuffer<ResponseEvent> responseBuffer) {
+        this(hostname, bucket, password, port, env, responseBuffer, null);
+    }
+
+    /**
+     * Create a new {@link KeyValueEndpoint} which records response times.
+     *
+     * @param hostname the hostname to connect on this endpoint.
+     * @param env the couchbase environment.
+     * @param latencies the response time estimates of the core, may be null.
+     */
+    public KeyValueEndpoint(final String hostname, final String bucket, final String password, int port,
+        final CoreEnvironment env, final RingBuffer<ResponseEvent> responseBuffer, final LatencyTracker latencies) {
         super(hostname, bucket, password, port, env, responseBuffer);
+        this.latencies = latencies;
     }
 
 
     @Override
     protected void customEndpointHandlers(final ChannelPipeline pipeline) {
         pipeline
-            .addLast(new BinaryMemcacheClientCodec())
-            .addLast(new BinaryMemcacheObjectAggregator(Integer.MAX_VALUE))
+            .addLast(new BinaryMemcacheRequestEncoder())
+            .addLast(new KeyValueFrameDecoder())
             .addLast(new KeyValueAuthHandler(bucket(), password()))
-            .addLast(new KeyValueHandler(this, responseBuffer()));
+            .addLast(new KeyValueHandler(this, responseBuffer(), latencies));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheObjectAggregator;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.CharsetUtil;
+
+import java.util.List;
+
+/**
+ * Decodes complete binary protocol response frames into {@link FullBinaryMemcacheResponse}s.
+ *
+ * It replaces the memcache response decoder together with the {@link BinaryMemcacheObjectAggregator}. Instead of
+ * copying the extras and the value into freshly allocated chunks and aggregating them again afterwards, it waits
+ * until a whole frame is in the cumulation buffer, reads the header fields in place and hands out retained slices
+ * of the extras and the value. Note that those slices keep the underlying read buffer alive until the response
+ * content is released.
+ *
+ * A frame whose length fields do not add up can not be skipped reliably, so the remaining bytes are discarded, the
+ * channel is closed and a {@link CorruptedFrameException} is raised.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class KeyValueFrameDecoder extends ByteToMessageDecoder {
+
+    /**
+     * The size of the binary protocol header.
+     */
+    private static final int HEADER_SIZE = 24;
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out)
+        throws Exception {
+        if (in.readableBytes() < HEADER_SIZE) {
+            return;
+        }
+
+        int start = in.readerIndex();
+        int totalBodyLength = in.getInt(start + 8);
+        int keyLength = in.getUnsignedShort(start + 2);
+        short extrasLength = in.getUnsignedByte(start + 4);
+        if (totalBodyLength < 0 || keyLength + extrasLength > totalBodyLength) {
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            throw new CorruptedFrameException("Invalid frame lengths (total body: " + totalBodyLength
+                + ", key: " + keyLength + ", extras: " + extrasLength + ").");
+        }
+        if (in.readableBytes() < HEADER_SIZE + totalBodyLength) {
+            return;
+        }
+
+        out.add(decodeFrame(in, start, totalBodyLength, keyLength, extrasLength));
+        in.skipBytes(HEADER_SIZE + totalBodyLength);
+    }
+
+    /**
+     * Decodes the complete frame starting at the given index without moving the reader index.
+     *
+     * @param in the buffer holding the frame.
+     * @param start the index where the frame starts.
+     * @param totalBodyLength the length of the body, as found in the header.
+     * @param keyLength the length of the key, as found in the header.
+     * @param extrasLength the length of the extras, as found in the header.
+     * @return the decoded response.
+     */
+    private static FullBinaryMemcacheResponse decodeFrame(final ByteBuf in, final int start,
+        final int totalBodyLength, final int keyLength, final short extrasLength) {
+        int extrasStart = start + HEADER_SIZE;
+        int keyStart = extrasStart + extrasLength;
+        int valueStart = keyStart + keyLength;
+        int valueLength = totalBodyLength - keyLength - extrasLength;
+
+        ByteBuf extras = extrasLength > 0 ? in.slice(extrasStart, extrasLength).retain() : null;
+        String key = keyLength > 0 ? in.toString(keyStart, keyLength, CharsetUtil.UTF_8) : null;
+        ByteBuf content = valueLength > 0 ? in.slice(valueStart, valueLength).retain() : Unpooled.EMPTY_BUFFER;
+
+        FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse(key, extras, content);
+        response
+            .setMagic(in.getByte(start))
+            .setOpcode(in.getByte(start + 1))
+            .setKeyLength((short) keyLength)
+            .setExtrasLength((byte) extrasLength)
+            .setDataType(in.getByte(start + 5))
+            .setTotalBodyLength(totalBodyLength)
+            .setOpaque(in.getInt(start + 12))
+            .setCAS(in.getLong(start + 16));
+        response.setStatus(in.getShort(start + 6));
+        return response;
+    }
+}
@@ -24,12 +24,22 @@ package com.couchbase.client.core.endpoint.kv;
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
 import com.couchbase.client.core.endpoint.AbstractGenericHandler;
+import com.couchbase.client.core.endpoint.OpaqueRequestMap;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.logging.CouchbaseLogger;
+import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseResponse;
 import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.kv.AbstractBulkRequest;
 import com.couchbase.client.core.message.kv.AppendRequest;
 import com.couchbase.client.core.message.kv.AppendResponse;
 import com.couchbase.client.core.message.kv.BinaryRequest;
+import com.couchbase.client.core.message.kv.BinaryResponse;
 import com.couchbase.client.core.message.kv.BinaryStoreRequest;
+import com.couchbase.client.core.message.kv.BulkGetRequest;
+import com.couchbase.client.core.message.kv.BulkGetResponse;
+import com.couchbase.client.core.message.kv.BulkMutationRequest;
+import com.couchbase.client.core.message.kv.BulkPartResponse;
 import com.couchbase.client.core.message.kv.CounterRequest;
 import com.couchbase.client.core.message.kv.CounterResponse;
 import com.couchbase.client.core.message.kv.GetBucketConfigRequest;
@@ -53,6 +63,7 @@ import com.couchbase.client.core.message.kv.UnlockRequest;
 import com.couchbase.client.core.message.kv.UnlockResponse;
 import com.couchbase.client.core.message.kv.UpsertRequest;
 import com.couchbase.client.core.message.kv.UpsertResponse;
+import com.couchbase.client.core.metrics.LatencyTracker;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheOpcodes;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponseStatus;
@@ -63,10 +74,17 @@ import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBina
 import com.lmax.disruptor.EventSink;
 import com.lmax.disruptor.RingBuffer;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import rx.functions.Func1;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The {@link KeyValueHandler} is responsible for encoding {@link BinaryRequest}s into lower level
@@ -95,6 +113,12 @@ public class KeyValueHandler
     public static final byte OP_TOUCH = BinaryMemcacheOpcodes.TOUCH;
     public static final byte OP_APPEND = BinaryMemcacheOpcodes.APPEND;
     public static final byte OP_PREPEND = BinaryMemcacheOpcodes.PREPEND;
+    public static final byte OP_GET_QUIET = BinaryMemcacheOpcodes.GETQ;
+    public static final byte OP_INSERT_QUIET = BinaryMemcacheOpcodes.ADDQ;
+    public static final byte OP_UPSERT_QUIET = BinaryMemcacheOpcodes.SETQ;
+    public static final byte OP_REPLACE_QUIET = BinaryMemcacheOpcodes.REPLACEQ;
+    public static final byte OP_REMOVE_QUIET = BinaryMemcacheOpcodes.DELETEQ;
+    public static final byte OP_NOOP = BinaryMemcacheOpcodes.NOOP;
 
     /**
      * Represents the "Not My VBucket" status response.
@@ -102,13 +126,82 @@ public class KeyValueHandler
     public static final byte STATUS_NOT_MY_VBUCKET = 0x07;
 
     /**
-     * Creates a new {@link KeyValueHandler} with the default queue for requests.
+     * The size of the binary protocol header.
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * The magic byte identifying a request.
+     */
+    private static final byte MAGIC_REQUEST = (byte) 0x80;
+
+    /**
+     * The logger used.
+     */
+    private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(KeyValueHandler.class);
+
+    /**
+     * How often the requests in flight are checked for ones which timed out, in nanoseconds.
+     */
+    private static final long TIMEOUT_SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The requests in flight keyed by their opaque, null if a plain queue is used.
+     */
+    private final OpaqueRequestMap<BinaryRequest> sentRequestMap;
+
+    /**
+     * The opaque value for the next request written on this channel.
+     *
+     * Only accessed from the event loop, so it needs no synchronization. No overflow control is applied, since
+     * once it overflows it starts with negative values again.
+     */
+    private int nextOpaque;
+
+    /**
+     * If requests are written straight into pooled buffers instead of going through the memcache codec.
+     */
+    private final boolean directEncoding;
+
+    /**
+     * When the requests in flight have last been checked for ones which timed out.
+     */
+    private long lastTimeoutSweep = System.nanoTime();
+
+    /**
+     * Creates a new {@link KeyValueHandler} which matches responses to requests by their opaque value.
      *
      * @param endpoint the {@link AbstractEndpoint} to coordinate with.
      * @param responseBuffer the {@link RingBuffer} to push responses into.
      */
     public KeyValueHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer) {
-        super(endpoint, responseBuffer);
+        this(endpoint, responseBuffer, (LatencyTracker) null);
+    }
+
+    /**
+     * Creates a new {@link KeyValueHandler} which records the response times into the given tracker.
+     *
+     * @param endpoint the {@link AbstractEndpoint} to coordinate with.
+     * @param responseBuffer the {@link RingBuffer} to push responses into.
+     * @param latencies the response time estimates of the core, may be null.
+     */
+    public KeyValueHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer,
+        LatencyTracker latencies) {
+        this(endpoint, responseBuffer, new ArrayDeque<BinaryRequest>(0), new OpaqueRequestMap<BinaryRequest>(),
+            directEncoding(endpoint), latencies);
+    }
+
+    /**
+     * Creates a new {@link KeyValueHandler} with a custom map for requests and encoding mode (suitable for tests).
+     *
+     * @param endpoint the {@link AbstractEndpoint} to coordinate with.
+     * @param responseBuffer the {@link RingBuffer} to push responses into.
+     * @param requestMap the map which holds all outstanding open requests by their opaque.
+     * @param directEncoding if requests should be written straight into {@link ByteBuf}s.
+     */
+    KeyValueHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer,
+        OpaqueRequestMap<BinaryRequest> requestMap, boolean directEncoding) {
+        this(endpoint, responseBuffer, new ArrayDeque<BinaryRequest>(0), requestMap, directEncoding, null);
     }
 
     /**
@@ -119,7 +212,138 @@ public class KeyValueHandler
      * @param queue the queue which holds all outstanding open requests.
      */
     KeyValueHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer, Queue<BinaryRequest> queue) {
-        super(endpoint, responseBuffer, queue);
+        this(endpoint, responseBuffer, queue, directEncoding(endpoint));
+    }
+
+    /**
+     * Creates a new {@link KeyValueHandler} with a custom queue and encoding mode (suitable for tests).
+     *
+     * @param endpoint the {@link AbstractEndpoint} to coordinate with.
+     * @param responseBuffer the {@link RingBuffer} to push responses into.
+     * @param queue the queue which holds all outstanding open requests.
+     * @param directEncoding if requests should be written straight into {@link ByteBuf}s.
+     */
+    KeyValueHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer, Queue<BinaryRequest> queue,
+        boolean directEncoding) {
+        this(endpoint, responseBuffer, queue, null, directEncoding, null);
+    }
+
+    private KeyValueHandler(AbstractEndpoint endpoint, EventSink<ResponseEvent> responseBuffer,
+        Queue<BinaryRequest> queue, OpaqueRequestMap<BinaryRequest> requestMap, boolean directEncoding,
+        LatencyTracker latencies) {
+        super(endpoint, responseBuffer, queue, latencies);
+        this.sentRequestMap = requestMap;
+        this.directEncoding = directEncoding;
+    }
+
+    /**
+     * Checks if the environment of the given endpoint enables direct encoding.
+     *
+     * @param endpoint the endpoint, may be null.
+     * @return true if direct encoding should be used.
+     */
+    private static boolean directEncoding(final AbstractEndpoint endpoint) {
+        CoreEnvironment environment = endpoint == null ? null : endpoint.environment();
+        return environment != null && environment.directKeyValueEncoding();
+    }
+
+    @Override
+    protected void addSentRequest(final BinaryRequest request, final BinaryMemcacheRequest encoded) {
+        if (sentRequestMap == null) {
+            super.addSentRequest(request, encoded);
+        } else {
+            sentRequestMap.put(request.opaque(), request);
+        }
+    }
+
+    @Override
+    protected BinaryRequest pollSentRequest(final FullBinaryMemcacheResponse response) {
+        if (sentRequestMap == null) {
+            return super.pollSentRequest(response);
+        }
+        return sentRequestMap.remove(response.getOpaque());
+    }
+
+    @Override
+    protected int sentRequestCount() {
+        return sentRequestMap == null ? super.sentRequestCount() : sentRequestMap.size();
+    }
+
+    @Override
+    protected Collection<BinaryRequest> drainSentRequests() {
+        return sentRequestMap == null ? super.drainSentRequests() : sentRequestMap.drain();
+    }
+
+    /**
+     * Records the response times of all single key requests, they feed the replica selection of
+     * {@link com.couchbase.client.core.message.kv.AnyReplicaGetRequest}s.
+     */
+    @Override
+    protected boolean tracksLatency(final BinaryRequest request) {
+        return !(request instanceof AbstractBulkRequest);
+    }
+
+    @Override
+    protected void encode(final ChannelHandlerContext ctx, final BinaryRequest msg, final List<Object> out)
+        throws Exception {
+        sweepTimedOutRequests();
+        if (msg instanceof BulkGetRequest) {
+            out.add(encodeBulkGetRequest(ctx, (BulkGetRequest) msg));
+            updateInFlight();
+            return;
+        } else if (msg instanceof BulkMutationRequest) {
+            out.add(encodeBulkMutationRequest(ctx, (BulkMutationRequest) msg));
+            updateInFlight();
+            return;
+        }
+        if (!directEncoding) {
+            super.encode(ctx, msg, out);
+            return;
+        }
+
+        int opaque = nextOpaque++;
+        msg.opaque(opaque);
+        ByteBuf encoded = encodeRequestDirect(ctx, msg, opaque);
+        // there is no memcache message on this path, the request is tracked by its opaque alone
+        addSentRequest(msg, null);
+        updateInFlight();
+        out.add(encoded);
+    }
+
+    /**
+     * Forgets requests in flight which have already been failed because their deadline passed.
+     *
+     * Their responses might never arrive, so they would otherwise stay around until the channel closes. If a
+     * response shows up later, it is dropped like any other response with an unknown opaque. Bulk parts are tracked
+     * under many opaques and release what they collected once all of them are gone.
+     */
+    private void sweepTimedOutRequests() {
+        if (sentRequestMap == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastTimeoutSweep >= TIMEOUT_SWEEP_INTERVAL) {
+            lastTimeoutSweep = now;
+            final List<AbstractBulkRequest> parts = new ArrayList<AbstractBulkRequest>();
+            int removed = sentRequestMap.removeIf(new Func1<BinaryRequest, Boolean>() {
+                @Override
+                public Boolean call(final BinaryRequest request) {
+                    if (!request.timedOut()) {
+                        return false;
+                    }
+                    if (request instanceof AbstractBulkRequest && !parts.contains(request)) {
+                        parts.add((AbstractBulkRequest) request);
+                    }
+                    return true;
+                }
+            });
+            for (AbstractBulkRequest part : parts) {
+                part.discard();
+            }
+            if (removed > 0) {
+                LOGGER.debug("Removed {} timed out requests waiting for their response.", removed);
+            }
+        }
     }
 
     @Override
@@ -158,7 +382,9 @@ public class KeyValueHandler
             request.setReserved(msg.partition());
         }
 
-        request.setOpaque(msg.opaque());
+        int opaque = nextOpaque++;
+        msg.opaque(opaque);
+        request.setOpaque(opaque);
 
         // Retain just the content, since a response could be "Not my Vbucket".
         // The response handler checks the status and then releases if needed.
@@ -170,6 +396,256 @@ public class KeyValueHandler
         return request;
     }
 
+    /**
+     * Encodes the request straight into its wire format, without intermediate memcache message objects.
+     *
+     * The header, extras and key are written into one pooled buffer of the exact size needed. If the request
+     * carries a value, it is retained (like on the codec path, so it is still around if the request needs to be
+     * retried) and attached as the second component of a {@link CompositeByteBuf} instead of being copied.
+     *
+     * @param ctx the {@link ChannelHandlerContext} to use for allocation.
+     * @param msg the outgoing request.
+     * @param opaque the opaque assigned to the request.
+     * @return the encoded request.
+     */
+    private static ByteBuf encodeRequestDirect(final ChannelHandlerContext ctx, final BinaryRequest msg,
+        final int opaque) {
+        byte[] key = msg.keyBytes();
+        short partition = msg.partition();
+        ByteBuf value = null;
+        ByteBuf frame;
+
+        if (msg instanceof GetRequest) {
+            GetRequest get = (GetRequest) msg;
+            if (get.lock() || get.touch()) {
+                byte opcode = get.lock() ? OP_GET_AND_LOCK : OP_GET_AND_TOUCH;
+                frame = newFrame(ctx, opcode, partition, opaque, 0, 4, key.length, 0);
+                frame.writeInt(get.expiry());
+            } else {
+                frame = newFrame(ctx, OP_GET, partition, opaque, 0, 0, key.length, 0);
+            }
+        } else if (msg instanceof BinaryStoreRequest) {
+            BinaryStoreRequest store = (BinaryStoreRequest) msg;
+            value = store.content();
+            long cas = msg instanceof ReplaceRequest ? ((ReplaceRequest) msg).cas() : 0;
+            frame = newFrame(ctx, storeOpcode(store, false), partition, opaque, cas, 8, key.length,
+                value.readableBytes());
+            frame.writeInt(store.flags());
+            frame.writeInt(store.expiration());
+        } else if (msg instanceof ReplicaGetRequest) {
+            frame = newFrame(ctx, OP_GET_REPLICA, partition, opaque, 0, 0, key.length, 0);
+        } else if (msg instanceof RemoveRequest) {
+            frame = newFrame(ctx, OP_REMOVE, partition, opaque, ((RemoveRequest) msg).cas(), 0, key.length, 0);
+        } else if (msg instanceof CounterRequest) {
+            CounterRequest counter = (CounterRequest) msg;
+            byte opcode = counter.delta() < 0 ? OP_COUNTER_DECR : OP_COUNTER_INCR;
+            frame = newFrame(ctx, opcode, partition, opaque, 0, 20, key.length, 0);
+            frame.writeLong(Math.abs(counter.delta()));
+            frame.writeLong(counter.initial());
+            frame.writeInt(counter.expiry());
+        } else if (msg instanceof TouchRequest) {
+            frame = newFrame(ctx, OP_TOUCH, partition, opaque, 0, 4, key.length, 0);
+            frame.writeInt(((TouchRequest) msg).expiry());
+        } else if (msg instanceof UnlockRequest) {
+            frame = newFrame(ctx, OP_UNLOCK, partition, opaque, ((UnlockRequest) msg).cas(), 0, key.length, 0);
+        } else if (msg instanceof ObserveRequest) {
+            // The key goes into the body together with the partition, the header carries no key.
+            int bodyLength = 4 + key.length;
+            frame = writeHeader(ctx.alloc().buffer(HEADER_SIZE + bodyLength), OP_OBSERVE, partition, opaque, 0, 0, 0,
+                bodyLength);
+            frame.writeShort(msg.partition());
+            frame.writeShort(key.length);
+        } else if (msg instanceof GetBucketConfigRequest) {
+            frame = newFrame(ctx, OP_GET_BUCKET_CONFIG, partition, opaque, 0, 0, 0, 0);
+        } else if (msg instanceof AppendRequest) {
+            AppendRequest append = (AppendRequest) msg;
+            value = append.content();
+            frame = newFrame(ctx, OP_APPEND, partition, opaque, append.cas(), 0, key.length, value.readableBytes());
+        } else if (msg instanceof PrependRequest) {
+            PrependRequest prepend = (PrependRequest) msg;
+            value = prepend.content();
+            frame = newFrame(ctx, OP_PREPEND, partition, opaque, prepend.cas(), 0, key.length,
+                value.readableBytes());
+        } else {
+            throw new IllegalArgumentException("Unknown incoming BinaryRequest type "
+                + msg.getClass());
+        }
+
+        frame.writeBytes(key);
+        if (value == null || !value.isReadable()) {
+            return frame;
+        }
+
+        CompositeByteBuf composite = ctx.alloc().compositeBuffer(2);
+        composite.addComponent(frame);
+        composite.addComponent(value.retain());
+        composite.writerIndex(frame.readableBytes() + value.readableBytes());
+        return composite;
+    }
+
+    /**
+     * Allocates a buffer for the header, extras and key of a request and writes the header into it.
+     *
+     * @param ctx the {@link ChannelHandlerContext} to use for allocation.
+     * @param opcode the opcode of the request.
+     * @param partition the partition (vbucket) of the request.
+     * @param opaque the opaque of the request.
+     * @param cas the cas value of the request.
+     * @param extrasLength the length of the extras, written by the caller.
+     * @param keyLength the length of the key.
+     * @param valueLength the length of the value following the key.
+     * @return the buffer with the header written.
+     */
+    private static ByteBuf newFrame(final ChannelHandlerContext ctx, final byte opcode, final short partition,
+        final int opaque, final long cas, final int extrasLength, final int keyLength, final int valueLength) {
+        ByteBuf frame = ctx.alloc().buffer(HEADER_SIZE + extrasLength + keyLength);
+        return writeHeader(frame, opcode, partition, opaque, cas, extrasLength, keyLength, valueLength);
+    }
+
+    /**
+     * Encodes a {@link BulkGetRequest} into one pipeline of quiet gets, terminated by a noop.
+     *
+     * Every get takes its own opaque, starting with the one assigned to the request, and the noop takes the one
+     * following the last get. All of them are tracked so every response can be related to its key. Since quiet gets
+     * stay silent for documents which do not exist, the response to the noop marks the whole part as answered.
+     *
+     * @param ctx the {@link ChannelHandlerContext} to use for allocation.
+     * @param msg the bulk request.
+     * @return the encoded pipeline.
+     */
+    private ByteBuf encodeBulkGetRequest(final ChannelHandlerContext ctx, final BulkGetRequest msg) {
+        int size = msg.size();
+        int base = trackBulkRequest(msg);
+
+        int length = HEADER_SIZE * (size + 1);
+        for (int i = 0; i < size; i++) {
+            length += msg.keyBytes(i).length;
+        }
+        ByteBuf frame = ctx.alloc().buffer(length);
+        for (int i = 0; i < size; i++) {
+            byte[] key = msg.keyBytes(i);
+            writeHeader(frame, OP_GET_QUIET, msg.partition(i), base + i, 0, 0, key.length, 0).writeBytes(key);
+        }
+        return writeHeader(frame, OP_NOOP, (short) 0, base + size, 0, 0, 0, 0);
+    }
+
+    /**
+     * Encodes a {@link BulkMutationRequest} into one pipeline of quiet mutations, terminated by a noop.
+     *
+     * The opaques are assigned like for a {@link BulkGetRequest}. Since quiet mutations only get answered if they
+     * fail, the response to the noop marks the whole part as answered. The values are not copied but retained and
+     * added to the pipeline as they are.
+     *
+     * @param ctx the {@link ChannelHandlerContext} to use for allocation.
+     * @param msg the bulk request.
+     * @return the encoded pipeline.
+     */
+    private ByteBuf encodeBulkMutationRequest(final ChannelHandlerContext ctx, final BulkMutationRequest msg) {
+        int size = msg.size();
+        int base = trackBulkRequest(msg);
+
+        CompositeByteBuf pipeline = ctx.alloc().compositeBuffer(2 * size + 1);
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            BinaryRequest mutation = msg.mutation(i);
+            byte[] key = msg.keyBytes(i);
+            short partition = msg.partition(i);
+            ByteBuf value = null;
+            ByteBuf frame;
+            if (mutation instanceof RemoveRequest) {
+                frame = newFrame(ctx, OP_REMOVE_QUIET, partition, base + i, ((RemoveRequest) mutation).cas(), 0,
+                    key.length, 0);
+            } else {
+                BinaryStoreRequest store = (BinaryStoreRequest) mutation;
+                value = store.content();
+                long cas = mutation instanceof ReplaceRequest ? ((ReplaceRequest) mutation).cas() : 0;
+                frame = newFrame(ctx, storeOpcode(store, true), partition, base + i, cas, 8, key.length,
+                    value.readableBytes());
+                frame.writeInt(store.flags());
+                frame.writeInt(store.expiration());
+            }
+            frame.writeBytes(key);
+            pipeline.addComponent(frame);
+            length += frame.readableBytes();
+            if (value != null && value.isReadable()) {
+                pipeline.addComponent(value.retain());
+                length += value.readableBytes();
+            }
+        }
+        ByteBuf noop = newFrame(ctx, OP_NOOP, (short) 0, base + size, 0, 0, 0, 0);
+        pipeline.addComponent(noop);
+        length += noop.readableBytes();
+        pipeline.writerIndex(length);
+        return pipeline;
+    }
+
+    /**
+     * Assigns one opaque per key and one for the trailing noop to a bulk request and tracks all of them.
+     *
+     * @param msg the bulk request.
+     * @return the opaque of the first key.
+     */
+    private int trackBulkRequest(final AbstractBulkRequest msg) {
+        if (sentRequestMap == null) {
+            throw new IllegalStateException("Bulk requests need responses to be matched by their opaque.");
+        }
+
+        int size = msg.size();
+        int base = nextOpaque;
+        nextOpaque += size + 1;
+        msg.opaque(base);
+        for (int i = 0; i <= size; i++) {
+            sentRequestMap.put(base + i, msg);
+        }
+        return base;
+    }
+
+    /**
+     * Selects the opcode for a {@link BinaryStoreRequest}.
+     *
+     * @param store the store request.
+     * @param quiet if the quiet variant should be used, which is only answered on failure.
+     * @return the opcode.
+     */
+    private static byte storeOpcode(final BinaryStoreRequest store, final boolean quiet) {
+        if (store instanceof InsertRequest) {
+            return quiet ? OP_INSERT_QUIET : OP_INSERT;
+        } else if (store instanceof UpsertRequest) {
+            return quiet ? OP_UPSERT_QUIET : OP_UPSERT;
+        } else if (store instanceof ReplaceRequest) {
+            return quiet ? OP_REPLACE_QUIET : OP_REPLACE;
+        } else {
+            throw new IllegalArgumentException("Unknown incoming BinaryStoreRequest type " + store.getClass());
+        }
+    }
+
+    /**
+     * Writes the binary protocol request header.
+     *
+     * @param frame the buffer to write into.
+     * @param opcode the opcode of the request.
+     * @param partition the partition (vbucket) of the request.
+     * @param opaque the opaque of the request.
+     * @param cas the cas value of the request.
+     * @param extrasLength the length of the extras.
+     * @param keyLength the length of the key.
+     * @param valueLength the length of the value following the key.
+     * @return the buffer with the header written.
+     */
+    private static ByteBuf writeHeader(final ByteBuf frame, final byte opcode, final short partition,
+        final int opaque, final long cas, final int extrasLength, final int keyLength, final int valueLength) {
+        return frame
+            .writeByte(MAGIC_REQUEST)
+            .writeByte(opcode)
+            .writeShort(keyLength)
+            .writeByte(extrasLength)
+            .writeByte(0)
+            .writeShort(partition)
+            .writeInt(extrasLength + keyLength + valueLength)
+            .writeInt(opaque)
+            .writeLong(cas);
+    }
+
     /**
      * Encodes a {@link GetRequest} into its lower level representation.
      *
@@ -196,7 +672,7 @@ public class KeyValueHandler
         }
 
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = (short) msg.keyBytes().length;
         byte extrasLength = (byte) extras.readableBytes();
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
         request
@@ -226,7 +702,7 @@ public class KeyValueHandler
      */
     private static BinaryMemcacheRequest handleReplicaGetRequest(final ReplicaGetRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = (short) msg.keyBytes().length;
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
 
         request.setOpcode(OP_GET_REPLICA)
@@ -254,7 +730,7 @@ public class KeyValueHandler
         extras.writeInt(msg.expiration());
 
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = (short) msg.keyBytes().length;
         byte extrasLength = (byte) extras.readableBytes();
         FullBinaryMemcacheRequest request = new DefaultFullBinaryMemcacheRequest(key, extras, msg.content());
 
@@ -283,7 +759,7 @@ public class KeyValueHandler
      */
     private static BinaryMemcacheRequest handleRemoveRequest(final RemoveRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = (short) msg.keyBytes().length;
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
 
         request.setOpcode(OP_REMOVE);
@@ -309,7 +785,7 @@ public class KeyValueHandler
         extras.writeInt(msg.expiry());
 
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = (short) msg.keyBytes().length;
         byte extrasLength = (byte) extras.readableBytes();
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key, extras);
         request.setOpcode(msg.delta() < 0 ? OP_COUNTER_DECR : OP_COUNTER_INCR);
@@ -326,7 +802,7 @@ public class KeyValueHandler
      */
     private static BinaryMemcacheRequest handleUnlockRequest(final UnlockRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = (short) msg.keyBytes().length;
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
         request.setOpcode(OP_UNLOCK);
         request.setKeyLength(keyLength);
@@ -345,7 +821,7 @@ public class KeyValueHandler
         extras.writeInt(msg.expiry());
 
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = (short) msg.keyBytes().length;
         byte extrasLength = (byte) extras.readableBytes();
         BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(key);
         request.setExtras(extras);
@@ -363,11 +839,11 @@ public class KeyValueHandler
      */
     private static BinaryMemcacheRequest handleObserveRequest(final ChannelHandlerContext ctx,
         final ObserveRequest msg) {
-        String key = msg.key();
         ByteBuf content = ctx.alloc().buffer();
         content.writeShort(msg.partition());
-        content.writeShort(key.length());
-        content.writeBytes(key.getBytes(CHARSET));
+        byte[] keyBytes = msg.keyBytes();
+        content.writeShort(keyBytes.length);
+        content.writeBytes(keyBytes);
 
         BinaryMemcacheRequest request = new DefaultFullBinaryMemcacheRequest("", Unpooled.EMPTY_BUFFER, content);
         request.setOpcode(OP_OBSERVE);
@@ -377,7 +853,7 @@ public class KeyValueHandler
 
     private static BinaryMemcacheRequest handleAppendRequest(final AppendRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = (short) msg.keyBytes().length;
         BinaryMemcacheRequest request = new DefaultFullBinaryMemcacheRequest(key, Unpooled.EMPTY_BUFFER, msg.content());
 
         request.setOpcode(OP_APPEND);
@@ -389,7 +865,7 @@ public class KeyValueHandler
 
     private static BinaryMemcacheRequest handlePrependRequest(final PrependRequest msg) {
         String key = msg.key();
-        short keyLength = (short) key.length();
+        short keyLength = (short) msg.keyBytes().length;
         BinaryMemcacheRequest request = new DefaultFullBinaryMemcacheRequest(key, Unpooled.EMPTY_BUFFER, msg.content());
 
         request.setOpcode(OP_PREPEND);
@@ -404,6 +880,16 @@ public class KeyValueHandler
         throws Exception {
         BinaryRequest request = currentRequest();
 
+        if (request == null) {
+            LOGGER.debug("Got a response without a request in flight for opaque {} (it might have timed out), "
+                + "ignoring.", msg.getOpaque());
+            finishedDecoding();
+            return null;
+        }
+        if (request instanceof AbstractBulkRequest) {
+            finishedDecoding();
+            return decodeBulkResponse(msg, (AbstractBulkRequest) request);
+        }
         if (request.opaque() != msg.getOpaque()) {
             throw new IllegalStateException("Opaque values for " + msg.getClass() + " do not match.");
         }
@@ -432,11 +918,8 @@ public class KeyValueHandler
         if (request instanceof GetRequest || request instanceof ReplicaGetRequest) {
             int flags = 0;
             if (msg.getExtrasLength() > 0) {
-                final ByteBuf extrasReleased = msg.getExtras();
-                final ByteBuf extras = ctx.alloc().buffer(msg.getExtrasLength());
-                extras.writeBytes(extrasReleased, extrasReleased.readerIndex(), extrasReleased.readableBytes());
-                flags = extras.getInt(0);
-                extras.release();
+                final ByteBuf extras = msg.getExtras();
+                flags = extras.getInt(extras.readerIndex());
             }
             response = new GetResponse(status, cas, flags, bucket, content, request);
         } else if (request instanceof GetBucketConfigRequest) {
@@ -480,6 +963,77 @@ public class KeyValueHandler
         return response;
     }
 
+    /**
+     * Decodes one response of a bulk request pipeline.
+     *
+     * Responses to the quiet operations are collected on the request, "not my vbucket" responses mark their key for a
+     * retry. Only the response to the noop completes the part: the opaques of all keys which did not get a response
+     * are freed, the keys to retry are sent off as a new part and the part itself is reported as answered.
+     *
+     * @param msg the response.
+     * @param request the part the response belongs to.
+     * @return the response for the part once the noop arrives, null otherwise.
+     */
+    private CouchbaseResponse decodeBulkResponse(final FullBinaryMemcacheResponse msg,
+        final AbstractBulkRequest request) {
+        int index = msg.getOpaque() - request.opaque();
+        int size = request.size();
+        String bucket = request.bucket();
+
+        if (index < size) {
+            ResponseStatus status = convertStatus(msg.getStatus());
+            if (status == ResponseStatus.RETRY) {
+                request.retry(index, msg.content().retain());
+            } else if (request instanceof BulkGetRequest) {
+                ByteBuf extras = msg.getExtras();
+                int flags = extras != null && extras.readableBytes() >= 4 ? extras.getInt(extras.readerIndex()) : 0;
+                request.addResult(new BulkGetResponse(status, msg.getCAS(), flags, bucket, msg.content().retain(),
+                    request.key(index), request));
+            } else {
+                BinaryRequest mutation = ((BulkMutationRequest) request).mutation(index);
+                request.addResult(mutationResponse(mutation, status, msg.getCAS(), bucket, msg.content().retain()));
+            }
+            return null;
+        }
+
+        for (int i = 0; i < size; i++) {
+            sentRequestMap.remove(request.opaque() + i);
+            if (request instanceof BulkMutationRequest && !request.retried(i)) {
+                ((BulkMutationRequest) request).releaseContent(i);
+            }
+        }
+        AbstractBulkRequest retry = request.retryPart();
+        if (retry != null) {
+            ByteBuf config = request.retryConfig();
+            publishResponse(new BulkPartResponse(ResponseStatus.RETRY, bucket,
+                config == null ? Unpooled.EMPTY_BUFFER : config, retry), retry.observable());
+        }
+        return new BulkPartResponse(ResponseStatus.SUCCESS, bucket, Unpooled.EMPTY_BUFFER, request);
+    }
+
+    /**
+     * Creates the response for a mutation of a {@link BulkMutationRequest}, as it would be for the single request.
+     *
+     * @param mutation the mutation.
+     * @param status the status of the response.
+     * @param cas the cas value of the response.
+     * @param bucket the bucket of the mutation.
+     * @param content the content of the response.
+     * @return the response.
+     */
+    private static BinaryResponse mutationResponse(final BinaryRequest mutation, final ResponseStatus status,
+        final long cas, final String bucket, final ByteBuf content) {
+        if (mutation instanceof InsertRequest) {
+            return new InsertResponse(status, cas, bucket, content, mutation);
+        } else if (mutation instanceof UpsertRequest) {
+            return new UpsertResponse(status, cas, bucket, content, mutation);
+        } else if (mutation instanceof ReplaceRequest) {
+            return new ReplaceResponse(status, cas, bucket, content, mutation);
+        } else {
+            return new RemoveResponse(status, cas, bucket, content, mutation);
+        }
+    }
+
     /**
      * Releasing the content of requests that are to be cancelled.
      *
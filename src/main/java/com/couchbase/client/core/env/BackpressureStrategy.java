@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.env;
+
+/**
+ * Decides what happens to a request when it can not be admitted into the request RingBuffer right away.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public enum BackpressureStrategy {
+
+    /**
+     * Fails the request with a {@link com.couchbase.client.core.BackpressureException} as soon as the
+     * RingBuffer is full.
+     */
+    FAIL_FAST,
+
+    /**
+     * Waits up to {@link CoreEnvironment#backpressureMaxWaitMicros()} on the sending thread for a free slot
+     * before failing the request. This absorbs short bursts and pauses, but blocks the caller.
+     */
+    BOUNDED_WAIT,
+
+    /**
+     * Limits the rate of requests per bucket with a token bucket (see {@link CoreEnvironment#tokenBucketRate()}
+     * and {@link CoreEnvironment#tokenBucketCapacity()}), then fails fast if the RingBuffer is full anyway.
+     */
+    TOKEN_BUCKET
+
+}
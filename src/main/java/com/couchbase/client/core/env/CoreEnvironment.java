@@ -21,6 +21,7 @@
  */
 package com.couchbase.client.core.env;
 
+import com.couchbase.client.core.retry.RetryStrategy;
 import io.netty.channel.EventLoopGroup;
 import rx.Observable;
 import rx.Scheduler;
@@ -157,6 +158,160 @@ public interface CoreEnvironment {
      */
     int queryEndpoints();
 
+    /**
+     * Returns the number of request ringbuffers (shards), each drained by its own thread.
+     *
+     * Requests for the same document key (or DCP partition) always end up in the same shard, so they are
+     * dispatched in the order they have been sent. There is no ordering guarantee across shards.
+     *
+     * @return the number of request shards.
+     */
+    int requestShards();
+
+    /**
+     * If responses which need no further processing are completed directly from the IO event loop.
+     *
+     * When enabled, responses with a SUCCESS, EXISTS, NOT_EXISTS or FAILURE status skip the response RingBuffer
+     * and are handed straight to the {@link #scheduler()}. Only retries and internal signals still go through the
+     * {@link com.couchbase.client.core.ResponseHandler}.
+     *
+     * @return true if the fast response path is enabled.
+     */
+    boolean responseFastPath();
+
+    /**
+     * The strategy the request RingBuffer consumers use to wait for new requests.
+     *
+     * @return the wait strategy of the request RingBuffers.
+     */
+    WaitStrategyType requestBufferWaitStrategy();
+
+    /**
+     * The strategy the response RingBuffer consumer uses to wait for new responses.
+     *
+     * @return the wait strategy of the response RingBuffer.
+     */
+    WaitStrategyType responseBufferWaitStrategy();
+
+    /**
+     * The strategy used when a request can not be published into its request RingBuffer right away.
+     *
+     * @return the backpressure strategy.
+     */
+    BackpressureStrategy backpressureStrategy();
+
+    /**
+     * The maximum time in microseconds a sender waits for a free RingBuffer slot.
+     *
+     * Only used with {@link BackpressureStrategy#BOUNDED_WAIT}.
+     *
+     * @return the maximum wait time in microseconds.
+     */
+    long backpressureMaxWaitMicros();
+
+    /**
+     * The number of requests per second admitted for each bucket.
+     *
+     * Only used with {@link BackpressureStrategy#TOKEN_BUCKET}.
+     *
+     * @return the sustained request rate per bucket.
+     */
+    int tokenBucketRate();
+
+    /**
+     * The number of requests per bucket which can be admitted in a burst above the sustained rate.
+     *
+     * Only used with {@link BackpressureStrategy#TOKEN_BUCKET}.
+     *
+     * @return the burst capacity per bucket.
+     */
+    int tokenBucketCapacity();
+
+    /**
+     * The strategy which decides if and when requests that could not be completed are retried.
+     *
+     * @return the retry strategy.
+     */
+    RetryStrategy retryStrategy();
+
+    /**
+     * The maximum number of retries which can be pending at the same time.
+     *
+     * Requests which need to be retried while the budget is exhausted are failed with a
+     * {@link com.couchbase.client.core.BackpressureException} instead.
+     *
+     * @return the global retry budget.
+     */
+    int retryBudget();
+
+    /**
+     * If key value requests are encoded straight into pooled buffers.
+     *
+     * When enabled, the key value handler writes the header, extras and key of every request into one right-sized
+     * buffer and attaches the value as a component of a composite buffer, instead of going through the memcache
+     * codec message objects.
+     *
+     * @return true if direct encoding is enabled.
+     */
+    boolean directKeyValueEncoding();
+
+    /**
+     * If TCP_NODELAY is set on the sockets of all endpoints.
+     *
+     * Writes are already coalesced by flushing once per batch of requests (see {@link #flushDelay()}), so Nagle's
+     * algorithm only adds latency on top and is disabled by default.
+     *
+     * @return true if Nagle's algorithm is disabled.
+     */
+    boolean tcpNodelayEnabled();
+
+    /**
+     * The maximum time in microseconds a flush of an endpoint may be delayed to coalesce more writes into it.
+     *
+     * With 0, every endpoint is flushed at the end of each batch of requests it has been written to. Otherwise the
+     * flush is postponed until the delay has passed or {@link #flushMaxBytes()} are pending, whichever comes first,
+     * which saves syscalls under high throughput at the cost of up to the delay in latency.
+     *
+     * @return the maximum flush delay in microseconds.
+     */
+    long flushDelay();
+
+    /**
+     * The number of pending bytes which forces a delayed flush of an endpoint right away.
+     *
+     * Only used if {@link #flushDelay()} is greater than 0.
+     *
+     * @return the number of bytes.
+     */
+    int flushMaxBytes();
+
+    /**
+     * The maximum number of view service endpoints.
+     *
+     * The view service starts with {@link #viewEndpoints()} endpoints and opens additional ones up to this number
+     * while all of them are busy. Additional endpoints are closed again once idle for {@link #endpointIdleTime()}.
+     *
+     * @return maximum amount of endpoints per service.
+     */
+    int viewMaxEndpoints();
+
+    /**
+     * The maximum number of query service endpoints.
+     *
+     * The query service starts with {@link #queryEndpoints()} endpoints and opens additional ones up to this number
+     * while all of them are busy. Additional endpoints are closed again once idle for {@link #endpointIdleTime()}.
+     *
+     * @return maximum amount of endpoints per service.
+     */
+    int queryMaxEndpoints();
+
+    /**
+     * The time after which an idle endpoint opened on demand gets closed again.
+     *
+     * @return the idle time in milliseconds.
+     */
+    long endpointIdleTime();
+
     /**
      * Library identification string, which can be used as User-Agent header in HTTP requests.
      *
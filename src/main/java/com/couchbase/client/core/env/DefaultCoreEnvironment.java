@@ -24,6 +24,8 @@ package com.couchbase.client.core.env;
 import com.couchbase.client.core.ClusterFacade;
 import com.couchbase.client.core.logging.CouchbaseLogger;
 import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
+import com.couchbase.client.core.retry.ExponentialBackoffRetryStrategy;
+import com.couchbase.client.core.retry.RetryStrategy;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.concurrent.DefaultThreadFactory;
@@ -33,6 +35,7 @@ import rx.Observable;
 import rx.Scheduler;
 import rx.Subscriber;
 
+import java.util.Locale;
 import java.util.Properties;
 
 public class DefaultCoreEnvironment implements CoreEnvironment {
@@ -61,6 +64,23 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
     public static final int KEYVALUE_ENDPOINTS = 1;
     public static final int VIEW_ENDPOINTS = 1;
     public static final int QUERY_ENDPOINTS = 1;
+    public static final int REQUEST_SHARDS = 1;
+    public static final boolean RESPONSE_FAST_PATH = false;
+    public static final WaitStrategyType REQUEST_BUFFER_WAIT_STRATEGY = WaitStrategyType.BLOCKING;
+    public static final WaitStrategyType RESPONSE_BUFFER_WAIT_STRATEGY = WaitStrategyType.BLOCKING;
+    public static final BackpressureStrategy BACKPRESSURE_STRATEGY = BackpressureStrategy.FAIL_FAST;
+    public static final long BACKPRESSURE_MAX_WAIT_MICROS = 100;
+    public static final int TOKEN_BUCKET_RATE = 100000;
+    public static final int TOKEN_BUCKET_CAPACITY = 1024;
+    public static final RetryStrategy RETRY_STRATEGY = ExponentialBackoffRetryStrategy.INSTANCE;
+    public static final int RETRY_BUDGET = 16384;
+    public static final boolean DIRECT_KEY_VALUE_ENCODING = true;
+    public static final boolean TCP_NODELAY_ENABLED = true;
+    public static final long FLUSH_DELAY = 0;
+    public static final int FLUSH_MAX_BYTES = 65536;
+    public static final int VIEW_MAX_ENDPOINTS = 4;
+    public static final int QUERY_MAX_ENDPOINTS = 4;
+    public static final long ENDPOINT_IDLE_TIME = 60000;
     public static String PACKAGE_NAME_AND_VERSION = "couchbase-jvm-core";
     public static String USER_AGENT = PACKAGE_NAME_AND_VERSION;
 
@@ -126,6 +146,23 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
     private final int kvServiceEndpoints;
     private final int viewServiceEndpoints;
     private final int queryServiceEndpoints;
+    private final int requestShards;
+    private final boolean responseFastPath;
+    private final WaitStrategyType requestBufferWaitStrategy;
+    private final WaitStrategyType responseBufferWaitStrategy;
+    private final BackpressureStrategy backpressureStrategy;
+    private final long backpressureMaxWaitMicros;
+    private final int tokenBucketRate;
+    private final int tokenBucketCapacity;
+    private final RetryStrategy retryStrategy;
+    private final int retryBudget;
+    private final boolean directKeyValueEncoding;
+    private final boolean tcpNodelayEnabled;
+    private final long flushDelay;
+    private final int flushMaxBytes;
+    private final int viewMaxEndpoints;
+    private final int queryMaxEndpoints;
+    private final long endpointIdleTime;
     private final String userAgent;
     private final String packageNameAndVersion;
 
@@ -160,6 +197,23 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         kvServiceEndpoints = intPropertyOr("kvEndpoints", builder.kvEndpoints());
         viewServiceEndpoints = intPropertyOr("viewEndpoints", builder.viewEndpoints());
         queryServiceEndpoints = intPropertyOr("queryEndpoints", builder.queryEndpoints());
+        requestShards = intPropertyOr("requestShards", builder.requestShards());
+        responseFastPath = booleanPropertyOr("responseFastPath", builder.responseFastPath());
+        requestBufferWaitStrategy = enumPropertyOr("requestBufferWaitStrategy", builder.requestBufferWaitStrategy());
+        responseBufferWaitStrategy = enumPropertyOr("responseBufferWaitStrategy", builder.responseBufferWaitStrategy());
+        backpressureStrategy = enumPropertyOr("backpressureStrategy", builder.backpressureStrategy());
+        backpressureMaxWaitMicros = longPropertyOr("backpressureMaxWaitMicros", builder.backpressureMaxWaitMicros());
+        tokenBucketRate = intPropertyOr("tokenBucketRate", builder.tokenBucketRate());
+        tokenBucketCapacity = intPropertyOr("tokenBucketCapacity", builder.tokenBucketCapacity());
+        retryStrategy = builder.retryStrategy();
+        retryBudget = intPropertyOr("retryBudget", builder.retryBudget());
+        directKeyValueEncoding = booleanPropertyOr("directKeyValueEncoding", builder.directKeyValueEncoding());
+        tcpNodelayEnabled = booleanPropertyOr("tcpNodelayEnabled", builder.tcpNodelayEnabled());
+        flushDelay = longPropertyOr("flushDelay", builder.flushDelay());
+        flushMaxBytes = intPropertyOr("flushMaxBytes", builder.flushMaxBytes());
+        viewMaxEndpoints = intPropertyOr("viewMaxEndpoints", builder.viewMaxEndpoints());
+        queryMaxEndpoints = intPropertyOr("queryMaxEndpoints", builder.queryMaxEndpoints());
+        endpointIdleTime = longPropertyOr("endpointIdleTime", builder.endpointIdleTime());
         packageNameAndVersion = stringPropertyOr("packageNameAndVersion", builder.packageNameAndVersion());
         userAgent = stringPropertyOr("userAgent", builder.userAgent());
 
@@ -207,6 +261,14 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         return Integer.parseInt(found);
     }
 
+    protected <E extends Enum<E>> E enumPropertyOr(String path, E def) {
+        String found = System.getProperty(NAMESPACE + path);
+        if (found == null) {
+            return def;
+        }
+        return Enum.valueOf(def.getDeclaringClass(), found.trim().toUpperCase(Locale.ENGLISH));
+    }
+
     @Override
     public EventLoopGroup ioPool() {
         return ioPool;
@@ -344,6 +406,91 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         return queryServiceEndpoints;
     }
 
+    @Override
+    public int requestShards() {
+        return requestShards;
+    }
+
+    @Override
+    public boolean responseFastPath() {
+        return responseFastPath;
+    }
+
+    @Override
+    public WaitStrategyType requestBufferWaitStrategy() {
+        return requestBufferWaitStrategy;
+    }
+
+    @Override
+    public WaitStrategyType responseBufferWaitStrategy() {
+        return responseBufferWaitStrategy;
+    }
+
+    @Override
+    public BackpressureStrategy backpressureStrategy() {
+        return backpressureStrategy;
+    }
+
+    @Override
+    public long backpressureMaxWaitMicros() {
+        return backpressureMaxWaitMicros;
+    }
+
+    @Override
+    public int tokenBucketRate() {
+        return tokenBucketRate;
+    }
+
+    @Override
+    public int tokenBucketCapacity() {
+        return tokenBucketCapacity;
+    }
+
+    @Override
+    public RetryStrategy retryStrategy() {
+        return retryStrategy;
+    }
+
+    @Override
+    public int retryBudget() {
+        return retryBudget;
+    }
+
+    @Override
+    public boolean directKeyValueEncoding() {
+        return directKeyValueEncoding;
+    }
+
+    @Override
+    public boolean tcpNodelayEnabled() {
+        return tcpNodelayEnabled;
+    }
+
+    @Override
+    public long flushDelay() {
+        return flushDelay;
+    }
+
+    @Override
+    public int flushMaxBytes() {
+        return flushMaxBytes;
+    }
+
+    @Override
+    public int viewMaxEndpoints() {
+        return viewMaxEndpoints;
+    }
+
+    @Override
+    public int queryMaxEndpoints() {
+        return queryMaxEndpoints;
+    }
+
+    @Override
+    public long endpointIdleTime() {
+        return endpointIdleTime;
+    }
+
     @Override
     public String userAgent() {
         return userAgent;
@@ -377,6 +524,23 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         private int kvServiceEndpoints = KEYVALUE_ENDPOINTS;
         private int viewServiceEndpoints = VIEW_ENDPOINTS;
         private int queryServiceEndpoints = QUERY_ENDPOINTS;
+        private int requestShards = REQUEST_SHARDS;
+        private boolean responseFastPath = RESPONSE_FAST_PATH;
+        private WaitStrategyType requestBufferWaitStrategy = REQUEST_BUFFER_WAIT_STRATEGY;
+        private WaitStrategyType responseBufferWaitStrategy = RESPONSE_BUFFER_WAIT_STRATEGY;
+        private BackpressureStrategy backpressureStrategy = BACKPRESSURE_STRATEGY;
+        private long backpressureMaxWaitMicros = BACKPRESSURE_MAX_WAIT_MICROS;
+        private int tokenBucketRate = TOKEN_BUCKET_RATE;
+        private int tokenBucketCapacity = TOKEN_BUCKET_CAPACITY;
+        private RetryStrategy retryStrategy = RETRY_STRATEGY;
+        private int retryBudget = RETRY_BUDGET;
+        private boolean directKeyValueEncoding = DIRECT_KEY_VALUE_ENCODING;
+        private boolean tcpNodelayEnabled = TCP_NODELAY_ENABLED;
+        private long flushDelay = FLUSH_DELAY;
+        private int flushMaxBytes = FLUSH_MAX_BYTES;
+        private int viewMaxEndpoints = VIEW_MAX_ENDPOINTS;
+        private int queryMaxEndpoints = QUERY_MAX_ENDPOINTS;
+        private long endpointIdleTime = ENDPOINT_IDLE_TIME;
         private EventLoopGroup ioPool;
         private Scheduler scheduler;
 
@@ -574,6 +738,176 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
             return this;
         }
 
+        @Override
+        public int requestShards() {
+            return requestShards;
+        }
+
+        public Builder requestShards(final int requestShards) {
+            this.requestShards = requestShards;
+            return this;
+        }
+
+        @Override
+        public boolean responseFastPath() {
+            return responseFastPath;
+        }
+
+        public Builder responseFastPath(final boolean responseFastPath) {
+            this.responseFastPath = responseFastPath;
+            return this;
+        }
+
+        @Override
+        public WaitStrategyType requestBufferWaitStrategy() {
+            return requestBufferWaitStrategy;
+        }
+
+        public Builder requestBufferWaitStrategy(final WaitStrategyType requestBufferWaitStrategy) {
+            this.requestBufferWaitStrategy = requestBufferWaitStrategy;
+            return this;
+        }
+
+        @Override
+        public WaitStrategyType responseBufferWaitStrategy() {
+            return responseBufferWaitStrategy;
+        }
+
+        public Builder responseBufferWaitStrategy(final WaitStrategyType responseBufferWaitStrategy) {
+            this.responseBufferWaitStrategy = responseBufferWaitStrategy;
+            return this;
+        }
+
+        @Override
+        public BackpressureStrategy backpressureStrategy() {
+            return backpressureStrategy;
+        }
+
+        public Builder backpressureStrategy(final BackpressureStrategy backpressureStrategy) {
+            this.backpressureStrategy = backpressureStrategy;
+            return this;
+        }
+
+        @Override
+        public long backpressureMaxWaitMicros() {
+            return backpressureMaxWaitMicros;
+        }
+
+        public Builder backpressureMaxWaitMicros(final long backpressureMaxWaitMicros) {
+            this.backpressureMaxWaitMicros = backpressureMaxWaitMicros;
+            return this;
+        }
+
+        @Override
+        public int tokenBucketRate() {
+            return tokenBucketRate;
+        }
+
+        public Builder tokenBucketRate(final int tokenBucketRate) {
+            this.tokenBucketRate = tokenBucketRate;
+            return this;
+        }
+
+        @Override
+        public int tokenBucketCapacity() {
+            return tokenBucketCapacity;
+        }
+
+        public Builder tokenBucketCapacity(final int tokenBucketCapacity) {
+            this.tokenBucketCapacity = tokenBucketCapacity;
+            return this;
+        }
+
+        @Override
+        public RetryStrategy retryStrategy() {
+            return retryStrategy;
+        }
+
+        public Builder retryStrategy(final RetryStrategy retryStrategy) {
+            this.retryStrategy = retryStrategy;
+            return this;
+        }
+
+        @Override
+        public int retryBudget() {
+            return retryBudget;
+        }
+
+        public Builder retryBudget(final int retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        @Override
+        public boolean directKeyValueEncoding() {
+            return directKeyValueEncoding;
+        }
+
+        public Builder directKeyValueEncoding(final boolean directKeyValueEncoding) {
+            this.directKeyValueEncoding = directKeyValueEncoding;
+            return this;
+        }
+
+        @Override
+        public boolean tcpNodelayEnabled() {
+            return tcpNodelayEnabled;
+        }
+
+        public Builder tcpNodelayEnabled(final boolean tcpNodelayEnabled) {
+            this.tcpNodelayEnabled = tcpNodelayEnabled;
+            return this;
+        }
+
+        @Override
+        public long flushDelay() {
+            return flushDelay;
+        }
+
+        public Builder flushDelay(final long flushDelay) {
+            this.flushDelay = flushDelay;
+            return this;
+        }
+
+        @Override
+        public int flushMaxBytes() {
+            return flushMaxBytes;
+        }
+
+        public Builder flushMaxBytes(final int flushMaxBytes) {
+            this.flushMaxBytes = flushMaxBytes;
+            return this;
+        }
+
+        @Override
+        public int viewMaxEndpoints() {
+            return viewMaxEndpoints;
+        }
+
+        public Builder viewMaxEndpoints(final int viewMaxEndpoints) {
+            this.viewMaxEndpoints = viewMaxEndpoints;
+            return this;
+        }
+
+        @Override
+        public int queryMaxEndpoints() {
+            return queryMaxEndpoints;
+        }
+
+        public Builder queryMaxEndpoints(final int queryMaxEndpoints) {
+            this.queryMaxEndpoints = queryMaxEndpoints;
+            return this;
+        }
+
+        @Override
+        public long endpointIdleTime() {
+            return endpointIdleTime;
+        }
+
+        public Builder endpointIdleTime(final long endpointIdleTime) {
+            this.endpointIdleTime = endpointIdleTime;
+            return this;
+        }
+
         @Override
         public String userAgent() {
             return userAgent;
@@ -645,6 +979,23 @@ public class DefaultCoreEnvironment implements CoreEnvironment {
         sb.append(", kvServiceEndpoints=").append(kvServiceEndpoints);
         sb.append(", viewServiceEndpoints=").append(viewServiceEndpoints);
         sb.append(", queryServiceEndpoints=").append(queryServiceEndpoints);
+        sb.append(", requestShards=").append(requestShards);
+        sb.append(", responseFastPath=").append(responseFastPath);
+        sb.append(", requestBufferWaitStrategy=").append(requestBufferWaitStrategy);
+        sb.append(", responseBufferWaitStrategy=").append(responseBufferWaitStrategy);
+        sb.append(", backpressureStrategy=").append(backpressureStrategy);
+        sb.append(", backpressureMaxWaitMicros=").append(backpressureMaxWaitMicros);
+        sb.append(", tokenBucketRate=").append(tokenBucketRate);
+        sb.append(", tokenBucketCapacity=").append(tokenBucketCapacity);
+        sb.append(", retryStrategy=").append(retryStrategy);
+        sb.append(", retryBudget=").append(retryBudget);
+        sb.append(", directKeyValueEncoding=").append(directKeyValueEncoding);
+        sb.append(", tcpNodelayEnabled=").append(tcpNodelayEnabled);
+        sb.append(", flushDelay=").append(flushDelay);
+        sb.append(", flushMaxBytes=").append(flushMaxBytes);
+        sb.append(", viewMaxEndpoints=").append(viewMaxEndpoints);
+        sb.append(", queryMaxEndpoints=").append(queryMaxEndpoints);
+        sb.append(", endpointIdleTime=").append(endpointIdleTime);
         sb.append(", ioPool=").append(ioPool.getClass().getSimpleName());
         sb.append(", coreScheduler=").append(coreScheduler.getClass().getSimpleName());
         sb.append(", packageNameAndVersion=").append(packageNameAndVersion);
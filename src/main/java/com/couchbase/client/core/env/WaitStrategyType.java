@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.env;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.PhasedBackoffWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The strategies a request or response RingBuffer consumer can use to wait for new events.
+ *
+ * The choice is a tradeoff between latency and CPU usage: {@link #BUSY_SPIN} and {@link #YIELDING} keep the
+ * consuming thread hot and give the lowest latency, while {@link #BLOCKING} and {@link #SLEEPING} free the CPU
+ * when there is nothing to do.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public enum WaitStrategyType {
+
+    /**
+     * Uses a lock and condition variable, which needs to be signalled on every publish.
+     */
+    BLOCKING {
+        @Override
+        public WaitStrategy newWaitStrategy() {
+            return new BlockingWaitStrategy();
+        }
+    },
+
+    /**
+     * Spins, then yields and finally parks for short periods. Good for batch workloads which should not burn CPU.
+     */
+    SLEEPING {
+        @Override
+        public WaitStrategy newWaitStrategy() {
+            return new SleepingWaitStrategy();
+        }
+    },
+
+    /**
+     * Spins and then yields the thread, low latency without fully occupying a core.
+     */
+    YIELDING {
+        @Override
+        public WaitStrategy newWaitStrategy() {
+            return new YieldingWaitStrategy();
+        }
+    },
+
+    /**
+     * Spins on the consuming thread all the time, lowest latency but occupies a full core per RingBuffer.
+     */
+    BUSY_SPIN {
+        @Override
+        public WaitStrategy newWaitStrategy() {
+            return new BusySpinWaitStrategy();
+        }
+    },
+
+    /**
+     * Spins for one millisecond, yields for another one and then falls back to {@link #BLOCKING}.
+     */
+    PHASED_BACKOFF {
+        @Override
+        public WaitStrategy newWaitStrategy() {
+            return PhasedBackoffWaitStrategy.withLock(1, 1, TimeUnit.MILLISECONDS);
+        }
+    };
+
+    /**
+     * Creates a new {@link WaitStrategy} instance for one RingBuffer.
+     *
+     * @return the new wait strategy.
+     */
+    public abstract WaitStrategy newWaitStrategy();
+
+}
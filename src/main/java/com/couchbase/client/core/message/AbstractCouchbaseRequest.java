@@ -21,9 +21,12 @@
  */
 package com.couchbase.client.core.message;
 
+import io.netty.util.Timeout;
 import rx.subjects.AsyncSubject;
 import rx.subjects.Subject;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Default implementation for a {@link CouchbaseRequest}, should be extended by child messages.
  *
@@ -47,6 +50,26 @@ public abstract class AbstractCouchbaseRequest implements CouchbaseRequest {
      */
     private final String password;
 
+    /**
+     * The time when the request has been created.
+     */
+    private final long creationTime;
+
+    /**
+     * The number of retries, only modified from the response handler.
+     */
+    private volatile int retryCount;
+
+    /**
+     * The deadline in nanoseconds, 0 if there is none.
+     */
+    private volatile long deadline;
+
+    /**
+     * The deadline timer task, null if none is armed.
+     */
+    private volatile Timeout deadlineTimeout;
+
     /**
      * Create a new {@link AbstractCouchbaseRequest}.
      *
@@ -78,6 +101,7 @@ public abstract class AbstractCouchbaseRequest implements CouchbaseRequest {
         this.bucket = bucket;
         this.password = password;
         this.observable = observable;
+        this.creationTime = System.nanoTime();
     }
 
     @Override
@@ -95,11 +119,50 @@ public abstract class AbstractCouchbaseRequest implements CouchbaseRequest {
         return password;
     }
 
+    @Override
+    public long creationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public int retryCount() {
+        return retryCount;
+    }
+
+    @Override
+    public int incrementRetryCount() {
+        return ++retryCount;
+    }
+
+    @Override
+    public long deadline() {
+        return deadline;
+    }
+
+    @Override
+    public CouchbaseRequest timeout(final long timeout, final TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        this.deadline = deadline == 0 ? 1 : deadline;
+        return this;
+    }
+
+    @Override
+    public void deadlineTimeout(final Timeout timeout) {
+        this.deadlineTimeout = timeout;
+    }
+
+    @Override
+    public boolean timedOut() {
+        Timeout timeout = deadlineTimeout;
+        return timeout != null && timeout.isExpired();
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder(this.getClass().getSimpleName() + "{");
         sb.append("observable=").append(observable);
         sb.append(", bucket='").append(bucket).append('\'');
+        sb.append(", retryCount=").append(retryCount);
         sb.append('}');
         return sb.toString();
     }
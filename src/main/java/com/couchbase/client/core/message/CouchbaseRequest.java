@@ -21,9 +21,11 @@
  */
 package com.couchbase.client.core.message;
 
+import io.netty.util.Timeout;
 import rx.subjects.Subject;
 
 import java.util.Observable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * High-Level marker interface for all {@link CouchbaseRequest}s.
@@ -54,4 +56,60 @@ public interface CouchbaseRequest extends CouchbaseMessage {
      */
     String password();
 
+    /**
+     * The time when the request has been created, as returned by {@link System#nanoTime()}.
+     *
+     * @return the creation time in nanoseconds.
+     */
+    long creationTime();
+
+    /**
+     * The number of times this request has been retried so far.
+     *
+     * @return the retry count.
+     */
+    int retryCount();
+
+    /**
+     * Increments the retry count of this request.
+     *
+     * @return the retry count including this retry.
+     */
+    int incrementRetryCount();
+
+    /**
+     * The deadline of this request, as compared to {@link System#nanoTime()}.
+     *
+     * @return the deadline in nanoseconds, or 0 if the request has none.
+     */
+    long deadline();
+
+    /**
+     * Sets the deadline of this request relative to now.
+     *
+     * Once the deadline passes, the request is failed with a
+     * {@link com.couchbase.client.core.RequestTimeoutException} and no longer retried.
+     *
+     * @param timeout the time the request may take.
+     * @param unit the unit of the timeout.
+     * @return the {@link CouchbaseRequest} for proper chaining.
+     */
+    CouchbaseRequest timeout(long timeout, TimeUnit unit);
+
+    /**
+     * Attaches the timer task which fails this request once its deadline passes.
+     *
+     * @param timeout the armed deadline timer task.
+     */
+    void deadlineTimeout(Timeout timeout);
+
+    /**
+     * Checks if the deadline timer of this request fired, so the request has been failed already.
+     *
+     * A response which arrives for such a request has nobody to go to anymore and needs to be released.
+     *
+     * @return true if the request timed out.
+     */
+    boolean timedOut();
+
 }
@@ -0,0 +1,420 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.CouchbaseResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+import rx.Subscriber;
+import rx.subjects.ReplaySubject;
+import rx.subjects.SerializedSubject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Common parts of the requests which work on many keys at once and get written as one pipeline per node.
+ *
+ * The request the caller sends (the root) is split up by the node which owns the partition of each key. Every part
+ * carries a subset of the keys by their index in the root and reports back into it: the responses collected on a
+ * part are handed to the caller once the whole part has been answered, and the observable of the root completes
+ * once every key has been answered. Keys which hit a "not my vbucket" response are split off into a new part and
+ * sent again. Parts share the deadline of the root: once it has passed, they count as timed out as well.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public abstract class AbstractBulkRequest extends AbstractKeyValueRequest {
+
+    /**
+     * The request the caller sent, this for the root itself.
+     */
+    private final AbstractBulkRequest root;
+
+    /**
+     * The indexes of the keys of this part in the root, null for the root itself.
+     */
+    private final int[] indexes;
+
+    private final String[] keys;
+    private final byte[][] keyBytes;
+    private final short[] partitions;
+
+    /**
+     * The number of keys not answered yet, only used on the root.
+     */
+    private final AtomicInteger remaining;
+
+    /**
+     * If a part failed and with it the whole request, only used on the root.
+     */
+    private volatile boolean failed;
+
+    /**
+     * The responses collected for a part, only accessed from the event loop until the part has been answered.
+     */
+    private List<BinaryResponse> results;
+
+    /**
+     * The indexes of the keys of a part which need to be retried.
+     */
+    private List<Integer> retries;
+
+    /**
+     * The configuration sent along with the first "not my vbucket" response of a part, if any.
+     */
+    private ByteBuf retryConfig;
+
+    /**
+     * Creates a new root request.
+     *
+     * @param keys the keys of the documents.
+     * @param bucket the bucket of the documents.
+     * @param password the password of the bucket.
+     */
+    protected AbstractBulkRequest(final String[] keys, final String bucket, final String password) {
+        super(null, bucket, password,
+            new SerializedSubject<CouchbaseResponse, CouchbaseResponse>(ReplaySubject.<CouchbaseResponse>create()));
+        this.root = this;
+        this.indexes = null;
+        this.keys = keys;
+        this.keyBytes = new byte[keys.length][];
+        this.partitions = new short[keys.length];
+        this.remaining = new AtomicInteger(keys.length);
+        if (keys.length == 0) {
+            observable().onCompleted();
+        }
+    }
+
+    /**
+     * Creates a new part of the given root request.
+     *
+     * @param root the root request.
+     * @param indexes the indexes of the keys in the root.
+     */
+    protected AbstractBulkRequest(final AbstractBulkRequest root, final int[] indexes) {
+        super(null, root.bucket(), root.password());
+        this.root = root;
+        this.indexes = indexes;
+        this.keys = root.keys;
+        this.keyBytes = root.keyBytes;
+        this.partitions = root.partitions;
+        this.remaining = null;
+        observable().subscribe(new PartSubscriber(this));
+    }
+
+    /**
+     * Creates the part of the concrete type for the given keys.
+     *
+     * @param indexes the indexes of the keys in the root.
+     * @return the new part.
+     */
+    protected abstract AbstractBulkRequest newPart(int[] indexes);
+
+    /**
+     * The request the caller sent.
+     *
+     * @return the root request.
+     */
+    public AbstractBulkRequest root() {
+        return root;
+    }
+
+    /**
+     * Maps the index of a key in this request to its index in the root.
+     *
+     * @param index the index in this request.
+     * @return the index in the root.
+     */
+    protected int rootIndex(final int index) {
+        return indexes == null ? index : indexes[index];
+    }
+
+    /**
+     * The number of keys in this request.
+     *
+     * @return the number of keys.
+     */
+    public int size() {
+        return indexes == null ? keys.length : indexes.length;
+    }
+
+    /**
+     * The key at the given index.
+     *
+     * @param index the index of the key.
+     * @return the key.
+     */
+    public String key(final int index) {
+        return keys[rootIndex(index)];
+    }
+
+    /**
+     * The UTF-8 encoded key at the given index, encoded on first access.
+     *
+     * @param index the index of the key.
+     * @return the encoded key.
+     */
+    public byte[] keyBytes(final int index) {
+        int rootIndex = rootIndex(index);
+        byte[] bytes = keyBytes[rootIndex];
+        if (bytes == null) {
+            bytes = keys[rootIndex].getBytes(CharsetUtil.UTF_8);
+            keyBytes[rootIndex] = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * The partition of the key at the given index, as set by the locator.
+     *
+     * @param index the index of the key.
+     * @return the partition.
+     */
+    public short partition(final int index) {
+        return partitions[rootIndex(index)];
+    }
+
+    /**
+     * Set the partition of the key at the given index.
+     *
+     * @param index the index of the key.
+     * @param partition the partition.
+     */
+    public void partition(final int index, final short partition) {
+        partitions[rootIndex(index)] = partition;
+    }
+
+    /**
+     * A bulk request has no single partition.
+     *
+     * @return always the default partition.
+     */
+    @Override
+    public short partition() {
+        return DEFAULT_PARTITION;
+    }
+
+    /**
+     * Creates a new part carrying the keys at the given indexes, which reports back into the root request.
+     *
+     * @param indexes the indexes of the keys to include.
+     * @return the new part.
+     */
+    public AbstractBulkRequest part(final int[] indexes) {
+        int[] rootIndexes = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            rootIndexes[i] = rootIndex(indexes[i]);
+        }
+
+        AbstractBulkRequest part = newPart(rootIndexes);
+        for (int i = 0; i < retryCount(); i++) {
+            part.incrementRetryCount();
+        }
+        long deadline = root.deadline();
+        if (deadline != 0) {
+            part.timeout(Math.max(1, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        return part;
+    }
+
+    /**
+     * A part times out together with its root, since only the deadline timer of the root is armed.
+     */
+    @Override
+    public boolean timedOut() {
+        return root == this ? super.timedOut() : root.timedOut();
+    }
+
+    /**
+     * Adds a response to be handed to the caller once this part has been answered.
+     *
+     * @param result the response.
+     */
+    public void addResult(final BinaryResponse result) {
+        if (results == null) {
+            results = new ArrayList<BinaryResponse>();
+        }
+        results.add(result);
+    }
+
+    /**
+     * Marks the key at the given index of this part to be retried.
+     *
+     * If the response carried a configuration and none has been kept yet, the part takes ownership of it, otherwise
+     * it is released.
+     *
+     * @param index the index of the key.
+     * @param config the content of the "not my vbucket" response.
+     */
+    public void retry(final int index, final ByteBuf config) {
+        if (retries == null) {
+            retries = new ArrayList<Integer>();
+        }
+        retries.add(index);
+        if (retryConfig == null && config.isReadable()) {
+            retryConfig = config;
+        } else {
+            config.release();
+        }
+    }
+
+    /**
+     * Checks if the key at the given index of this part has been marked to be retried.
+     *
+     * @param index the index of the key.
+     * @return true if it will be retried.
+     */
+    public boolean retried(final int index) {
+        return retries != null && retries.contains(index);
+    }
+
+    /**
+     * The configuration kept from the "not my vbucket" responses of this part.
+     *
+     * @return the configuration, or null if none has been sent.
+     */
+    public ByteBuf retryConfig() {
+        return retryConfig;
+    }
+
+    /**
+     * Creates a part out of all keys marked to be retried.
+     *
+     * @return the part to retry, or null if there is nothing to retry.
+     */
+    public AbstractBulkRequest retryPart() {
+        if (retries == null) {
+            return null;
+        }
+        int[] retryIndexes = new int[retries.size()];
+        for (int i = 0; i < retryIndexes.length; i++) {
+            retryIndexes[i] = retries.get(i);
+        }
+        return part(retryIndexes);
+    }
+
+    /**
+     * Releases what a request still holds once it failed, called once per failed part or root.
+     *
+     * The default implementation does nothing, since the collected responses are released already.
+     */
+    public void releaseOnFailure() {
+    }
+
+    /**
+     * Releases the responses collected on this part, which will not be handed to the caller anymore.
+     */
+    public void releaseResults() {
+        if (results != null) {
+            for (BinaryResponse result : results) {
+                if (result.content() != null && result.content().refCnt() > 0) {
+                    result.content().release();
+                }
+            }
+            results = null;
+        }
+    }
+
+    /**
+     * Releases everything this part still holds when it is dropped without being answered.
+     *
+     * Called once the root timed out and the part is not waited for anymore.
+     */
+    public void discard() {
+        releaseResults();
+        if (retryConfig != null && retryConfig.refCnt() > 0) {
+            retryConfig.release();
+        }
+        releaseOnFailure();
+    }
+
+    /**
+     * Hands the results of an answered part to the caller and completes once all keys have been answered.
+     *
+     * If the request already failed or timed out, its observable is terminated and the results are released instead.
+     *
+     * @param part the answered part.
+     */
+    private void partCompleted(final AbstractBulkRequest part) {
+        if (failed || timedOut()) {
+            part.releaseResults();
+            return;
+        }
+        if (part.results != null) {
+            for (BinaryResponse result : part.results) {
+                observable().onNext(result);
+            }
+        }
+        int answered = part.size() - (part.retries == null ? 0 : part.retries.size());
+        if (remaining.addAndGet(-answered) == 0) {
+            observable().onCompleted();
+        }
+    }
+
+    /**
+     * Fails the whole request because one of its parts failed.
+     *
+     * @param part the failed part.
+     * @param error the error.
+     */
+    private void partFailed(final AbstractBulkRequest part, final Throwable error) {
+        failed = true;
+        part.releaseResults();
+        part.releaseOnFailure();
+        observable().onError(error);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" + "bucket='" + bucket() + '\'' + ", keys=" + size() + '}';
+    }
+
+    /**
+     * Reports the outcome of a part into its root.
+     */
+    private static class PartSubscriber extends Subscriber<CouchbaseResponse> {
+
+        private final AbstractBulkRequest part;
+
+        PartSubscriber(final AbstractBulkRequest part) {
+            this.part = part;
+        }
+
+        @Override
+        public void onNext(final CouchbaseResponse response) {
+            part.root.partCompleted(part);
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            part.root.partFailed(part, e);
+        }
+
+        @Override
+        public void onCompleted() {
+            // the part is reported with its response already.
+        }
+    }
+}
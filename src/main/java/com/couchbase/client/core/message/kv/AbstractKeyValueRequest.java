@@ -22,6 +22,9 @@
 package com.couchbase.client.core.message.kv;
 
 import com.couchbase.client.core.message.AbstractCouchbaseRequest;
+import com.couchbase.client.core.message.CouchbaseResponse;
+import io.netty.util.CharsetUtil;
+import rx.subjects.Subject;
 
 /**
  * Default implementation of a {@link BinaryRequest}.
@@ -31,26 +34,33 @@ import com.couchbase.client.core.message.AbstractCouchbaseRequest;
  */
 public abstract class AbstractKeyValueRequest extends AbstractCouchbaseRequest implements BinaryRequest {
 
-    /**
-     * The opaque identifier used in the binary protocol to track requests/responses.
-     *
-     * No overflow control is applied, since once it overflows it starts with negative values again.
-     */
-    private static volatile int GLOBAL_OPAQUE = 0;
-
     protected static final short DEFAULT_PARTITION = -1;
 
+    private static final byte[] EMPTY_KEY = new byte[0];
+
     /**
      * The key of the document, should be null if not tied to any.
      */
     private final String key;
 
+    /**
+     * The UTF-8 encoded key, computed lazily.
+     *
+     * Like the hash code of a {@link String}, racing threads would only compute the same bytes twice.
+     */
+    private byte[] keyBytes;
+
     /**
      * The partition (vbucket) of the document.
      */
     private short partition = DEFAULT_PARTITION;
 
-    private final int opaque;
+    /**
+     * The opaque identifier used in the binary protocol to track requests/responses.
+     *
+     * Assigned by the handler on the event loop every time the request gets written.
+     */
+    private int opaque;
 
     /**
      * Creates a new {@link AbstractKeyValueRequest}.
@@ -62,7 +72,20 @@ public abstract class AbstractKeyValueRequest extends AbstractCouchbaseRequest i
     protected AbstractKeyValueRequest(String key, String bucket, String password) {
         super(bucket, password);
         this.key = key;
-        opaque = GLOBAL_OPAQUE++;
+    }
+
+    /**
+     * Creates a new {@link AbstractKeyValueRequest} with a custom observable.
+     *
+     * @param key the key of the document.
+     * @param bucket the bucket of the document.
+     * @param password the optional password of the bucket.
+     * @param observable the observable which receives the responses.
+     */
+    protected AbstractKeyValueRequest(String key, String bucket, String password,
+        Subject<CouchbaseResponse, CouchbaseResponse> observable) {
+        super(bucket, password, observable);
+        this.key = key;
     }
 
     @Override
@@ -70,6 +93,16 @@ public abstract class AbstractKeyValueRequest extends AbstractCouchbaseRequest i
         return key;
     }
 
+    @Override
+    public byte[] keyBytes() {
+        byte[] bytes = keyBytes;
+        if (bytes == null) {
+            bytes = key == null ? EMPTY_KEY : key.getBytes(CharsetUtil.UTF_8);
+            keyBytes = bytes;
+        }
+        return bytes;
+    }
+
     @Override
     public short partition() {
         if (partition == -1) {
@@ -91,4 +124,10 @@ public abstract class AbstractKeyValueRequest extends AbstractCouchbaseRequest i
     public int opaque() {
         return opaque;
     }
+
+    @Override
+    public BinaryRequest opaque(int opaque) {
+        this.opaque = opaque;
+        return this;
+    }
 }
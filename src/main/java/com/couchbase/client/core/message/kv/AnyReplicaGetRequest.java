@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.CouchbaseResponse;
+import io.netty.buffer.ByteBuf;
+import rx.Subscriber;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetch a document from whichever copy (the active one or any replica) is expected to answer fastest.
+ *
+ * The request itself is never written, instead the core sends a {@link GetRequest} or {@link ReplicaGetRequest}
+ * (a copy) to the healthy node with the lowest average response time. If hedging is enabled and no response arrived
+ * within the estimated 95th percentile of that node, another copy is sent to the next fastest node. The first
+ * successful response completes this request; if all copies fail, the last failure is passed on. Responses which
+ * arrive after that, or after this request timed out, are released.
+ *
+ * Copies are not armed with a timer of their own, instead they count as timed out once their deadline passed, so
+ * copies stuck on a stalled node are swept by the endpoint.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class AnyReplicaGetRequest extends AbstractKeyValueRequest {
+
+    /**
+     * If another copy should be requested once the first one is late.
+     */
+    private final boolean hedged;
+
+    /**
+     * The number of copies sent which did not answer yet.
+     */
+    private final AtomicInteger outstanding;
+
+    /**
+     * Set once a response (or error) has been passed on.
+     */
+    private final AtomicBoolean done;
+
+    public AnyReplicaGetRequest(final String key, final String bucket, final boolean hedged) {
+        this(key, bucket, null, hedged);
+    }
+
+    public AnyReplicaGetRequest(final String key, final String bucket, final String password, final boolean hedged) {
+        super(key, bucket, password);
+        this.hedged = hedged;
+        this.outstanding = new AtomicInteger();
+        this.done = new AtomicBoolean();
+    }
+
+    /**
+     * Returns if another copy should be requested once the first one is late.
+     *
+     * @return true if hedging is enabled.
+     */
+    public boolean hedged() {
+        return hedged;
+    }
+
+    /**
+     * Returns if a response has been passed on already or this request timed out, so no more copies need to be sent.
+     *
+     * @return true if this request is done.
+     */
+    public boolean done() {
+        return done.get() || timedOut();
+    }
+
+    /**
+     * Creates a copy of this request which reads from the given replica and reports back into this request.
+     *
+     * @param replica the replica to read from, 0 for the active copy.
+     * @return the copy to send.
+     */
+    public BinaryRequest copy(final short replica) {
+        AbstractKeyValueRequest copy = replica == 0
+            ? new CopyGetRequest(key(), bucket())
+            : new CopyReplicaGetRequest(key(), bucket(), replica);
+        long deadline = deadline();
+        if (deadline != 0) {
+            copy.timeout(Math.max(1, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        outstanding.incrementAndGet();
+        copy.observable().subscribe(new CopySubscriber());
+        return copy;
+    }
+
+    /**
+     * Passes on the response of a copy if it is the first successful one or the last one outstanding.
+     */
+    private void copyCompleted(final CouchbaseResponse response) {
+        int remaining = outstanding.decrementAndGet();
+        if (timedOut()) {
+            done.set(true);
+            release(response);
+        } else if ((response.status().isSuccess() || remaining == 0) && done.compareAndSet(false, true)) {
+            observable().onNext(response);
+            observable().onCompleted();
+        } else {
+            release(response);
+        }
+    }
+
+    /**
+     * Releases the content of a response which is not passed on.
+     */
+    private static void release(final CouchbaseResponse response) {
+        if (response instanceof BinaryResponse) {
+            ByteBuf content = ((BinaryResponse) response).content();
+            if (content != null && content.refCnt() > 0) {
+                content.release();
+            }
+        }
+    }
+
+    /**
+     * Returns if a copy timed out, either because this request did or because the deadline of the copy passed.
+     */
+    private boolean copyTimedOut(final AbstractKeyValueRequest copy) {
+        long deadline = copy.deadline();
+        return timedOut() || (deadline != 0 && System.nanoTime() - deadline >= 0);
+    }
+
+    /**
+     * A copy reading from the active node.
+     */
+    private class CopyGetRequest extends GetRequest {
+
+        CopyGetRequest(final String key, final String bucket) {
+            super(key, bucket);
+        }
+
+        @Override
+        public boolean timedOut() {
+            return copyTimedOut(this);
+        }
+    }
+
+    /**
+     * A copy reading from a replica node.
+     */
+    private class CopyReplicaGetRequest extends ReplicaGetRequest {
+
+        CopyReplicaGetRequest(final String key, final String bucket, final short replica) {
+            super(key, bucket, replica);
+        }
+
+        @Override
+        public boolean timedOut() {
+            return copyTimedOut(this);
+        }
+    }
+
+    /**
+     * Passes on the error of a copy if it is the last one outstanding.
+     */
+    private void copyFailed(final Throwable e) {
+        if (outstanding.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+            observable().onError(e);
+        }
+    }
+
+    /**
+     * Reports the outcome of a copy into this request.
+     */
+    private class CopySubscriber extends Subscriber<CouchbaseResponse> {
+
+        @Override
+        public void onNext(final CouchbaseResponse response) {
+            copyCompleted(response);
+        }
+
+        @Override
+        public void onError(final Throwable e) {
+            copyFailed(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            // the copy is reported with its response already.
+        }
+    }
+}
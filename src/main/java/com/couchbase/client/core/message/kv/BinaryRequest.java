@@ -38,6 +38,16 @@ public interface BinaryRequest extends CouchbaseRequest {
      */
     String key();
 
+    /**
+     * The key of the document, encoded as UTF-8.
+     *
+     * The key is encoded on first access and the bytes are cached, so hashing, encoding and retries all share
+     * the same array. It must not be modified.
+     *
+     * @return the encoded key, an empty array if there is none.
+     */
+    byte[] keyBytes();
+
     /**
      * The partition (vbucket) to use for this request.
      *
@@ -56,7 +66,17 @@ public interface BinaryRequest extends CouchbaseRequest {
     /**
      * A opaque value representing this request.
      *
-     * @return an automatically generated opaque value.
+     * @return the opaque value assigned when the request has been written to the connection.
      */
     int opaque();
+
+    /**
+     * Set the opaque value.
+     *
+     * This is done by the handler when the request gets encoded, so it is only unique per connection.
+     *
+     * @param opaque the opaque value.
+     * @return the {@link BinaryRequest} for proper chaining.
+     */
+    BinaryRequest opaque(int opaque);
 }
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import java.util.List;
+
+/**
+ * Fetches many documents at once and streams back a {@link BulkGetResponse} for every document found.
+ *
+ * Every part is written as one pipeline of quiet gets followed by a noop, so keys which do not exist cost no
+ * response at all. Only documents which have been found (or failed with an error other than "not found") are
+ * emitted, the observable completes once every key has been answered.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class BulkGetRequest extends AbstractBulkRequest {
+
+    /**
+     * Creates a new {@link BulkGetRequest}.
+     *
+     * @param keys the keys of the documents.
+     * @param bucket the bucket of the documents.
+     */
+    public BulkGetRequest(final List<String> keys, final String bucket) {
+        this(keys, bucket, null);
+    }
+
+    /**
+     * Creates a new {@link BulkGetRequest}.
+     *
+     * @param keys the keys of the documents.
+     * @param bucket the bucket of the documents.
+     * @param password the password of the bucket.
+     */
+    public BulkGetRequest(final List<String> keys, final String bucket, final String password) {
+        super(keys.toArray(new String[keys.size()]), bucket, password);
+    }
+
+    private BulkGetRequest(final BulkGetRequest root, final int[] indexes) {
+        super(root, indexes);
+    }
+
+    @Override
+    protected BulkGetRequest newPart(final int[] indexes) {
+        return new BulkGetRequest((BulkGetRequest) root(), indexes);
+    }
+
+    @Override
+    public BulkGetRequest part(final int[] indexes) {
+        return (BulkGetRequest) super.part(indexes);
+    }
+
+    @Override
+    public BulkGetRequest retryPart() {
+        return (BulkGetRequest) super.retryPart();
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.List;
+
+/**
+ * Applies many mutations at once and streams back only the ones which failed.
+ *
+ * The mutations are regular {@link UpsertRequest}s, {@link InsertRequest}s, {@link ReplaceRequest}s and
+ * {@link RemoveRequest}s which are never sent on their own. Every part is written as one pipeline of the quiet
+ * variants of their opcodes followed by a noop, so the server only answers mutations which did not succeed. For
+ * those the usual response (for example an {@link InsertResponse} with {@link
+ * com.couchbase.client.core.message.ResponseStatus#EXISTS}) is emitted, with the mutation as its request. The
+ * observable completes once every mutation has been answered.
+ *
+ * Like with the single requests, the content of the mutations is released once they have been answered.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class BulkMutationRequest extends AbstractBulkRequest {
+
+    /**
+     * The mutations, shared by the root and all of its parts.
+     */
+    private final BinaryRequest[] mutations;
+
+    /**
+     * Creates a new {@link BulkMutationRequest}.
+     *
+     * @param mutations the mutations to apply.
+     * @param bucket the bucket of the documents.
+     */
+    public BulkMutationRequest(final List<? extends BinaryRequest> mutations, final String bucket) {
+        this(mutations, bucket, null);
+    }
+
+    /**
+     * Creates a new {@link BulkMutationRequest}.
+     *
+     * @param mutations the mutations to apply.
+     * @param bucket the bucket of the documents.
+     * @param password the password of the bucket.
+     */
+    public BulkMutationRequest(final List<? extends BinaryRequest> mutations, final String bucket,
+        final String password) {
+        super(keys(mutations), bucket, password);
+        this.mutations = mutations.toArray(new BinaryRequest[mutations.size()]);
+    }
+
+    private BulkMutationRequest(final BulkMutationRequest root, final int[] indexes) {
+        super(root, indexes);
+        this.mutations = root.mutations;
+    }
+
+    /**
+     * Collects the keys of the mutations and makes sure only supported mutations are passed in.
+     */
+    private static String[] keys(final List<? extends BinaryRequest> mutations) {
+        String[] keys = new String[mutations.size()];
+        for (int i = 0; i < keys.length; i++) {
+            BinaryRequest mutation = mutations.get(i);
+            if (!(mutation instanceof BinaryStoreRequest || mutation instanceof RemoveRequest)) {
+                throw new IllegalArgumentException("Unsupported mutation in bulk: " + mutation);
+            }
+            keys[i] = mutation.key();
+        }
+        return keys;
+    }
+
+    /**
+     * The mutation at the given index.
+     *
+     * @param index the index of the mutation.
+     * @return the mutation.
+     */
+    public BinaryRequest mutation(final int index) {
+        return mutations[rootIndex(index)];
+    }
+
+    /**
+     * The encoded key is taken from the mutation, which caches it already.
+     */
+    @Override
+    public byte[] keyBytes(final int index) {
+        return mutation(index).keyBytes();
+    }
+
+    /**
+     * Releases the content of the mutation at the given index, if it carries one.
+     *
+     * @param index the index of the mutation.
+     */
+    public void releaseContent(final int index) {
+        BinaryRequest mutation = mutation(index);
+        if (mutation instanceof BinaryStoreRequest) {
+            ByteBuf content = ((BinaryStoreRequest) mutation).content();
+            if (content != null && content.refCnt() > 0) {
+                content.release();
+            }
+        }
+    }
+
+    @Override
+    public void releaseOnFailure() {
+        for (int i = 0; i < size(); i++) {
+            releaseContent(i);
+        }
+    }
+
+    @Override
+    protected BulkMutationRequest newPart(final int[] indexes) {
+        return new BulkMutationRequest((BulkMutationRequest) root(), indexes);
+    }
+
+    @Override
+    public BulkMutationRequest part(final int[] indexes) {
+        return (BulkMutationRequest) super.part(indexes);
+    }
+
+    @Override
+    public BulkMutationRequest retryPart() {
+        return (BulkMutationRequest) super.retryPart();
+    }
+}
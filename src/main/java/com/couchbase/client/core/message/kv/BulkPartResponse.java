@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.ResponseStatus;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Signals that all keys of one part of an {@link AbstractBulkRequest} have been answered by the server.
+ *
+ * This response is only used inside the core and never reaches the caller. With a {@link ResponseStatus#SUCCESS}
+ * status the results collected on its request are handed to the caller, with {@link ResponseStatus#RETRY} its
+ * request holds the keys which need to be sent again (and the content the configuration which came with the
+ * "not my vbucket" response).
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class BulkPartResponse extends AbstractKeyValueResponse {
+
+    public BulkPartResponse(final ResponseStatus status, final String bucket, final ByteBuf content,
+        final AbstractBulkRequest request) {
+        super(status, bucket, content, request);
+    }
+
+    @Override
+    public AbstractBulkRequest request() {
+        return (AbstractBulkRequest) super.request();
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the counters and gauges collected by the core, like rejected requests or RingBuffer occupancy.
+ *
+ * Counters are meant to be incremented on exceptional paths (rejections, retries), not once per operation. All
+ * values can be sampled together through {@link #snapshot()}, which makes it easy to export them into whatever
+ * metrics system is used by the application.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class CoreMetrics {
+
+    private final ConcurrentMap<String, AtomicLong> counters;
+    private final ConcurrentMap<String, Gauge> gauges;
+
+    /**
+     * Creates a new and empty {@link CoreMetrics}.
+     */
+    public CoreMetrics() {
+        counters = new ConcurrentHashMap<String, AtomicLong>();
+        gauges = new ConcurrentHashMap<String, Gauge>();
+    }
+
+    /**
+     * Increments the counter with the given name by one, creating it if needed.
+     *
+     * @param name the name of the counter.
+     */
+    public void increment(final String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Returns the current value of the counter with the given name.
+     *
+     * @param name the name of the counter.
+     * @return the value of the counter, 0 if it has never been incremented.
+     */
+    public long counter(final String name) {
+        AtomicLong counter = counters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Registers a {@link Gauge} under the given name, replacing a previously registered one.
+     *
+     * @param name the name of the gauge.
+     * @param gauge the gauge to sample.
+     */
+    public void register(final String name, final Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Samples the gauge with the given name.
+     *
+     * @param name the name of the gauge.
+     * @return the current value of the gauge, 0 if no such gauge is registered.
+     */
+    public long gauge(final String name) {
+        Gauge gauge = gauges.get(name);
+        return gauge == null ? 0 : gauge.value();
+    }
+
+    /**
+     * Samples all counters and gauges.
+     *
+     * @return the current values, sorted by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+            snapshot.put(counter.getKey(), counter.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> gauge : gauges.entrySet()) {
+            snapshot.put(gauge.getKey(), gauge.getValue().value());
+        }
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return "CoreMetrics" + snapshot();
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.metrics;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps an exponentially weighted moving average of the response times per node.
+ *
+ * Next to the average, the mean deviation is tracked the same way (like the TCP retransmission timer does), which
+ * allows to estimate a high percentile of the response times without keeping a histogram. Every core owns its own
+ * tracker, and the estimate of a node is dropped once the node is removed from the core.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class LatencyTracker {
+
+    /**
+     * The estimates per node.
+     */
+    private final ConcurrentMap<InetAddress, Estimate> estimates;
+
+    /**
+     * Creates a new, empty {@link LatencyTracker}.
+     */
+    public LatencyTracker() {
+        estimates = new ConcurrentHashMap<InetAddress, Estimate>();
+    }
+
+    /**
+     * Returns the estimate of the given node, creating it if needed.
+     *
+     * Callers recording many samples for the same node should hold on to the estimate.
+     *
+     * @param node the node.
+     * @return the estimate of the node.
+     */
+    public Estimate estimate(final InetAddress node) {
+        Estimate estimate = estimates.get(node);
+        if (estimate == null) {
+            Estimate created = new Estimate();
+            estimate = estimates.putIfAbsent(node, created);
+            if (estimate == null) {
+                estimate = created;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Drops the estimate of the given node.
+     *
+     * @param node the node.
+     */
+    public void remove(final InetAddress node) {
+        estimates.remove(node);
+    }
+
+    /**
+     * Returns the average response time of the given node.
+     *
+     * @param node the node.
+     * @return the average response time in nanoseconds, or 0 if nothing has been recorded yet.
+     */
+    public long average(final InetAddress node) {
+        Estimate estimate = estimates.get(node);
+        return estimate == null ? 0 : estimate.average();
+    }
+
+    /**
+     * Returns the estimated 95th percentile of the response times of the given node.
+     *
+     * @param node the node.
+     * @return the estimated percentile in nanoseconds, or 0 if nothing has been recorded yet.
+     */
+    public long percentile95(final InetAddress node) {
+        Estimate estimate = estimates.get(node);
+        return estimate == null ? 0 : estimate.percentile95();
+    }
+
+    /**
+     * The response time estimate of a single node.
+     */
+    public static class Estimate {
+
+        /**
+         * The largest response time which can be recorded, longer ones are capped.
+         */
+        private static final long MAX_LATENCY = 0xFFFFFFFFL;
+
+        /**
+         * The average in the upper and the mean deviation in the lower 32 bits, both in nanoseconds.
+         *
+         * Packing both into one value allows to update them together with a single compare-and-set, so recording
+         * from multiple event loops needs no lock. The state stays 0 until the first response time is recorded.
+         */
+        private final AtomicLong state = new AtomicLong();
+
+        /**
+         * Records a response time.
+         *
+         * The average moves by 1/8 and the deviation by 1/4 of the difference, the gains used for the TCP
+         * retransmission timer.
+         *
+         * @param latency the response time in nanoseconds.
+         */
+        public void record(final long latency) {
+            long sample = Math.min(Math.max(latency, 1), MAX_LATENCY);
+            while (true) {
+                long current = state.get();
+                long average;
+                long deviation;
+                if (current == 0) {
+                    average = sample;
+                    deviation = sample >> 1;
+                } else {
+                    average = current >>> 32;
+                    deviation = current & MAX_LATENCY;
+                    long error = sample - average;
+                    average += error >> 3;
+                    deviation += (Math.abs(error) - deviation) >> 2;
+                }
+                if (state.compareAndSet(current, (average << 32) | deviation)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns the average response time.
+         *
+         * @return the average in nanoseconds, or 0 if nothing has been recorded yet.
+         */
+        public long average() {
+            return state.get() >>> 32;
+        }
+
+        /**
+         * Returns the estimated 95th percentile of the response times.
+         *
+         * For normally distributed response times the mean deviation is about 0.8 standard deviations, so
+         * twice of it on top of the average lands close to the 95th percentile.
+         *
+         * @return the estimated percentile in nanoseconds, or 0 if nothing has been recorded yet.
+         */
+        public long percentile95() {
+            long current = state.get();
+            return (current >>> 32) + ((current & MAX_LATENCY) << 1);
+        }
+    }
+}
@@ -30,6 +30,8 @@ import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.internal.AddServiceRequest;
 import com.couchbase.client.core.message.internal.RemoveServiceRequest;
 import com.couchbase.client.core.message.internal.SignalFlush;
+import com.couchbase.client.core.metrics.LatencyTracker;
+import com.couchbase.client.core.retry.RetryReason;
 import com.couchbase.client.core.service.Service;
 import com.couchbase.client.core.service.ServiceFactory;
 import com.couchbase.client.core.state.AbstractStateMachine;
@@ -83,22 +85,28 @@ public class CouchbaseNode extends AbstractStateMachine<LifecycleState> implemen
      */
     private final ServiceRegistry serviceRegistry;
 
+    /**
+     * The response time estimates of the core, may be null.
+     */
+    private final LatencyTracker latencies;
+
     private final Map<Service, LifecycleState> serviceStates;
 
     private volatile boolean connected;
 
     public CouchbaseNode(final InetAddress hostname, final CoreEnvironment environment,
-        final RingBuffer<ResponseEvent> responseBuffer) {
-        this(hostname, new DefaultServiceRegistry(), environment, responseBuffer);
+        final RingBuffer<ResponseEvent> responseBuffer, final LatencyTracker latencies) {
+        this(hostname, new DefaultServiceRegistry(), environment, responseBuffer, latencies);
     }
 
     CouchbaseNode(final InetAddress hostname, ServiceRegistry registry, final CoreEnvironment environment,
-        final RingBuffer<ResponseEvent> responseBuffer) {
+        final RingBuffer<ResponseEvent> responseBuffer, final LatencyTracker latencies) {
         super(LifecycleState.DISCONNECTED);
         this.hostname = hostname;
         this.serviceRegistry = registry;
         this.environment = environment;
         this.responseBuffer = responseBuffer;
+        this.latencies = latencies;
         this.serviceStates = new ConcurrentHashMap<Service, LifecycleState>();
     }
 
@@ -111,7 +119,8 @@ public class CouchbaseNode extends AbstractStateMachine<LifecycleState> implemen
         } else {
             Service service = serviceRegistry.locate(request);
             if (service == null) {
-                responseBuffer.publishEvent(ResponseHandler.RESPONSE_TRANSLATOR, request, request.observable());
+                responseBuffer.publishEvent(ResponseHandler.RETRY_TRANSLATOR, request,
+                    RetryReason.SERVICE_NOT_AVAILABLE);
             } else {
                 service.send(request);
             }
@@ -183,7 +192,8 @@ public class CouchbaseNode extends AbstractStateMachine<LifecycleState> implemen
             request.port(),
             environment,
             request.type(),
-            responseBuffer
+            responseBuffer,
+            latencies
         );
 
         serviceStates.put(service, service.state());
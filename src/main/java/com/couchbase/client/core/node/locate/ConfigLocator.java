@@ -21,6 +21,7 @@
  */
 package com.couchbase.client.core.node.locate;
 
+import com.couchbase.client.core.config.BucketConfig;
 import com.couchbase.client.core.config.ClusterConfig;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.config.BucketConfigRequest;
@@ -29,9 +30,7 @@ import com.couchbase.client.core.node.Node;
 import java.net.InetAddress;
 import java.util.Set;
 
-public class ConfigLocator implements Locator {
-
-    private long counter = 0;
+public class ConfigLocator extends RoundRobinLocator {
 
     @Override
     public Node[] locate(final CouchbaseRequest request, final Set<Node> nodes, final ClusterConfig config) {
@@ -43,16 +42,14 @@ public class ConfigLocator implements Locator {
                     return new Node[]{node};
                 }
             }
-        } else {
-            int item = (int) counter++ % nodes.size();
-            int i = 0;
-            for (Node node : nodes) {
-                if (i++ == item) {
-                    return new Node[] { node };
-                }
-            }
+            return new Node[0];
         }
-        return new Node[0];
+        return next("", null, nodes);
+    }
+
+    @Override
+    protected boolean eligible(final Node node, final BucketConfig bucketConfig) {
+        return true;
     }
 
 }
@@ -30,18 +30,24 @@ import com.couchbase.client.core.config.NodeInfo;
 import com.couchbase.client.core.logging.CouchbaseLogger;
 import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.message.kv.AbstractBulkRequest;
+import com.couchbase.client.core.message.kv.AnyReplicaGetRequest;
 import com.couchbase.client.core.message.kv.BinaryRequest;
 import com.couchbase.client.core.message.kv.GetBucketConfigRequest;
 import com.couchbase.client.core.message.kv.ObserveRequest;
 import com.couchbase.client.core.message.kv.ReplicaGetRequest;
+import com.couchbase.client.core.metrics.LatencyTracker;
 import com.couchbase.client.core.node.Node;
 import com.couchbase.client.core.state.LifecycleState;
-import io.netty.util.CharsetUtil;
-import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 
 /**
@@ -54,6 +60,53 @@ public class KeyValueLocator implements Locator {
 
     private static final CouchbaseLogger LOGGER = CouchbaseLoggerFactory.getInstance(KeyValueLocator.class);
 
+    /**
+     * Lookup table for the (reflected) CRC32 polynomial used to hash keys into partitions.
+     */
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < CRC_TABLE.length; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xedb88320 : crc >>> 1;
+            }
+            CRC_TABLE[i] = crc;
+        }
+    }
+
+    /**
+     * The routing tables per bucket, only rebuilt when the config or the managed nodes change.
+     */
+    private final Map<String, PartitionRoutingTable> routingTables =
+        new ConcurrentHashMap<String, PartitionRoutingTable>();
+
+    /**
+     * Incremented every time the set of managed nodes changes.
+     */
+    private final AtomicLong nodesVersion = new AtomicLong();
+
+    /**
+     * The response time estimates used to order the copies of a document.
+     */
+    private final LatencyTracker latencies;
+
+    /**
+     * Creates a new {@link KeyValueLocator} with its own, empty {@link LatencyTracker}.
+     */
+    public KeyValueLocator() {
+        this(new LatencyTracker());
+    }
+
+    /**
+     * Creates a new {@link KeyValueLocator} using the given {@link LatencyTracker}.
+     *
+     * @param latencies the response time estimates.
+     */
+    public KeyValueLocator(final LatencyTracker latencies) {
+        this.latencies = latencies;
+    }
+
     @Override
     public Node[] locate(final CouchbaseRequest request, final Set<Node> nodes, final ClusterConfig cluster) {
         if (request instanceof GetBucketConfigRequest) {
@@ -67,7 +120,7 @@ public class KeyValueLocator implements Locator {
                     return new Node[] { node };
                 }
             }
-            return new Node[] {};
+            return PartitionRoutingTable.EMPTY;
         }
 
         BucketConfig bucket = cluster.bucketConfig(request.bucket());
@@ -80,9 +133,110 @@ public class KeyValueLocator implements Locator {
         }
     }
 
+    /**
+     * Groups the keys of an {@link AbstractBulkRequest} by the {@link Node} they need to be sent to.
+     *
+     * The partition of every key is stored on the request on the way. Keys whose node is not managed (yet) are
+     * grouped under the null key, so that only they get rescheduled.
+     *
+     * @param request the bulk request.
+     * @param nodes the managed nodes.
+     * @param cluster the cluster configuration.
+     * @return the indexes of the keys per node.
+     */
+    public Map<Node, int[]> locate(final AbstractBulkRequest request, final Set<Node> nodes,
+        final ClusterConfig cluster) {
+        BucketConfig bucket = cluster.bucketConfig(request.bucket());
+        int size = request.size();
+        Node[] targets = new Node[size];
+        if (bucket instanceof CouchbaseBucketConfig) {
+            CouchbaseBucketConfig config = (CouchbaseBucketConfig) bucket;
+            PartitionRoutingTable table = routingTable(request.bucket(), nodes, config);
+            for (int i = 0; i < size; i++) {
+                int partitionId = partitionFor(request.keyBytes(i), config);
+                request.partition(i, (short) partitionId);
+                Node[] found = table.master(partitionId);
+                targets[i] = found.length == 0 ? null : found[0];
+            }
+        } else if (bucket instanceof MemcachedBucketConfig) {
+            for (int i = 0; i < size; i++) {
+                request.partition(i, (short) 0);
+                targets[i] = ketamaNode(request.keyBytes(i), nodes, (MemcachedBucketConfig) bucket);
+            }
+        } else {
+            throw new IllegalStateException("Unsupported Bucket Type: " + bucket + " for request " + request);
+        }
+
+        Map<Node, Integer> counts = new IdentityHashMap<Node, Integer>();
+        for (Node target : targets) {
+            Integer count = counts.get(target);
+            counts.put(target, count == null ? 1 : count + 1);
+        }
+        Map<Node, int[]> grouped = new IdentityHashMap<Node, int[]>(counts.size());
+        for (Map.Entry<Node, Integer> count : counts.entrySet()) {
+            grouped.put(count.getKey(), new int[count.getValue()]);
+            count.setValue(0);
+        }
+        for (int i = 0; i < size; i++) {
+            int position = counts.get(targets[i]);
+            grouped.get(targets[i])[position] = i;
+            counts.put(targets[i], position + 1);
+        }
+        return grouped;
+    }
+
+    /**
+     * Returns the copies of the document which can be read, the one on the fastest node first.
+     *
+     * A copy is identified by its replica number, 0 being the active copy. Copies whose node is not managed or not
+     * connected are left out; nodes without any recorded response time yet sort first, so they get measured.
+     * Memcached buckets have no replicas, so only the active copy is returned.
+     *
+     * @param request the request.
+     * @param nodes the managed nodes.
+     * @param cluster the cluster configuration.
+     * @return the replica numbers of the copies, ordered by the average response time of their node.
+     */
+    public short[] locateCopies(final AnyReplicaGetRequest request, final Set<Node> nodes,
+        final ClusterConfig cluster) {
+        BucketConfig bucket = cluster.bucketConfig(request.bucket());
+        if (!(bucket instanceof CouchbaseBucketConfig)) {
+            return new short[] { 0 };
+        }
+
+        CouchbaseBucketConfig config = (CouchbaseBucketConfig) bucket;
+        int partitionId = partitionFor(request.keyBytes(), config);
+        PartitionRoutingTable table = routingTable(request.bucket(), nodes, config);
+        int numCopies = 1 + config.numberOfReplicas();
+        short[] copies = new short[numCopies];
+        long[] averages = new long[numCopies];
+        int found = 0;
+        for (short copy = 0; copy < numCopies; copy++) {
+            Node[] node = copy == 0 ? table.master(partitionId) : table.replica(partitionId, copy);
+            if (node == null || node.length == 0 || !node[0].isState(LifecycleState.CONNECTED)) {
+                continue;
+            }
+            long average = latencies.average(node[0].hostname());
+            int i = found++;
+            while (i > 0 && averages[i - 1] > average) {
+                copies[i] = copies[i - 1];
+                averages[i] = averages[i - 1];
+                i--;
+            }
+            copies[i] = copy;
+            averages[i] = average;
+        }
+        return found == numCopies ? copies : Arrays.copyOf(copies, found);
+    }
+
     /**
      * Locates the proper {@link Node}s for a Couchbase bucket.
      *
+     * The lookup itself does not allocate: the partition is hashed from the UTF-8 bytes of the key, which the request
+     * encodes only once and reuses when it gets written, and the target is read from the {@link PartitionRoutingTable}
+     * of the bucket. If the node owning the partition is not managed (yet), an empty array is returned so that only
+     * requests for this partition get rescheduled.
+     *
      * @param request the request.
      * @param nodes the managed nodes.
      * @param config the bucket configuration.
@@ -90,59 +244,77 @@ public class KeyValueLocator implements Locator {
      */
     private Node[] locateForCouchbaseBucket(final BinaryRequest request, final Set<Node> nodes,
         final CouchbaseBucketConfig config) {
-        String key = request.key();
-
-        CRC32 crc32 = new CRC32();
-        try {
-            crc32.update(key.getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
-        long rv = (crc32.getValue() >> 16) & 0x7fff;
-        int partitionId = (int) rv & config.numberOfPartitions() - 1;
+        int partitionId = partitionFor(request.keyBytes(), config);
         request.partition((short) partitionId);
 
-        int nodeId;
+        PartitionRoutingTable table = routingTable(request.bucket(), nodes, config);
+        short replica = 0;
         if (request instanceof ReplicaGetRequest) {
-            nodeId = config.nodeIndexForReplica(partitionId, ((ReplicaGetRequest) request).replica() - 1);
-        } else if (request instanceof ObserveRequest && ((ObserveRequest) request).replica() > 0){
-            nodeId = config.nodeIndexForReplica(partitionId, ((ObserveRequest) request).replica() - 1);
-        } else {
-            nodeId = config.nodeIndexForMaster(partitionId);
+            replica = ((ReplicaGetRequest) request).replica();
+        } else if (request instanceof ObserveRequest) {
+            replica = ((ObserveRequest) request).replica();
         }
 
-        if (nodeId == -2) {
-            if (request instanceof ReplicaGetRequest) {
-                request.observable().onError(new ReplicaNotConfiguredException("Replica number "
-                    + ((ReplicaGetRequest) request).replica() + " not configured for bucket " + config.name()));
-            } else if (request instanceof ObserveRequest) {
-                request.observable().onError(new ReplicaNotConfiguredException("Replica number "
-                    + ((ObserveRequest) request).replica() + " not configured for bucket " + config.name()));
-            }
-
+        Node[] found = replica > 0 ? table.replica(partitionId, replica) : table.master(partitionId);
+        if (found == null) {
+            request.observable().onError(new ReplicaNotConfiguredException("Replica number "
+                + replica + " not configured for bucket " + config.name()));
             return null;
         }
-        if (nodeId == -1) {
-            return new Node[] { };
+        if (found.length == 0 && LOGGER.isTraceEnabled()) {
+            LOGGER.trace("No node available for partition {} of bucket {}, rescheduling", partitionId, config.name());
         }
+        return found;
+    }
 
-        NodeInfo nodeInfo = config.nodeAtIndex(nodeId);
-
-        if (config.nodes().size() != nodes.size()) {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Node list and configuration's partition hosts sizes : {} <> {}, rescheduling",
-                        nodes.size(), config.nodes().size());
-            }
-            return new Node[] { };
+    /**
+     * Returns the {@link PartitionRoutingTable} for the bucket, rebuilding it if the config or the nodes changed.
+     *
+     * Rebuilds only happen on the first request after a new configuration has been applied or a {@link Node}
+     * has been added or removed (see {@link #nodesChanged()}), the new table then replaces the old one at once.
+     */
+    private PartitionRoutingTable routingTable(final String bucket, final Set<Node> nodes,
+        final CouchbaseBucketConfig config) {
+        PartitionRoutingTable table = routingTables.get(bucket);
+        long version = nodesVersion.get();
+        if (table == null || table.config() != config || table.nodesVersion() != version) {
+            table = new PartitionRoutingTable(config, nodes, version);
+            routingTables.put(bucket, table);
+            LOGGER.debug("Built new {}", table);
         }
+        return table;
+    }
 
-        for (Node node : nodes) {
-            if (node.hostname().equals(nodeInfo.hostname())) {
-                return new Node[] { node };
-            }
+    /**
+     * Signals that the set of managed {@link Node}s has changed, so all routing tables need to be rebuilt.
+     */
+    public void nodesChanged() {
+        nodesVersion.incrementAndGet();
+    }
+
+    /**
+     * Hashes the encoded key into the partition which owns it.
+     */
+    private static int partitionFor(final byte[] key, final CouchbaseBucketConfig config) {
+        return (int) (crc32(key) >> 16) & 0x7fff & config.numberOfPartitions() - 1;
+    }
+
+    /**
+     * Calculates the CRC32 checksum of the encoded key.
+     *
+     * @param key the UTF-8 bytes of the key to hash.
+     * @return the checksum, identical to {@link CRC32} over the same bytes.
+     */
+    static long crc32(final byte[] key) {
+        int crc = 0xffffffff;
+        for (int i = 0; i < key.length; i++) {
+            crc = updateCrc(crc, key[i]);
         }
+        return ~crc & 0xffffffffL;
+    }
 
-        throw new IllegalStateException("Node not found for request" + request);
+    private static int updateCrc(final int crc, final int b) {
+        return CRC_TABLE[(crc ^ b) & 0xff] ^ (crc >>> 8);
     }
 
     /**
@@ -156,7 +328,22 @@ public class KeyValueLocator implements Locator {
     private Node[] locateForMemcacheBucket(final BinaryRequest request, final Set<Node> nodes,
         final MemcachedBucketConfig config) {
 
-        long hash = ketamaHash(request.key());
+        request.partition((short) 0);
+        Node found = ketamaNode(request.keyBytes(), nodes, config);
+        if (found != null) {
+            return new Node[] { found };
+        }
+
+        throw new IllegalStateException("Node not found for request" + request);
+    }
+
+    /**
+     * Finds the {@link Node} on the ketama ring which owns the encoded key.
+     *
+     * @return the node, or null if it is not managed.
+     */
+    private Node ketamaNode(final byte[] key, final Set<Node> nodes, final MemcachedBucketConfig config) {
+        long hash = ketamaHash(key);
         if (!config.ketamaNodes().containsKey(hash)) {
             SortedMap<Long, NodeInfo> tailMap = config.ketamaNodes().tailMap(hash);
             if (tailMap.isEmpty()) {
@@ -167,20 +354,18 @@ public class KeyValueLocator implements Locator {
         }
 
         NodeInfo found = config.ketamaNodes().get(hash);
-        request.partition((short) 0);
         for (Node node : nodes) {
             if (node.hostname().equals(found.hostname())) {
-                return new Node[] { node };
+                return node;
             }
         }
-
-        throw new IllegalStateException("Node not found for request" + request);
+        return null;
     }
 
-    private long ketamaHash(final String key) {
+    private long ketamaHash(final byte[] key) {
         try {
             MessageDigest md5 = MessageDigest.getInstance("MD5");
-            md5.update(key.getBytes(CharsetUtil.UTF_8));
+            md5.update(key);
             byte[] digest = md5.digest();
             long rv = ((long) (digest[3] & 0xFF) << 24)
                 | ((long) (digest[2] & 0xFF) << 16)
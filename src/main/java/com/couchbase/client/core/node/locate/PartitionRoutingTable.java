@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.node.locate;
+
+import com.couchbase.client.core.config.CouchbaseBucketConfig;
+import com.couchbase.client.core.config.NodeInfo;
+import com.couchbase.client.core.node.Node;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable routing table which maps every partition of a {@link CouchbaseBucketConfig} to the {@link Node}s
+ * serving its active and replica copies.
+ *
+ * The table is built once for a config revision and set of managed nodes, so lookups are plain array reads.
+ * Every node is represented by a single-element array shared between all partitions and handed out as-is,
+ * so callers must not modify the returned arrays. Partitions whose node is not (yet) managed map to an empty
+ * array, which lets the rest of a partially connected cluster keep routing normally.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+final class PartitionRoutingTable {
+
+    /**
+     * Returned if no node can currently serve the partition.
+     */
+    static final Node[] EMPTY = new Node[] {};
+
+    private final CouchbaseBucketConfig config;
+    private final long nodesVersion;
+    private final Node[][] masters;
+    private final Node[][][] replicas;
+
+    /**
+     * Creates a new routing table.
+     *
+     * @param config the bucket config to build the table for.
+     * @param nodes the currently managed nodes.
+     * @param nodesVersion the version of the managed nodes the table has been built from.
+     */
+    PartitionRoutingTable(final CouchbaseBucketConfig config, final Set<Node> nodes, final long nodesVersion) {
+        this.config = config;
+        this.nodesVersion = nodesVersion;
+
+        List<NodeInfo> nodeInfos = config.nodes();
+        Node[][] nodesByIndex = new Node[nodeInfos.size()][];
+        for (int i = 0; i < nodeInfos.size(); i++) {
+            nodesByIndex[i] = EMPTY;
+            for (Node node : nodes) {
+                if (node.hostname().equals(nodeInfos.get(i).hostname())) {
+                    nodesByIndex[i] = new Node[] { node };
+                    break;
+                }
+            }
+        }
+
+        int numPartitions = config.numberOfPartitions();
+        masters = new Node[numPartitions][];
+        replicas = new Node[config.numberOfReplicas()][numPartitions][];
+        for (int p = 0; p < numPartitions; p++) {
+            masters[p] = lookup(nodesByIndex, config.nodeIndexForMaster(p));
+            for (int r = 0; r < replicas.length; r++) {
+                replicas[r][p] = lookup(nodesByIndex, config.nodeIndexForReplica(p, r));
+            }
+        }
+    }
+
+    /**
+     * Resolves a node index of the config, -1 (no node assigned) maps to an empty and -2 (not configured) to null.
+     */
+    private static Node[] lookup(final Node[][] nodesByIndex, final short nodeIndex) {
+        if (nodeIndex == -2) {
+            return null;
+        }
+        if (nodeIndex < 0 || nodeIndex >= nodesByIndex.length) {
+            return EMPTY;
+        }
+        return nodesByIndex[nodeIndex];
+    }
+
+    /**
+     * The config this table has been built from.
+     *
+     * @return the bucket config.
+     */
+    CouchbaseBucketConfig config() {
+        return config;
+    }
+
+    /**
+     * The version of the managed nodes this table has been built from.
+     *
+     * @return the nodes version.
+     */
+    long nodesVersion() {
+        return nodesVersion;
+    }
+
+    /**
+     * Returns the node serving the active copy of the partition.
+     *
+     * @param partition the partition.
+     * @return the node or an empty array if no node is available.
+     */
+    Node[] master(final int partition) {
+        return masters[partition];
+    }
+
+    /**
+     * Returns the node serving the given replica of the partition.
+     *
+     * @param partition the partition.
+     * @param replica the replica number, starting at 1.
+     * @return the node, an empty array if no node is available or null if the replica is not configured.
+     */
+    Node[] replica(final int partition, final int replica) {
+        if (replica < 1 || replica > replicas.length) {
+            return null;
+        }
+        return replicas[replica - 1][partition];
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionRoutingTable{" + "bucket=" + config.name() + ", rev=" + config.rev()
+            + ", nodesVersion=" + nodesVersion + ", partitions=" + masters.length
+            + ", replicas=" + replicas.length + '}';
+    }
+}
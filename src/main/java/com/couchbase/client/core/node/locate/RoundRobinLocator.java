@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.node.locate;
+
+import com.couchbase.client.core.config.BucketConfig;
+import com.couchbase.client.core.node.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for {@link Locator}s which spread requests across all eligible nodes in a round-robin fashion.
+ *
+ * The eligible nodes are computed once per bucket config and set of managed nodes and kept as an array, so
+ * selecting the next node is a single counter increment and array read. Nodes which are not eligible never
+ * show up in the array, so they are skipped right away instead of the request going through a retry.
+ *
+ * Implementations need to be notified through {@link #nodesChanged()} whenever a node is added or removed.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public abstract class RoundRobinLocator implements Locator {
+
+    /**
+     * Returned if no node is currently eligible.
+     */
+    private static final Node[] EMPTY = new Node[] {};
+
+    /**
+     * The eligible nodes, keyed by the bucket they have been computed for.
+     */
+    private final ConcurrentMap<String, EligibleNodes> eligibleNodes =
+        new ConcurrentHashMap<String, EligibleNodes>();
+
+    /**
+     * Incremented every time the managed nodes change, so that stale eligible nodes get rebuilt.
+     */
+    private final AtomicLong nodesVersion = new AtomicLong();
+
+    /**
+     * The round-robin counter, shared between all buckets.
+     */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Checks if the given node is eligible to serve requests.
+     *
+     * @param node the node to check.
+     * @param bucketConfig the bucket config the nodes are selected for, may be null.
+     * @return true if the node should be selected, false otherwise.
+     */
+    protected abstract boolean eligible(Node node, BucketConfig bucketConfig);
+
+    /**
+     * Selects the next eligible node.
+     *
+     * @param bucket the name of the bucket the nodes are selected for, or an empty string if not bucket specific.
+     * @param bucketConfig the bucket config the nodes are selected for, may be null.
+     * @param nodes the currently managed nodes.
+     * @return a single-element array with the next node, or an empty array if no node is eligible.
+     */
+    protected Node[] next(final String bucket, final BucketConfig bucketConfig, final Set<Node> nodes) {
+        Node[][] eligible = eligibleNodes(bucket, bucketConfig, nodes);
+        if (eligible.length == 0) {
+            return EMPTY;
+        }
+        return eligible[(counter.getAndIncrement() & Integer.MAX_VALUE) % eligible.length];
+    }
+
+    /**
+     * Returns the eligible nodes for the given bucket, rebuilding them if needed.
+     *
+     * The nodes are rebuilt if the bucket config has been replaced or a node has been added or removed (see
+     * {@link #nodesChanged()}). Concurrent rebuilds compute the same result, so the last one simply wins.
+     */
+    private Node[][] eligibleNodes(final String bucket, final BucketConfig bucketConfig, final Set<Node> nodes) {
+        EligibleNodes current = eligibleNodes.get(bucket);
+        long version = nodesVersion.get();
+        if (current == null || current.config != bucketConfig || current.nodesVersion != version) {
+            List<Node[]> found = new ArrayList<Node[]>(nodes.size());
+            for (Node node : nodes) {
+                if (eligible(node, bucketConfig)) {
+                    found.add(new Node[] { node });
+                }
+            }
+            current = new EligibleNodes(bucketConfig, version, found.toArray(new Node[found.size()][]));
+            eligibleNodes.put(bucket, current);
+        }
+        return current.nodes;
+    }
+
+    /**
+     * Signals that a node has been added or removed, so that the eligible nodes get rebuilt on the next request.
+     */
+    public void nodesChanged() {
+        nodesVersion.incrementAndGet();
+    }
+
+    /**
+     * The eligible nodes together with the state they have been computed from.
+     */
+    private static final class EligibleNodes {
+
+        private final BucketConfig config;
+        private final long nodesVersion;
+        private final Node[][] nodes;
+
+        EligibleNodes(final BucketConfig config, final long nodesVersion, final Node[][] nodes) {
+            this.config = config;
+            this.nodesVersion = nodesVersion;
+            this.nodes = nodes;
+        }
+    }
+}
@@ -29,13 +29,11 @@ import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.node.Node;
 import java.util.Set;
 
-public class ViewLocator implements Locator {
+public class ViewLocator extends RoundRobinLocator {
 
     private static final ServiceNotAvailableException NOT_AVAILABLE =
         new ServiceNotAvailableException("Views are not available on this bucket type.");
 
-    private long counter = 0;
-
     @Override
     public Node[] locate(CouchbaseRequest request, Set<Node> nodes, ClusterConfig config) {
         BucketConfig bucketConfig = config.bucketConfig(request.bucket());
@@ -44,14 +42,14 @@ public class ViewLocator implements Locator {
             return null;
         }
 
-        int item = (int) counter++ % nodes.size();
-        int i = 0;
-        for (Node node : nodes) {
-            if (i++ == item && ((CouchbaseBucketConfig) bucketConfig).hasPrimaryPartitionsOnNode(node.hostname())) {
-                return new Node[] { node };
-            }
-        }
+        return next(request.bucket(), bucketConfig, nodes);
+    }
 
-        return new Node[] {};
+    /**
+     * Only nodes which hold active partitions of the bucket are able to serve view requests.
+     */
+    @Override
+    protected boolean eligible(final Node node, final BucketConfig bucketConfig) {
+        return ((CouchbaseBucketConfig) bucketConfig).hasPrimaryPartitionsOnNode(node.hostname());
     }
 }
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.retry;
+
+import com.couchbase.client.core.message.CouchbaseRequest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RetryStrategy} which doubles the delay on every retry of a request, up to a maximum.
+ *
+ * Half of each delay is randomized (jitter), so that requests which failed at the same time, for example all in
+ * flight to a node which just went down, do not come back in lockstep. A request is given up once it reached the
+ * maximum number of attempts or once the next retry would exceed the maximum duration since its creation.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class ExponentialBackoffRetryStrategy implements RetryStrategy {
+
+    public static final long MIN_DELAY_MICROS = TimeUnit.MILLISECONDS.toMicros(1);
+    public static final long MAX_DELAY_MICROS = TimeUnit.MILLISECONDS.toMicros(500);
+    public static final int MAX_ATTEMPTS = Integer.MAX_VALUE;
+    public static final long MAX_DURATION_MICROS = Long.MAX_VALUE;
+
+    /**
+     * The strategy with the default settings.
+     */
+    public static final ExponentialBackoffRetryStrategy INSTANCE = builder().build();
+
+    private final long minDelayMicros;
+    private final long maxDelayMicros;
+    private final int maxAttempts;
+    private final long maxDurationNanos;
+    private final Random random;
+
+    protected ExponentialBackoffRetryStrategy(final Builder builder) {
+        this.minDelayMicros = Math.max(1, builder.minDelayMicros);
+        this.maxDelayMicros = Math.max(minDelayMicros, builder.maxDelayMicros);
+        this.maxAttempts = builder.maxAttempts;
+        this.maxDurationNanos = builder.maxDurationMicros >= TimeUnit.NANOSECONDS.toMicros(Long.MAX_VALUE)
+            ? Long.MAX_VALUE : TimeUnit.MICROSECONDS.toNanos(builder.maxDurationMicros);
+        this.random = new Random();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public long retryDelay(final CouchbaseRequest request, final RetryReason reason) {
+        int attempt = request.retryCount();
+        if (attempt > maxAttempts) {
+            return NO_RETRY;
+        }
+
+        long delay = maxDelayMicros;
+        int shift = Math.max(0, attempt - 1);
+        if (shift < 63 && minDelayMicros <= (maxDelayMicros >> shift)) {
+            delay = minDelayMicros << shift;
+        }
+        long half = delay >> 1;
+        delay = delay - half + (long) (random.nextDouble() * (half + 1));
+
+        if (maxDurationNanos != Long.MAX_VALUE) {
+            long elapsed = System.nanoTime() - request.creationTime();
+            if (elapsed + TimeUnit.MICROSECONDS.toNanos(delay) > maxDurationNanos) {
+                return NO_RETRY;
+            }
+        }
+        return delay;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ExponentialBackoffRetryStrategy{");
+        sb.append("minDelayMicros=").append(minDelayMicros);
+        sb.append(", maxDelayMicros=").append(maxDelayMicros);
+        sb.append(", maxAttempts=").append(maxAttempts);
+        sb.append(", maxDurationNanos=").append(maxDurationNanos);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public static class Builder {
+
+        private long minDelayMicros = MIN_DELAY_MICROS;
+        private long maxDelayMicros = MAX_DELAY_MICROS;
+        private int maxAttempts = MAX_ATTEMPTS;
+        private long maxDurationMicros = MAX_DURATION_MICROS;
+
+        protected Builder() {
+        }
+
+        /**
+         * Sets the delay of the first retry, which gets doubled on every subsequent one.
+         */
+        public Builder minDelay(final long delay, final TimeUnit unit) {
+            this.minDelayMicros = unit.toMicros(delay);
+            return this;
+        }
+
+        /**
+         * Sets the upper bound for the delay between two retries.
+         */
+        public Builder maxDelay(final long delay, final TimeUnit unit) {
+            this.maxDelayMicros = unit.toMicros(delay);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of retries per request.
+         */
+        public Builder maxAttempts(final int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time since the creation of a request during which it is retried.
+         */
+        public Builder maxDuration(final long duration, final TimeUnit unit) {
+            this.maxDurationMicros = unit.toMicros(duration);
+            return this;
+        }
+
+        public ExponentialBackoffRetryStrategy build() {
+            return new ExponentialBackoffRetryStrategy(this);
+        }
+    }
+}
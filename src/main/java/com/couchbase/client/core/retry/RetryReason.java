@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.retry;
+
+/**
+ * The reasons why a request needs to be retried.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public enum RetryReason {
+
+    /**
+     * The server responded with "not my vbucket", the partition lives on a different node now.
+     */
+    NOT_MY_VBUCKET,
+
+    /**
+     * The server responded with a different status which still asks for a retry.
+     */
+    SERVER_RETRY,
+
+    /**
+     * No node could be located for the request, for example during a rebalance or failover.
+     */
+    NODE_NOT_AVAILABLE,
+
+    /**
+     * The located node does not (yet) have a service for the request.
+     */
+    SERVICE_NOT_AVAILABLE,
+
+    /**
+     * The service does not have a connected endpoint to dispatch the request to.
+     */
+    ENDPOINT_NOT_AVAILABLE,
+
+    /**
+     * The channel of the selected endpoint is not active or not writable.
+     */
+    CHANNEL_NOT_WRITABLE
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.retry;
+
+import com.couchbase.client.core.message.CouchbaseRequest;
+
+/**
+ * Decides if and when a request which could not be completed gets sent again.
+ *
+ * Implementations are shared between all requests and called from the response handler, so they need to be
+ * thread safe and fast.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public interface RetryStrategy {
+
+    /**
+     * Returned from {@link #retryDelay(CouchbaseRequest, RetryReason)} if the request should not be retried.
+     */
+    long NO_RETRY = -1;
+
+    /**
+     * Returns the delay before the given request is sent again.
+     *
+     * @param request the request to retry, its {@link CouchbaseRequest#retryCount()} already includes this retry.
+     * @param reason the reason why the request needs to be retried.
+     * @return the delay in microseconds, or {@link #NO_RETRY} to fail the request instead.
+     */
+    long retryDelay(CouchbaseRequest request, RetryReason reason);
+
+}
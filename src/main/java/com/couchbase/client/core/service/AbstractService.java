@@ -29,18 +29,28 @@ import com.couchbase.client.core.logging.CouchbaseLogger;
 import com.couchbase.client.core.logging.CouchbaseLoggerFactory;
 import com.couchbase.client.core.message.CouchbaseRequest;
 import com.couchbase.client.core.message.internal.SignalFlush;
+import com.couchbase.client.core.retry.RetryReason;
 import com.couchbase.client.core.service.strategies.SelectionStrategy;
 import com.couchbase.client.core.state.AbstractStateMachine;
 import com.couchbase.client.core.state.LifecycleState;
 import com.lmax.disruptor.RingBuffer;
 import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
 import rx.functions.Action1;
 import rx.functions.Func1;
 import rx.functions.FuncN;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The base implementation for all {@link Service}s.
@@ -61,9 +71,58 @@ public abstract class AbstractService extends AbstractStateMachine<LifecycleStat
     private final SelectionStrategy strategy;
 
     /**
-     * All stored endpoints.
+     * All stored endpoints, the fixed ones first and then the ones opened on demand.
+     *
+     * The array is replaced as a whole when endpoints are opened or closed on demand, so it can be read without
+     * locking when requests are sent.
+     */
+    private volatile Endpoint[] endpoints;
+
+    /**
+     * The number of endpoints which are always open.
+     */
+    private final int minEndpoints;
+
+    /**
+     * The maximum number of endpoints, including the ones opened on demand.
+     */
+    private final int maxEndpoints;
+
+    /**
+     * The time in milliseconds after which an idle endpoint opened on demand gets closed.
+     */
+    private final long idleTime;
+
+    /**
+     * When the endpoints opened on demand have last been selected to send a request.
+     */
+    private final ConcurrentMap<Endpoint, Long> lastUsed;
+
+    /**
+     * Idle endpoints which are not selected anymore, but wait to be disconnected once they are drained.
+     *
+     * Guarded by this service.
+     */
+    private final List<Endpoint> retiring;
+
+    /**
+     * Set while an endpoint is opened on demand, so only one is opened at a time.
+     */
+    private final AtomicBoolean growing;
+
+    /**
+     * The worker closing idle endpoints, only set while connected and endpoints can be opened on demand.
+     */
+    private volatile Scheduler.Worker idleWorker;
+
+    /**
+     * Everything needed to create new endpoints on demand.
      */
-    private final Endpoint[] endpoints;
+    private final String bucket;
+    private final String password;
+    private final int port;
+    private final CoreEnvironment env;
+    private final EndpointFactory factory;
 
     /**
      * The shared response buffer.
@@ -96,18 +155,54 @@ public abstract class AbstractService extends AbstractStateMachine<LifecycleStat
     protected AbstractService(final String hostname, final String bucket, final String password, final int port,
         final CoreEnvironment env, final int numEndpoints, final SelectionStrategy strategy,
         final RingBuffer<ResponseEvent> responseBuffer, final EndpointFactory factory) {
+        this(hostname, bucket, password, port, env, numEndpoints, numEndpoints, strategy, responseBuffer, factory);
+    }
+
+    /**
+     * Creates a new {@link AbstractService} which opens additional endpoints on demand.
+     *
+     * Once all endpoints are busy, additional ones are opened (one at a time) until the maximum is reached. Those
+     * are closed again after being idle for {@link CoreEnvironment#endpointIdleTime()}. Only the fixed endpoints
+     * are taken into account for the state of the service.
+     *
+     * @param hostname the hostname of the service.
+     * @param bucket the name of the bucket.
+     * @param password the password of the bucket.
+     * @param port the port of the service.
+     * @param env the shared environment.
+     * @param minEndpoints the number of endpoints which are always open.
+     * @param maxEndpoints the maximum number of endpoints, including the ones opened on demand.
+     * @param strategy the endpoint selection strategy used.
+     * @param responseBuffer the shared response buffer.
+     * @param factory the endpoint factory.
+     */
+    protected AbstractService(final String hostname, final String bucket, final String password, final int port,
+        final CoreEnvironment env, final int minEndpoints, final int maxEndpoints, final SelectionStrategy strategy,
+        final RingBuffer<ResponseEvent> responseBuffer, final EndpointFactory factory) {
         super(LifecycleState.DISCONNECTED);
 
         this.strategy = strategy;
         this.responseBuffer = responseBuffer;
         this.hostname = hostname;
+        this.bucket = bucket;
+        this.password = password;
+        this.port = port;
+        this.env = env;
+        this.factory = factory;
+        this.minEndpoints = minEndpoints;
+        this.maxEndpoints = Math.max(minEndpoints, maxEndpoints);
+        this.idleTime = env.endpointIdleTime();
+        this.lastUsed = new ConcurrentHashMap<Endpoint, Long>();
+        this.retiring = new ArrayList<Endpoint>();
+        this.growing = new AtomicBoolean();
         endpointStates = new ArrayList<Observable<LifecycleState>>();
-        endpoints = new Endpoint[numEndpoints];
-        for (int i = 0; i < numEndpoints; i++) {
+        Endpoint[] initial = new Endpoint[minEndpoints];
+        for (int i = 0; i < minEndpoints; i++) {
             Endpoint endpoint = factory.create(hostname, bucket, password, port, env, responseBuffer);
-            endpoints[i] = endpoint;
+            initial[i] = endpoint;
             endpointStates.add(endpoint.states());
         }
+        endpoints = initial;
 
         Observable
             .combineLatest(endpointStates, new FuncN<LifecycleState>() {
@@ -140,22 +235,147 @@ public abstract class AbstractService extends AbstractStateMachine<LifecycleStat
 
     @Override
     public void send(final CouchbaseRequest request) {
+        Endpoint[] current = endpoints;
         if (request instanceof SignalFlush) {
-            int length = endpoints.length;
-            for (int i = 0; i < length; i++) {
-                endpoints[i].send(request);
+            for (int i = 0; i < current.length; i++) {
+                current[i].send(request);
             }
             return;
         }
 
-        Endpoint endpoint = strategy.select(request, endpoints);
+        Endpoint endpoint = strategy.select(request, current);
         if (endpoint == null) {
-            responseBuffer.publishEvent(ResponseHandler.RESPONSE_TRANSLATOR, request, request.observable());
+            responseBuffer.publishEvent(ResponseHandler.RETRY_TRANSLATOR, request, RetryReason.ENDPOINT_NOT_AVAILABLE);
         } else {
+            if (maxEndpoints > minEndpoints) {
+                lastUsed.replace(endpoint, System.currentTimeMillis());
+                if (current.length < maxEndpoints && endpoint.outstandingRequests() > 0 && allBusy(current)) {
+                    openEndpoint();
+                }
+            }
             endpoint.send(request);
         }
     }
 
+    /**
+     * Checks if none of the connected endpoints is free to take a request right away.
+     *
+     * Endpoints whose channel is not writable have requests pending to be written, so they count as busy too.
+     *
+     * @param current the endpoints to check.
+     * @return true if all connected endpoints have outstanding requests.
+     */
+    private static boolean allBusy(final Endpoint[] current) {
+        for (Endpoint endpoint : current) {
+            if (endpoint.isState(LifecycleState.CONNECTED) && endpoint.outstandingRequests() == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Opens an additional endpoint, unless one is already being opened.
+     *
+     * The endpoint is eligible for selection right away, requests sent to it before it is connected are retried.
+     */
+    private void openEndpoint() {
+        if (state() != LifecycleState.CONNECTED || !growing.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Endpoint endpoint;
+        synchronized (this) {
+            Endpoint[] current = endpoints;
+            if (current.length >= maxEndpoints) {
+                growing.set(false);
+                return;
+            }
+            endpoint = factory.create(hostname, bucket, password, port, env, responseBuffer);
+            lastUsed.put(endpoint, System.currentTimeMillis());
+            Endpoint[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = endpoint;
+            endpoints = updated;
+        }
+
+        LOGGER.debug(logIdent(hostname, this) + "All endpoints busy, opening additional endpoint.");
+        endpoint.connect().subscribe(new Subscriber<LifecycleState>() {
+            @Override
+            public void onCompleted() {
+                growing.set(false);
+            }
+
+            @Override
+            public void onError(final Throwable e) {
+                LOGGER.debug(logIdent(hostname, AbstractService.this) + "Could not open additional endpoint.", e);
+                growing.set(false);
+            }
+
+            @Override
+            public void onNext(final LifecycleState state) {
+                // only completion is of interest.
+            }
+        });
+    }
+
+    /**
+     * Closes the endpoints opened on demand which have been idle for longer than the idle time.
+     *
+     * Closing happens in two steps, since {@link #send(CouchbaseRequest)} might still pick an endpoint from the
+     * array it read before the endpoint got removed. An idle endpoint is first removed from the endpoints, so it
+     * is not selected anymore. It is only disconnected on one of the following runs, once it has no outstanding
+     * requests left.
+     */
+    private void closeIdleEndpoints() {
+        List<Endpoint> drained = new ArrayList<Endpoint>();
+        synchronized (this) {
+            Iterator<Endpoint> iterator = retiring.iterator();
+            while (iterator.hasNext()) {
+                Endpoint endpoint = iterator.next();
+                if (endpoint.outstandingRequests() == 0) {
+                    iterator.remove();
+                    drained.add(endpoint);
+                }
+            }
+        }
+        for (Endpoint endpoint : drained) {
+            LOGGER.debug(logIdent(hostname, this) + "Closing idle endpoint.");
+            endpoint.disconnect().subscribe();
+        }
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Endpoint, Long> entry : lastUsed.entrySet()) {
+            Endpoint endpoint = entry.getKey();
+            if (now - entry.getValue() < idleTime || endpoint.outstandingRequests() > 0) {
+                continue;
+            }
+            synchronized (this) {
+                if (lastUsed.remove(endpoint, entry.getValue())) {
+                    endpoints = without(endpoints, endpoint);
+                    retiring.add(endpoint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the endpoints with the given one removed.
+     *
+     * @param current the current endpoints.
+     * @param endpoint the endpoint to remove.
+     * @return the remaining endpoints.
+     */
+    private static Endpoint[] without(final Endpoint[] current, final Endpoint endpoint) {
+        Endpoint[] updated = new Endpoint[current.length - 1];
+        int i = 0;
+        for (Endpoint candidate : current) {
+            if (candidate != endpoint) {
+                updated[i++] = candidate;
+            }
+        }
+        return updated;
+    }
+
     @Override
     public Observable<LifecycleState> connect() {
         LOGGER.debug(logIdent(hostname, this) + "Got instructed to connect.");
@@ -164,6 +384,21 @@ public abstract class AbstractService extends AbstractStateMachine<LifecycleStat
             return Observable.just(state());
         }
 
+        if (maxEndpoints > minEndpoints) {
+            synchronized (this) {
+                if (idleWorker == null) {
+                    Scheduler.Worker worker = env.scheduler().createWorker();
+                    worker.schedulePeriodically(new Action0() {
+                        @Override
+                        public void call() {
+                            closeIdleEndpoints();
+                        }
+                    }, idleTime, idleTime, TimeUnit.MILLISECONDS);
+                    idleWorker = worker;
+                }
+            }
+        }
+
         return Observable
             .from(endpoints)
             .flatMap(new Func1<Endpoint, Observable<LifecycleState>>() {
@@ -190,8 +425,28 @@ public abstract class AbstractService extends AbstractStateMachine<LifecycleStat
             return Observable.just(state());
         }
 
+        Endpoint[] current;
+        synchronized (this) {
+            Scheduler.Worker worker = idleWorker;
+            if (worker != null) {
+                worker.unsubscribe();
+                idleWorker = null;
+            }
+            current = endpoints;
+            endpoints = Arrays.copyOf(current, minEndpoints);
+            lastUsed.clear();
+            if (!retiring.isEmpty()) {
+                int length = current.length;
+                current = Arrays.copyOf(current, length + retiring.size());
+                for (int i = 0; i < retiring.size(); i++) {
+                    current[length + i] = retiring.get(i);
+                }
+                retiring.clear();
+            }
+        }
+
         return Observable
-            .from(endpoints)
+            .from(current)
             .flatMap(new Func1<Endpoint, Observable<LifecycleState>>() {
                 @Override
                 public Observable<LifecycleState> call(Endpoint endpoint) {
@@ -25,6 +25,7 @@ import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.Endpoint;
 import com.couchbase.client.core.endpoint.kv.KeyValueEndpoint;
 import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.metrics.LatencyTracker;
 import com.couchbase.client.core.service.strategies.PartitionSelectionStrategy;
 import com.couchbase.client.core.service.strategies.SelectionStrategy;
 import com.lmax.disruptor.RingBuffer;
@@ -42,11 +43,6 @@ public class KeyValueService extends AbstractService {
      */
     private static final SelectionStrategy STRATEGY = new PartitionSelectionStrategy();
 
-    /**
-     * The endpoint factory.
-     */
-    private static final EndpointFactory FACTORY = new KeyValueEndpointFactory();
-
     /**
      * Creates a new {@link KeyValueService}.
      *
@@ -56,10 +52,13 @@ public class KeyValueService extends AbstractService {
      * @param port the port of the service.
      * @param env the shared environment.
      * @param responseBuffer the shared response buffer.
+     * @param latencies the response time estimates of the core, may be null.
      */
     public KeyValueService(final String hostname, final String bucket, final String password, final int port,
-                           final CoreEnvironment env, final RingBuffer<ResponseEvent> responseBuffer) {
-        super(hostname, bucket, password, port, env, env.kvEndpoints(), STRATEGY, responseBuffer, FACTORY);
+                           final CoreEnvironment env, final RingBuffer<ResponseEvent> responseBuffer,
+                           final LatencyTracker latencies) {
+        super(hostname, bucket, password, port, env, env.kvEndpoints(), STRATEGY, responseBuffer,
+            new KeyValueEndpointFactory(latencies));
     }
 
     @Override
@@ -71,10 +70,17 @@ public class KeyValueService extends AbstractService {
      * The factory for {@link KeyValueEndpoint}s.
      */
     static class KeyValueEndpointFactory implements EndpointFactory {
+
+        private final LatencyTracker latencies;
+
+        KeyValueEndpointFactory(final LatencyTracker latencies) {
+            this.latencies = latencies;
+        }
+
         @Override
         public Endpoint create(String hostname, String bucket, String password, int port, CoreEnvironment env,
             RingBuffer<ResponseEvent> responseBuffer) {
-            return new KeyValueEndpoint(hostname, bucket, password, port, env, responseBuffer);
+            return new KeyValueEndpoint(hostname, bucket, password, port, env, responseBuffer, latencies);
         }
     }
 }
@@ -24,6 +24,7 @@ package com.couchbase.client.core.service;
 
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.metrics.LatencyTracker;
 import com.lmax.disruptor.RingBuffer;
 
 public class ServiceFactory {
@@ -32,10 +33,10 @@ public class ServiceFactory {
     }
 
     public static Service create(String hostname, String bucket, String password, int port, CoreEnvironment env,
-        ServiceType type, final RingBuffer<ResponseEvent> responseBuffer) {
+        ServiceType type, final RingBuffer<ResponseEvent> responseBuffer, final LatencyTracker latencies) {
         switch (type) {
             case BINARY:
-                return new KeyValueService(hostname, bucket, password, port, env, responseBuffer);
+                return new KeyValueService(hostname, bucket, password, port, env, responseBuffer, latencies);
             case VIEW:
                 return new ViewService(hostname, bucket, password, port, env, responseBuffer);
             case CONFIG:
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.service.strategies;
+
+import com.couchbase.client.core.endpoint.Endpoint;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.state.LifecycleState;
+import io.netty.util.internal.ThreadLocalRandom;
+
+/**
+ * Selects a connected {@link Endpoint} with as few outstanding requests as possible.
+ *
+ * Two endpoints are picked at random first, and if one of them is connected and free, it is selected right away.
+ * Otherwise all endpoints are scanned for the connected one with the fewest outstanding requests. This keeps the
+ * selection cheap under light load, but never queues a request behind a busy endpoint while another one is free,
+ * which matters for HTTP based endpoints where responses are returned in order on each connection.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class LeastOutstandingSelectionStrategy implements SelectionStrategy {
+
+    @Override
+    public Endpoint select(final CouchbaseRequest request, final Endpoint[] endpoints) {
+        int numEndpoints = endpoints.length;
+        if (numEndpoints == 0) {
+            return null;
+        }
+        if (numEndpoints == 1) {
+            Endpoint endpoint = endpoints[0];
+            return endpoint.isState(LifecycleState.CONNECTED) ? endpoint : null;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(numEndpoints);
+        int second = random.nextInt(numEndpoints - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        if (isFree(endpoints[first])) {
+            return endpoints[first];
+        } else if (isFree(endpoints[second])) {
+            return endpoints[second];
+        }
+        return leastOutstanding(endpoints, first);
+    }
+
+    /**
+     * Checks if the endpoint is connected and has no outstanding requests.
+     *
+     * @param endpoint the endpoint to check.
+     * @return true if the endpoint can take a request right away.
+     */
+    private static boolean isFree(final Endpoint endpoint) {
+        return endpoint.isState(LifecycleState.CONNECTED) && endpoint.outstandingRequests() == 0;
+    }
+
+    /**
+     * Scans all endpoints for the connected one with the fewest outstanding requests.
+     *
+     * @param endpoints the endpoints to choose from.
+     * @param offset the index to start scanning from, so ties are not always resolved to the same endpoint.
+     * @return the selected endpoint, or null if none is connected.
+     */
+    private static Endpoint leastOutstanding(final Endpoint[] endpoints, final int offset) {
+        Endpoint selected = null;
+        int selectedOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < endpoints.length; i++) {
+            Endpoint endpoint = endpoints[(offset + i) % endpoints.length];
+            if (!endpoint.isState(LifecycleState.CONNECTED)) {
+                continue;
+            }
+            int outstanding = endpoint.outstandingRequests();
+            if (outstanding == 0) {
+                return endpoint;
+            } else if (outstanding < selectedOutstanding) {
+                selected = endpoint;
+                selectedOutstanding = outstanding;
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core;
+
+import com.couchbase.client.core.env.BackpressureStrategy;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.metrics.CoreMetrics;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies the functionality of the {@link AdmissionController} and its {@link TokenBucket}.
+ */
+public class AdmissionControllerTest {
+
+    private static final EventTranslatorOneArg<RequestEvent, CouchbaseRequest> TRANSLATOR =
+        new EventTranslatorOneArg<RequestEvent, CouchbaseRequest>() {
+            @Override
+            public void translateTo(RequestEvent event, long sequence, CouchbaseRequest request) {
+                event.setRequest(request);
+            }
+        };
+
+    private RingBuffer<RequestEvent> ringBuffer;
+    private Sequence consumed;
+    private CoreMetrics metrics;
+
+    @Before
+    public void setup() {
+        ringBuffer = RingBuffer.createMultiProducer(new RequestEventFactory(), 2);
+        consumed = new Sequence();
+        ringBuffer.addGatingSequences(consumed);
+        metrics = new CoreMetrics();
+    }
+
+    private AdmissionController controller(final BackpressureStrategy strategy) {
+        CoreEnvironment environment = mock(CoreEnvironment.class);
+        when(environment.backpressureStrategy()).thenReturn(strategy);
+        when(environment.backpressureMaxWaitMicros()).thenReturn(TimeUnit.SECONDS.toMicros(5));
+        when(environment.tokenBucketRate()).thenReturn(1);
+        when(environment.tokenBucketCapacity()).thenReturn(2);
+        return new AdmissionController(environment, metrics);
+    }
+
+    @Test
+    public void shouldFailFastWhenFull() {
+        AdmissionController controller = controller(BackpressureStrategy.FAIL_FAST);
+
+        assertTrue(controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket")));
+        assertTrue(controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket")));
+        assertFalse(controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket")));
+        assertEquals(1, metrics.counter(AdmissionController.REJECTED_FULL));
+    }
+
+    @Test
+    public void shouldWaitForFreeSlot() throws Exception {
+        AdmissionController controller = controller(BackpressureStrategy.BOUNDED_WAIT);
+        controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket"));
+        controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket"));
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                consumed.set(0);
+            }
+        });
+        consumer.start();
+
+        assertTrue(controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket")));
+        assertEquals(0, metrics.counter(AdmissionController.REJECTED_FULL));
+        consumer.join();
+    }
+
+    @Test
+    public void shouldLimitRatePerBucket() {
+        AdmissionController controller = controller(BackpressureStrategy.TOKEN_BUCKET);
+        ringBuffer = RingBuffer.createMultiProducer(new RequestEventFactory(), 16);
+
+        assertTrue(controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket")));
+        assertTrue(controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket")));
+        assertFalse(controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket")));
+        assertTrue(controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "other")));
+        assertEquals(1, metrics.counter(AdmissionController.REJECTED_RATE_LIMITED));
+    }
+
+    @Test
+    public void shouldNotWaitOrLimitRetries() {
+        AdmissionController controller = controller(BackpressureStrategy.TOKEN_BUCKET);
+        ringBuffer = RingBuffer.createMultiProducer(new RequestEventFactory(), 16);
+        controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket"));
+        controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket"));
+
+        GetRequest retry = new GetRequest("key", "bucket");
+        retry.incrementRetryCount();
+        assertTrue(controller.publish(ringBuffer, TRANSLATOR, retry));
+        assertEquals(0, metrics.counter(AdmissionController.REJECTED_RATE_LIMITED));
+
+        controller = controller(BackpressureStrategy.BOUNDED_WAIT);
+        ringBuffer = RingBuffer.createMultiProducer(new RequestEventFactory(), 2);
+        ringBuffer.addGatingSequences(consumed);
+        controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket"));
+        controller.publish(ringBuffer, TRANSLATOR, new GetRequest("key", "bucket"));
+
+        long start = System.nanoTime();
+        assertFalse(controller.publish(ringBuffer, TRANSLATOR, retry));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, metrics.counter(AdmissionController.REJECTED_FULL));
+    }
+
+    @Test
+    public void shouldRefillTokenBucketOverTime() {
+        TokenBucket bucket = new TokenBucket(1000, 2);
+        long now = System.nanoTime();
+
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(1)));
+        assertFalse(bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(1)));
+        assertTrue(bucket.tryAcquire(now + TimeUnit.SECONDS.toNanos(1)));
+        assertTrue(bucket.tryAcquire(now + TimeUnit.SECONDS.toNanos(1)));
+        assertFalse(bucket.tryAcquire(now + TimeUnit.SECONDS.toNanos(1)));
+    }
+}
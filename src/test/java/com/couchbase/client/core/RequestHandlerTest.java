@@ -34,6 +34,7 @@ import com.couchbase.client.core.node.locate.Locator;
 import com.couchbase.client.core.state.LifecycleState;
 import org.junit.Test;
 import rx.Observable;
+import java.net.InetAddress;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -43,6 +44,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -81,19 +83,22 @@ public class RequestHandlerTest {
     }
 
     @Test
-    public void shouldRemoveNodes() {
+    public void shouldRemoveNodes() throws Exception {
         Set<Node> nodes = new HashSet<Node>();
         RequestHandler handler = new RequestHandler(nodes, environment, configObservable, null);
 
         Node node1 = mock(Node.class);
         when(node1.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
         when(node1.disconnect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
+        when(node1.hostname()).thenReturn(InetAddress.getByName("127.0.0.1"));
         Node node2 = mock(Node.class);
         when(node2.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
         when(node2.disconnect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
+        when(node2.hostname()).thenReturn(InetAddress.getByName("127.0.0.2"));
         Node node3 = mock(Node.class);
         when(node3.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
         when(node3.disconnect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
+        when(node3.hostname()).thenReturn(InetAddress.getByName("127.0.0.3"));
 
         handler.addNode(node1).toBlocking().single();
         handler.addNode(node2).toBlocking().single();
@@ -122,6 +127,7 @@ public class RequestHandlerTest {
         Node node1 = mock(Node.class);
         when(node1.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
         when(node1.disconnect()).thenReturn(Observable.just(LifecycleState.DISCONNECTING));
+        when(node1.hostname()).thenReturn(InetAddress.getByName("127.0.0.1"));
         handler.addNode(node1).toBlocking().single();
         assertEquals(1, nodes.size());
 
@@ -145,7 +151,7 @@ public class RequestHandlerTest {
         when(mockEvent.getRequest()).thenReturn(mockRequest);
         handler.onEvent(mockEvent, 0, true);
         verify(mockNode).send(mockRequest);
-        verify(mockNode).send(SignalFlush.INSTANCE);
+        verify(mockNode, never()).send(SignalFlush.INSTANCE);
         verify(mockEvent).setRequest(null);
     }
 
@@ -26,20 +26,33 @@ import com.couchbase.client.core.config.ConfigurationProvider;
 import com.couchbase.client.core.env.CoreEnvironment;
 import com.couchbase.client.core.env.DefaultCoreEnvironment;
 import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.kv.BulkMutationRequest;
+import com.couchbase.client.core.message.kv.GetRequest;
 import com.couchbase.client.core.message.kv.InsertRequest;
 import com.couchbase.client.core.message.kv.InsertResponse;
+import com.couchbase.client.core.message.kv.RemoveRequest;
+import com.couchbase.client.core.message.kv.UpsertRequest;
+import com.couchbase.client.core.metrics.CoreMetrics;
+import com.couchbase.client.core.retry.ExponentialBackoffRetryStrategy;
+import com.couchbase.client.core.retry.RetryReason;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.CharsetUtil;
 import org.junit.Test;
 import rx.subjects.Subject;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Verifies functionality of the {@link ResponseHandler}.
@@ -87,4 +100,79 @@ public class ResponseHandlerTest {
         assertNull(retryEvent.getObservable());
     }
 
+    @Test
+    public void shouldCountRetriesByReason() throws Exception {
+        ClusterFacade clusterMock = mock(ClusterFacade.class);
+        CoreMetrics metrics = new CoreMetrics();
+        ResponseHandler handler = new ResponseHandler(ENVIRONMENT, clusterMock, mock(ConfigurationProvider.class),
+            metrics);
+        GetRequest request = new GetRequest("key", "bucket");
+
+        ResponseEvent retryEvent = new ResponseEvent();
+        ResponseHandler.RETRY_TRANSLATOR.translateTo(retryEvent, 1, request, RetryReason.CHANNEL_NOT_WRITABLE);
+        handler.onEvent(retryEvent, 1, true);
+
+        assertEquals(1, request.retryCount());
+        assertEquals(1, metrics.counter(ResponseHandler.RETRY_METRIC_PREFIX + RetryReason.CHANNEL_NOT_WRITABLE));
+        assertNull(retryEvent.getRetryReason());
+        verify(clusterMock, timeout(1000)).send(request);
+    }
+
+    @Test(expected = RequestCancelledException.class)
+    public void shouldFailRequestWhenStrategyGivesUp() throws Exception {
+        CoreEnvironment environment = mock(CoreEnvironment.class);
+        when(environment.scheduler()).thenReturn(ENVIRONMENT.scheduler());
+        when(environment.retryStrategy()).thenReturn(ExponentialBackoffRetryStrategy.builder().maxAttempts(1).build());
+        ClusterFacade clusterMock = mock(ClusterFacade.class);
+        CoreMetrics metrics = new CoreMetrics();
+        ResponseHandler handler = new ResponseHandler(environment, clusterMock, mock(ConfigurationProvider.class),
+            metrics);
+        GetRequest request = new GetRequest("key", "bucket");
+        request.incrementRetryCount();
+
+        ResponseEvent retryEvent = new ResponseEvent();
+        ResponseHandler.RETRY_TRANSLATOR.translateTo(retryEvent, 1, request, RetryReason.NODE_NOT_AVAILABLE);
+        handler.onEvent(retryEvent, 1, true);
+
+        assertEquals(1, metrics.counter(ResponseHandler.RETRY_GIVEN_UP));
+        verify(clusterMock, never()).send(request);
+        request.observable().toBlocking().single();
+    }
+
+    @Test(expected = RequestTimeoutException.class)
+    public void shouldNotRetryAfterDeadline() throws Exception {
+        ClusterFacade clusterMock = mock(ClusterFacade.class);
+        ResponseHandler handler = new ResponseHandler(ENVIRONMENT, clusterMock, mock(ConfigurationProvider.class));
+        GetRequest request = new GetRequest("key", "bucket");
+        request.timeout(0, TimeUnit.MILLISECONDS);
+
+        ResponseEvent retryEvent = new ResponseEvent();
+        ResponseHandler.RETRY_TRANSLATOR.translateTo(retryEvent, 1, request, RetryReason.NODE_NOT_AVAILABLE);
+        handler.onEvent(retryEvent, 1, true);
+
+        verify(clusterMock, never()).send(request);
+        request.observable().toBlocking().single();
+    }
+
+
+    @Test
+    public void shouldReleaseBulkMutationsWhenFailedByBackpressure() throws Exception {
+        ByteBuf first = Unpooled.copiedBuffer("first", CharsetUtil.UTF_8);
+        ByteBuf second = Unpooled.copiedBuffer("second", CharsetUtil.UTF_8);
+        BulkMutationRequest request = new BulkMutationRequest(Arrays.asList(
+            new UpsertRequest("a", first, "bucket"),
+            new RemoveRequest("b", "bucket"),
+            new UpsertRequest("c", second, "bucket")), "bucket");
+        request.incrementRetryCount();
+
+        ResponseHandler.fail(request, new BackpressureException());
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+        try {
+            request.observable().toBlocking().single();
+            fail("Expected a BackpressureException");
+        } catch (BackpressureException e) {
+            // expected
+        }
+    }
 }
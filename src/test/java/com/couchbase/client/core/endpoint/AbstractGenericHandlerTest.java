@@ -27,6 +27,8 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -53,6 +55,7 @@ import com.couchbase.client.core.message.query.GenericQueryRequest;
 import com.couchbase.client.core.message.query.GenericQueryResponse;
 import com.couchbase.client.core.message.query.QueryRequest;
 import com.couchbase.client.core.message.view.GetDesignDocumentRequest;
+import com.couchbase.client.core.message.view.GetDesignDocumentResponse;
 import com.couchbase.client.core.util.Resources;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lmax.disruptor.EventFactory;
@@ -129,8 +132,14 @@ public class AbstractGenericHandlerTest {
 
     private <R, E, Q extends CouchbaseRequest> AbstractGenericHandler<R, E, Q> createFakeHandler(
             final FakeHandlerDelegate<R, E, Q> delegate) {
+        return createFakeHandler(delegate, false);
+    }
+
+    private <R, E, Q extends CouchbaseRequest> AbstractGenericHandler<R, E, Q> createFakeHandler(
+            final FakeHandlerDelegate<R, E, Q> delegate, final boolean responseFastPath) {
         CoreEnvironment environment = mock(CoreEnvironment.class);
         when(environment.scheduler()).thenReturn(Schedulers.computation());
+        when(environment.responseFastPath()).thenReturn(responseFastPath);
         AbstractEndpoint endpoint = mock(AbstractEndpoint.class);
         when(endpoint.environment()).thenReturn(environment);
         when(environment.userAgent()).thenReturn("Couchbase Client Mock");
@@ -206,4 +215,66 @@ public class AbstractGenericHandlerTest {
         }
     }
 
+    @Test
+    public void shouldCompleteResponseDirectlyOnFastPath() throws Exception {
+        FakeHandlerDelegate<ResponseStatus, Object, GetDesignDocumentRequest> delegate =
+            new FakeHandlerDelegate<ResponseStatus, Object, GetDesignDocumentRequest>() {
+                @Override
+                public Object encodeRequest(ChannelHandlerContext ctx, GetDesignDocumentRequest msg) throws Exception {
+                    return new Object();
+                }
+                @Override
+                public CouchbaseResponse decodeResponse(ChannelHandlerContext ctx, ResponseStatus msg)
+                    throws Exception {
+                    return new GetDesignDocumentResponse("name", false, Unpooled.EMPTY_BUFFER, msg, null);
+                }
+            };
+
+        EmbeddedChannel channel = new EmbeddedChannel(createFakeHandler(delegate, true));
+        GetDesignDocumentRequest request = new GetDesignDocumentRequest("any", false, "bucket", "password");
+        channel.writeOutbound(request);
+        channel.writeInbound(ResponseStatus.SUCCESS);
+
+        CouchbaseResponse response = request.observable().timeout(1, TimeUnit.SECONDS).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, response.status());
+        assertTrue(firedEvents.isEmpty());
+
+        channel = new EmbeddedChannel(createFakeHandler(delegate, true));
+        channel.writeOutbound(new GetDesignDocumentRequest("any", false, "bucket", "password"));
+        channel.writeInbound(ResponseStatus.RETRY);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(1, firedEvents.size());
+        assertEquals(ResponseStatus.RETRY, ((CouchbaseResponse) firedEvents.get(0)).status());
+    }
+
+    @Test
+    public void shouldCountRequestBeingDecodedAsInFlight() {
+        AbstractEndpoint endpoint = mock(AbstractEndpoint.class);
+        AbstractGenericHandler<String, Object, GetDesignDocumentRequest> handler =
+            new AbstractGenericHandler<String, Object, GetDesignDocumentRequest>(endpoint, responseRingBuffer,
+                new ArrayDeque<GetDesignDocumentRequest>()) {
+                @Override
+                protected Object encodeRequest(ChannelHandlerContext ctx, GetDesignDocumentRequest msg) {
+                    return new Object();
+                }
+                @Override
+                protected CouchbaseResponse decodeResponse(ChannelHandlerContext ctx, String msg) {
+                    if ("last".equals(msg)) {
+                        finishedDecoding();
+                    }
+                    return null;
+                }
+            };
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        channel.writeOutbound(new GetDesignDocumentRequest("first", false, "bucket", "password"));
+        verify(endpoint).inFlight(1);
+        channel.writeInbound("chunk");
+        channel.writeOutbound(new GetDesignDocumentRequest("second", false, "bucket", "password"));
+        verify(endpoint).inFlight(2);
+        channel.writeInbound("last");
+        verify(endpoint, times(2)).inFlight(1);
+    }
+
 }
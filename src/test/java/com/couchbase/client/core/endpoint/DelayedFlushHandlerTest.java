@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoopGroup;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Verifies the functionality of the {@link DelayedFlushHandler}.
+ *
+ * The handler schedules its delayed flushes on the event loop, which the embedded channel does not support, so
+ * it is tested on a local channel pair with a real event loop instead.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class DelayedFlushHandlerTest {
+
+    private static final LocalAddress ADDRESS = new LocalAddress("DelayedFlushHandlerTest");
+
+    private EventLoopGroup group;
+    private Channel server;
+    private BlockingQueue<Integer> received;
+
+    @Before
+    public void setup() throws Exception {
+        group = new LocalEventLoopGroup(1);
+        received = new LinkedBlockingQueue<Integer>();
+        server = new ServerBootstrap()
+            .group(group)
+            .channel(LocalServerChannel.class)
+            .childHandler(new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+                    ByteBuf buf = (ByteBuf) msg;
+                    received.add(buf.readableBytes());
+                    buf.release();
+                }
+            })
+            .bind(ADDRESS).sync().channel();
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        server.close().sync();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+
+    private Channel connect(final DelayedFlushHandler handler) throws Exception {
+        return new Bootstrap()
+            .group(group)
+            .channel(LocalChannel.class)
+            .handler(handler)
+            .connect(ADDRESS).sync().channel();
+    }
+
+    @Test
+    public void shouldDelayFlushBelowMaxBytes() throws Exception {
+        Channel channel = connect(new DelayedFlushHandler(TimeUnit.MILLISECONDS.toMicros(500), 16));
+
+        channel.writeAndFlush(Unpooled.buffer().writeZero(8));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+
+        Integer bytes = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(bytes);
+        assertEquals(8, bytes.intValue());
+        channel.close().sync();
+    }
+
+    @Test
+    public void shouldFlushOnceMaxBytesArePending() throws Exception {
+        Channel channel = connect(new DelayedFlushHandler(TimeUnit.SECONDS.toMicros(30), 16));
+
+        channel.writeAndFlush(Unpooled.buffer().writeZero(8));
+        channel.writeAndFlush(Unpooled.buffer().writeZero(8));
+
+        int total = 0;
+        while (total < 16) {
+            Integer bytes = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(bytes);
+            total += bytes;
+        }
+        assertEquals(16, total);
+        channel.close().sync();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint;
+
+import org.junit.Test;
+import rx.functions.Func1;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the functionality of the {@link OpaqueRequestMap}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class OpaqueRequestMapTest {
+
+    @Test
+    public void shouldPutGetAndRemove() {
+        OpaqueRequestMap<String> map = new OpaqueRequestMap<String>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(2, "two"));
+        assertEquals(2, map.size());
+
+        assertEquals("one", map.get(1));
+        assertEquals("two", map.remove(2));
+        assertNull(map.remove(2));
+        assertNull(map.get(3));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void shouldReplaceRequestWithSameOpaque() {
+        OpaqueRequestMap<String> map = new OpaqueRequestMap<String>();
+        map.put(5, "old");
+        assertEquals("old", map.put(5, "new"));
+        assertEquals(1, map.size());
+        assertEquals("new", map.get(5));
+    }
+
+    @Test
+    public void shouldGrowAndKeepCollidingEntries() {
+        OpaqueRequestMap<Integer> map = new OpaqueRequestMap<Integer>(2);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i * 64, i);
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i += 2) {
+            assertEquals(Integer.valueOf(i), map.remove(i * 64));
+        }
+        for (int i = 1; i < 1000; i += 2) {
+            assertEquals(Integer.valueOf(i), map.get(i * 64));
+        }
+        assertEquals(500, map.size());
+    }
+
+    @Test
+    public void shouldRemoveMatchingRequests() {
+        OpaqueRequestMap<Integer> map = new OpaqueRequestMap<Integer>(2);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+
+        int removed = map.removeIf(new Func1<Integer, Boolean>() {
+            @Override
+            public Boolean call(final Integer request) {
+                return request % 2 == 0;
+            }
+        });
+        assertEquals(50, removed);
+        assertEquals(50, map.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), map.get(i));
+        }
+    }
+
+    @Test
+    public void shouldDrainAllRequests() {
+        OpaqueRequestMap<Integer> map = new OpaqueRequestMap<Integer>();
+        for (int i = 0; i < 100; i++) {
+            map.put(Integer.MAX_VALUE - i, i);
+        }
+
+        Set<Integer> drained = new HashSet<Integer>(map.drain());
+        assertEquals(100, drained.size());
+        assertTrue(map.isEmpty());
+        assertNull(map.get(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldDrainRequestStoredUnderManyOpaquesOnce() {
+        OpaqueRequestMap<String> map = new OpaqueRequestMap<String>();
+        String bulk = "bulk";
+        for (int i = 0; i < 10; i++) {
+            map.put(i, bulk);
+        }
+        map.put(10, "single");
+
+        List<String> drained = map.drain();
+        assertEquals(2, drained.size());
+        assertTrue(drained.contains(bulk));
+        assertTrue(drained.contains("single"));
+    }
+}
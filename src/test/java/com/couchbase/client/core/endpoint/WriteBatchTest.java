@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint;
+
+import com.couchbase.client.core.message.internal.SignalFlush;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Verifies the functionality of the {@link WriteBatch}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class WriteBatchTest {
+
+    @After
+    public void unbindBatch() {
+        WriteBatch.unbind();
+    }
+
+    @Test
+    public void shouldBindBatchToThread() throws Exception {
+        final WriteBatch batch = WriteBatch.begin();
+        assertSame(batch, WriteBatch.current());
+        assertSame(batch, WriteBatch.begin());
+
+        final WriteBatch[] other = new WriteBatch[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other[0] = WriteBatch.current();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNull(other[0]);
+    }
+
+    @Test
+    public void shouldFlushAndKeepBatchBoundOnEnd() {
+        Endpoint written = mock(Endpoint.class);
+        WriteBatch batch = WriteBatch.begin();
+        batch.written(written);
+
+        batch.end();
+        verify(written).send(SignalFlush.INSTANCE);
+        assertSame(batch, WriteBatch.current());
+        assertSame(batch, WriteBatch.begin());
+
+        batch.end();
+        verify(written, times(1)).send(SignalFlush.INSTANCE);
+    }
+
+    @Test
+    public void shouldFlushOnlyWrittenEndpointsOnce() {
+        Endpoint written = mock(Endpoint.class);
+        Endpoint other = mock(Endpoint.class);
+        WriteBatch batch = WriteBatch.begin();
+
+        batch.written(written);
+        batch.written(written);
+        batch.flush();
+        batch.flush();
+
+        verify(written, times(1)).send(SignalFlush.INSTANCE);
+        verify(other, never()).send(SignalFlush.INSTANCE);
+    }
+
+    @Test
+    public void shouldGrowBeyondInitialCapacity() {
+        Endpoint[] endpoints = new Endpoint[40];
+        WriteBatch batch = WriteBatch.begin();
+        for (int i = 0; i < endpoints.length; i++) {
+            endpoints[i] = mock(Endpoint.class);
+            batch.written(endpoints[i]);
+        }
+        batch.flush();
+
+        for (Endpoint endpoint : endpoints) {
+            verify(endpoint).send(SignalFlush.INSTANCE);
+        }
+    }
+}
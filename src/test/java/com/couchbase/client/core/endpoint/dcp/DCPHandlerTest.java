@@ -23,21 +23,36 @@
 package com.couchbase.client.core.endpoint.dcp;
 
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
+import com.couchbase.client.core.env.CoreEnvironment;
 import com.couchbase.client.core.message.dcp.ConnectionType;
 import com.couchbase.client.core.message.dcp.DCPRequest;
+import com.couchbase.client.core.message.dcp.MutationMessage;
 import com.couchbase.client.core.message.dcp.OpenConnectionRequest;
+import com.couchbase.client.core.message.dcp.StreamRequestRequest;
+import com.couchbase.client.core.message.dcp.StreamRequestResponse;
 import com.couchbase.client.core.util.CollectingResponseEventSink;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 import org.junit.Before;
 import org.junit.Test;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 
 /**
@@ -94,4 +109,62 @@ public class DCPHandlerTest {
         assertEquals(1, outbound.getExtras().readInt());
     }
 
+    @Test
+    public void shouldReadMutationExtrasInPlace() {
+        CoreEnvironment environment = mock(CoreEnvironment.class);
+        when(environment.scheduler()).thenReturn(Schedulers.immediate());
+        AbstractEndpoint endpoint = mock(AbstractEndpoint.class);
+        when(endpoint.environment()).thenReturn(environment);
+        EmbeddedChannel streamChannel = new EmbeddedChannel(new DCPHandler(endpoint, eventSink, requestQueue));
+
+        streamChannel.writeOutbound(new StreamRequestRequest((short) 0, BUCKET));
+        ReferenceCountUtil.release(streamChannel.readOutbound());
+        FullBinaryMemcacheResponse streamResponse = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+                Unpooled.EMPTY_BUFFER);
+        streamResponse.setOpcode(DCPHandler.OP_STREAM_REQUEST);
+        streamResponse.setOpaque(1);
+        streamChannel.writeInbound(streamResponse);
+
+        StreamRequestResponse response = (StreamRequestResponse) eventSink.responseEvents().get(0).getMessage();
+        final List<DCPRequest> messages = new ArrayList<DCPRequest>();
+        response.stream().subscribe(new Action1<DCPRequest>() {
+            @Override
+            public void call(DCPRequest message) {
+                messages.add(message);
+            }
+        });
+
+        ByteBuf extras = Unpooled.buffer().writeLong(-1).writeLong(1).writeLong(2).writeInt(3).writeInt(4).writeInt(5);
+        extras.skipBytes(8);
+        FullBinaryMemcacheResponse mutation = new DefaultFullBinaryMemcacheResponse("key", extras,
+                Unpooled.copiedBuffer("value", CharsetUtil.UTF_8));
+        mutation.setOpcode(DCPHandler.OP_MUTATION);
+        mutation.setExtrasLength((byte) extras.readableBytes());
+        mutation.setOpaque(1);
+        streamChannel.writeInbound(mutation);
+
+        assertEquals(1, messages.size());
+        MutationMessage message = (MutationMessage) messages.get(0);
+        assertEquals("key", message.key());
+        assertEquals(3, message.flags());
+        assertEquals(4, message.expiration());
+        assertEquals(5, message.lockTime());
+        assertEquals("value", message.content().toString(CharsetUtil.UTF_8));
+        message.content().release();
+    }
+
+    @Test
+    public void shouldDropMessageWithUnknownOpaque() {
+        EmbeddedChannel mapChannel = new EmbeddedChannel(new DCPHandler(mock(AbstractEndpoint.class), eventSink));
+
+        FullBinaryMemcacheResponse mutation = new DefaultFullBinaryMemcacheResponse("key", Unpooled.EMPTY_BUFFER,
+                Unpooled.copiedBuffer("value", CharsetUtil.UTF_8));
+        mutation.setOpcode(DCPHandler.OP_MUTATION);
+        mutation.setOpaque(42);
+        mapChannel.writeInbound(mutation);
+
+        assertEquals(0, eventSink.responseEvents().size());
+        assertEquals(0, mutation.refCnt());
+    }
+
 }
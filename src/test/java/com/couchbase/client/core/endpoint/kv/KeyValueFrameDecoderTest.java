@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.endpoint.kv;
+
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.FullBinaryMemcacheResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.CharsetUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Verifies the functionality of the {@link KeyValueFrameDecoder}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class KeyValueFrameDecoderTest {
+
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setup() {
+        channel = new EmbeddedChannel(new KeyValueFrameDecoder());
+    }
+
+    @Test
+    public void shouldDecodeFullFrame() {
+        channel.writeInbound(frame((byte) 0x00, (short) 0x01, 42, 1234L, 5, "key", "value"));
+
+        FullBinaryMemcacheResponse response = (FullBinaryMemcacheResponse) channel.readInbound();
+        assertEquals((byte) 0x81, response.getMagic());
+        assertEquals((byte) 0x00, response.getOpcode());
+        assertEquals(0x01, response.getStatus());
+        assertEquals(42, response.getOpaque());
+        assertEquals(1234L, response.getCAS());
+        assertEquals(4, response.getExtrasLength());
+        assertEquals(5, response.getExtras().getInt(0));
+        assertEquals(3, response.getKeyLength());
+        assertEquals("key", response.getKey());
+        assertEquals(12, response.getTotalBodyLength());
+        assertEquals("value", response.content().toString(CharsetUtil.UTF_8));
+        response.release();
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void shouldDecodeFrameWithoutBody() {
+        channel.writeInbound(frame((byte) 0x02, (short) 0x00, 7, 99L, -1, null, null));
+
+        FullBinaryMemcacheResponse response = (FullBinaryMemcacheResponse) channel.readInbound();
+        assertEquals(7, response.getOpaque());
+        assertEquals(0, response.getTotalBodyLength());
+        assertNull(response.getKey());
+        assertNull(response.getExtras());
+        assertEquals(0, response.content().readableBytes());
+        response.release();
+    }
+
+    @Test
+    public void shouldWaitForCompleteFrame() {
+        ByteBuf frame = frame((byte) 0x00, (short) 0x00, 1, 0L, 5, null, "content");
+        channel.writeInbound(frame.readSlice(10).retain());
+        assertNull(channel.readInbound());
+        channel.writeInbound(frame.readSlice(20).retain());
+        assertNull(channel.readInbound());
+        channel.writeInbound(frame);
+
+        FullBinaryMemcacheResponse response = (FullBinaryMemcacheResponse) channel.readInbound();
+        assertEquals("content", response.content().toString(CharsetUtil.UTF_8));
+        response.release();
+    }
+
+    @Test
+    public void shouldDecodeMultipleFramesFromOneBuffer() {
+        ByteBuf frames = Unpooled.buffer();
+        for (int i = 0; i < 3; i++) {
+            ByteBuf frame = frame((byte) 0x00, (short) 0x00, i, 0L, -1, null, "value" + i);
+            frames.writeBytes(frame);
+            frame.release();
+        }
+        channel.writeInbound(frames);
+
+        for (int i = 0; i < 3; i++) {
+            FullBinaryMemcacheResponse response = (FullBinaryMemcacheResponse) channel.readInbound();
+            assertEquals(i, response.getOpaque());
+            assertEquals("value" + i, response.content().toString(CharsetUtil.UTF_8));
+            response.release();
+        }
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void shouldDecodeUnsignedKeyAndExtrasLengths() {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            key.append('k');
+        }
+        channel.writeInbound(frame((byte) 0x00, (short) 0x00, 1, 0L, 5, key.toString(), "value"));
+
+        FullBinaryMemcacheResponse response = (FullBinaryMemcacheResponse) channel.readInbound();
+        assertEquals(40000, response.getKey().length());
+        assertEquals("value", response.content().toString(CharsetUtil.UTF_8));
+        response.release();
+    }
+
+    @Test
+    public void shouldCloseChannelOnInvalidFrameLengths() {
+        ByteBuf frame = frame((byte) 0x00, (short) 0x00, 1, 0L, 5, "key", "value");
+        frame.setInt(8, 2);
+        try {
+            channel.writeInbound(frame);
+            fail("Expected a CorruptedFrameException");
+        } catch (CorruptedFrameException e) {
+            // expected
+        }
+        assertNull(channel.readInbound());
+        assertFalse(channel.isOpen());
+        assertEquals(0, frame.refCnt());
+    }
+
+    /**
+     * Creates an encoded response frame, with 4 bytes of extras unless they are negative.
+     */
+    private static ByteBuf frame(final byte opcode, final short status, final int opaque, final long cas,
+        final int extras, final String key, final String value) {
+        byte[] keyBytes = key == null ? new byte[0] : key.getBytes(CharsetUtil.UTF_8);
+        byte[] valueBytes = value == null ? new byte[0] : value.getBytes(CharsetUtil.UTF_8);
+        int extrasLength = extras < 0 ? 0 : 4;
+
+        ByteBuf frame = Unpooled.buffer();
+        frame
+            .writeByte(0x81)
+            .writeByte(opcode)
+            .writeShort(keyBytes.length)
+            .writeByte(extrasLength)
+            .writeByte(0)
+            .writeShort(status)
+            .writeInt(extrasLength + keyBytes.length + valueBytes.length)
+            .writeInt(opaque)
+            .writeLong(cas);
+        if (extras >= 0) {
+            frame.writeInt(extras);
+        }
+        return frame.writeBytes(keyBytes).writeBytes(valueBytes);
+    }
+}
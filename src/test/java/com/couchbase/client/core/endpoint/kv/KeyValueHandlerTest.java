@@ -23,10 +23,15 @@ package com.couchbase.client.core.endpoint.kv;
 
 import com.couchbase.client.core.CouchbaseException;
 import com.couchbase.client.core.endpoint.AbstractEndpoint;
+import com.couchbase.client.core.endpoint.OpaqueRequestMap;
 import com.couchbase.client.core.message.CouchbaseResponse;
 import com.couchbase.client.core.message.ResponseStatus;
 import com.couchbase.client.core.message.kv.AppendRequest;
 import com.couchbase.client.core.message.kv.BinaryRequest;
+import com.couchbase.client.core.message.kv.BulkGetRequest;
+import com.couchbase.client.core.message.kv.BulkGetResponse;
+import com.couchbase.client.core.message.kv.BulkMutationRequest;
+import com.couchbase.client.core.message.kv.BulkPartResponse;
 import com.couchbase.client.core.message.kv.CounterRequest;
 import com.couchbase.client.core.message.kv.CounterResponse;
 import com.couchbase.client.core.message.kv.GetBucketConfigRequest;
@@ -34,6 +39,7 @@ import com.couchbase.client.core.message.kv.GetBucketConfigResponse;
 import com.couchbase.client.core.message.kv.GetRequest;
 import com.couchbase.client.core.message.kv.GetResponse;
 import com.couchbase.client.core.message.kv.InsertRequest;
+import com.couchbase.client.core.message.kv.InsertResponse;
 import com.couchbase.client.core.message.kv.ObserveRequest;
 import com.couchbase.client.core.message.kv.ObserveResponse;
 import com.couchbase.client.core.message.kv.PrependRequest;
@@ -44,6 +50,7 @@ import com.couchbase.client.core.message.kv.TouchRequest;
 import com.couchbase.client.core.message.kv.UnlockRequest;
 import com.couchbase.client.core.message.kv.UpsertRequest;
 import com.couchbase.client.core.util.CollectingResponseEventSink;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheClientCodec;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheRequest;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponseStatus;
 import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.DefaultFullBinaryMemcacheResponse;
@@ -54,16 +61,20 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.Timeout;
 import org.junit.Before;
 import org.junit.Test;
 import rx.subjects.AsyncSubject;
 import java.net.InetAddress;
 import java.nio.charset.Charset;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Queue;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -147,6 +158,21 @@ public class KeyValueHandlerTest {
         assertEquals(BUCKET, event.bucket());
     }
 
+    @Test
+    public void shouldReleaseResponseOfTimedOutRequest() {
+        FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse("key", Unpooled.EMPTY_BUFFER,
+            Unpooled.copiedBuffer("content", CharsetUtil.UTF_8));
+
+        GetRequest requestMock = mock(GetRequest.class);
+        when(requestMock.bucket()).thenReturn(BUCKET);
+        when(requestMock.timedOut()).thenReturn(true);
+        requestQueue.add(requestMock);
+        channel.writeInbound(response);
+
+        assertEquals(0, eventSink.responseEvents().size());
+        assertEquals(0, response.content().refCnt());
+    }
+
     @Test
     public void shouldDecodeNotFoundGet() {
         ByteBuf content = Unpooled.copiedBuffer("Not Found", CharsetUtil.UTF_8);
@@ -821,4 +847,359 @@ public class KeyValueHandlerTest {
         responseSubject.toBlocking().single();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldMatchOutOfOrderResponsesByOpaque() {
+        EmbeddedChannel mapChannel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class), eventSink));
+
+        GetRequest first = new GetRequest("first", BUCKET);
+        first.partition((short) 1);
+        GetRequest second = new GetRequest("second", BUCKET);
+        second.partition((short) 2);
+        mapChannel.writeOutbound(first, second);
+        BinaryMemcacheRequest firstOutbound = (BinaryMemcacheRequest) mapChannel.readOutbound();
+        BinaryMemcacheRequest secondOutbound = (BinaryMemcacheRequest) mapChannel.readOutbound();
+        ReferenceCountUtil.release(firstOutbound);
+        ReferenceCountUtil.release(secondOutbound);
+
+        FullBinaryMemcacheResponse secondResponse = new DefaultFullBinaryMemcacheResponse("second",
+            Unpooled.EMPTY_BUFFER, Unpooled.copiedBuffer("2", CharsetUtil.UTF_8));
+        secondResponse.setOpaque(secondOutbound.getOpaque());
+        FullBinaryMemcacheResponse firstResponse = new DefaultFullBinaryMemcacheResponse("first",
+            Unpooled.EMPTY_BUFFER, Unpooled.copiedBuffer("1", CharsetUtil.UTF_8));
+        firstResponse.setOpaque(firstOutbound.getOpaque());
+        mapChannel.writeInbound(secondResponse, firstResponse);
+
+        assertEquals(2, eventSink.responseEvents().size());
+        assertEquals(second.observable(), eventSink.responseEvents().get(0).getObservable());
+        assertEquals(first.observable(), eventSink.responseEvents().get(1).getObservable());
+        GetResponse event = (GetResponse) eventSink.responseEvents().get(1).getMessage();
+        assertEquals("1", event.content().toString(CHARSET));
+        ReferenceCountUtil.release(event);
+    }
+
+    @Test
+    public void shouldIgnoreResponseWithUnknownOpaque() {
+        EmbeddedChannel mapChannel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class), eventSink));
+
+        FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse("key", Unpooled.EMPTY_BUFFER,
+            Unpooled.EMPTY_BUFFER);
+        response.setOpaque(Integer.MAX_VALUE);
+        mapChannel.writeInbound(response);
+
+        assertEquals(0, eventSink.responseEvents().size());
+    }
+
+    @Test
+    public void shouldAssignOpaquesPerChannel() {
+        EmbeddedChannel otherChannel = new EmbeddedChannel(
+            new KeyValueHandler(mock(AbstractEndpoint.class), eventSink, new ArrayDeque<BinaryRequest>()));
+
+        GetRequest first = new GetRequest("first", BUCKET);
+        first.partition((short) 1);
+        GetRequest second = new GetRequest("second", BUCKET);
+        second.partition((short) 2);
+        GetRequest other = new GetRequest("other", BUCKET);
+        other.partition((short) 3);
+        channel.writeOutbound(first, second);
+        otherChannel.writeOutbound(other);
+
+        BinaryMemcacheRequest firstOutbound = (BinaryMemcacheRequest) channel.readOutbound();
+        BinaryMemcacheRequest secondOutbound = (BinaryMemcacheRequest) channel.readOutbound();
+        BinaryMemcacheRequest otherOutbound = (BinaryMemcacheRequest) otherChannel.readOutbound();
+        assertEquals(first.opaque(), firstOutbound.getOpaque());
+        assertEquals(second.opaque(), secondOutbound.getOpaque());
+        assertEquals(first.opaque() + 1, second.opaque());
+        assertEquals(0, other.opaque());
+        assertEquals(0, otherOutbound.getOpaque());
+        ReferenceCountUtil.release(firstOutbound);
+        ReferenceCountUtil.release(secondOutbound);
+        ReferenceCountUtil.release(otherOutbound);
+    }
+
+    @Test
+    public void shouldEncodeKeyLengthInBytes() {
+        String id = "k\u00fcy\u20ac";
+        GetRequest request = new GetRequest(id, BUCKET);
+        request.partition((short) 1);
+        assertSame(request.keyBytes(), request.keyBytes());
+
+        channel.writeOutbound(request);
+        BinaryMemcacheRequest outbound = (BinaryMemcacheRequest) channel.readOutbound();
+        assertEquals(id, outbound.getKey());
+        assertEquals(7, outbound.getKeyLength());
+        assertEquals(7, outbound.getTotalBodyLength());
+        ReferenceCountUtil.release(outbound);
+    }
+
+    @Test
+    public void shouldEncodeDirectlyLikeTheCodec() {
+        assertDirectEncodingMatchesCodec(new GetRequest("key", BUCKET), new GetRequest("key", BUCKET));
+        assertDirectEncodingMatchesCodec(new GetRequest("k\u00fcy\u20ac", BUCKET),
+            new GetRequest("k\u00fcy\u20ac", BUCKET));
+        assertDirectEncodingMatchesCodec(new GetRequest("key", BUCKET, true, false, 15),
+            new GetRequest("key", BUCKET, true, false, 15));
+        assertDirectEncodingMatchesCodec(new GetRequest("key", BUCKET, false, true, 20),
+            new GetRequest("key", BUCKET, false, true, 20));
+        assertDirectEncodingMatchesCodec(new ReplicaGetRequest("key", BUCKET, (short) 1),
+            new ReplicaGetRequest("key", BUCKET, (short) 1));
+        assertDirectEncodingMatchesCodec(new UpsertRequest("key", content("upsert"), 10, 3, BUCKET),
+            new UpsertRequest("key", content("upsert"), 10, 3, BUCKET));
+        assertDirectEncodingMatchesCodec(new InsertRequest("key", content("insert"), BUCKET),
+            new InsertRequest("key", content("insert"), BUCKET));
+        assertDirectEncodingMatchesCodec(new ReplaceRequest("key", content("replace"), 1234L, BUCKET),
+            new ReplaceRequest("key", content("replace"), 1234L, BUCKET));
+        assertDirectEncodingMatchesCodec(new RemoveRequest("key", 1234L, BUCKET),
+            new RemoveRequest("key", 1234L, BUCKET));
+        assertDirectEncodingMatchesCodec(new CounterRequest("key", 5, -3, 10, BUCKET),
+            new CounterRequest("key", 5, -3, 10, BUCKET));
+        assertDirectEncodingMatchesCodec(new TouchRequest("key", 30, BUCKET), new TouchRequest("key", 30, BUCKET));
+        assertDirectEncodingMatchesCodec(new UnlockRequest("key", 1234L, BUCKET),
+            new UnlockRequest("key", 1234L, BUCKET));
+        assertDirectEncodingMatchesCodec(new ObserveRequest("key", 1234L, true, (short) 0, BUCKET),
+            new ObserveRequest("key", 1234L, true, (short) 0, BUCKET));
+        assertDirectEncodingMatchesCodec(new AppendRequest("key", 1234L, content("append"), BUCKET),
+            new AppendRequest("key", 1234L, content("append"), BUCKET));
+        assertDirectEncodingMatchesCodec(new PrependRequest("key", 0L, content("prepend"), BUCKET),
+            new PrependRequest("key", 0L, content("prepend"), BUCKET));
+    }
+
+    @Test
+    public void shouldKeepContentRetainedWhenEncodingDirectly() {
+        EmbeddedChannel directChannel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class),
+            eventSink, new ArrayDeque<BinaryRequest>(), true));
+        ByteBuf content = content("content");
+        UpsertRequest request = new UpsertRequest("key", content, BUCKET);
+        request.partition((short) 1);
+
+        directChannel.writeOutbound(request);
+        ByteBuf outbound = (ByteBuf) directChannel.readOutbound();
+        assertEquals(24 + 8 + 3 + 7, outbound.readableBytes());
+        outbound.release();
+        assertEquals(1, content.refCnt());
+        assertEquals(7, content.readableBytes());
+        content.release();
+    }
+
+    /**
+     * Encodes the first request through the memcache codec and the second one directly and compares the result.
+     */
+    @Test
+    public void shouldPipelineBulkGetAsQuietGets() {
+        EmbeddedChannel bulkChannel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class),
+            eventSink, new OpaqueRequestMap<BinaryRequest>(), true));
+
+        BulkGetRequest request = new BulkGetRequest(Arrays.asList("a", "bc"), BUCKET).part(new int[] {0, 1});
+        request.partition(0, (short) 1);
+        request.partition(1, (short) 2);
+        bulkChannel.writeOutbound(request);
+        ByteBuf outbound = readAllOutbound(bulkChannel);
+
+        int opaque = request.opaque();
+        assertEquals(3 * 24 + 3, outbound.readableBytes());
+        assertEquals(KeyValueHandler.OP_GET_QUIET, outbound.getByte(1));
+        assertEquals(1, outbound.getShort(2));
+        assertEquals(1, outbound.getShort(6));
+        assertEquals(opaque, outbound.getInt(12));
+        assertEquals("a", outbound.toString(24, 1, CHARSET));
+        assertEquals(KeyValueHandler.OP_GET_QUIET, outbound.getByte(26));
+        assertEquals(2, outbound.getShort(27));
+        assertEquals(2, outbound.getShort(31));
+        assertEquals(opaque + 1, outbound.getInt(37));
+        assertEquals("bc", outbound.toString(49, 2, CHARSET));
+        assertEquals(KeyValueHandler.OP_NOOP, outbound.getByte(52));
+        assertEquals(0, outbound.getShort(53));
+        assertEquals(opaque + 2, outbound.getInt(63));
+        outbound.release();
+    }
+
+    @Test
+    public void shouldCompleteBulkGetPartOnNoop() {
+        EmbeddedChannel bulkChannel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class),
+            eventSink, new OpaqueRequestMap<BinaryRequest>(), true));
+
+        BulkGetRequest root = new BulkGetRequest(Arrays.asList("found", "missing", "moved"), BUCKET);
+        BulkGetRequest part = root.part(new int[] {0, 1, 2});
+        bulkChannel.writeOutbound(part);
+        readAllOutbound(bulkChannel).release();
+        int opaque = part.opaque();
+
+        FullBinaryMemcacheResponse found = new DefaultFullBinaryMemcacheResponse("",
+            Unpooled.buffer().writeInt(7), Unpooled.copiedBuffer("content", CHARSET));
+        found.setOpaque(opaque);
+        FullBinaryMemcacheResponse moved = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+            Unpooled.EMPTY_BUFFER);
+        moved.setStatus(KeyValueHandler.STATUS_NOT_MY_VBUCKET);
+        moved.setOpaque(opaque + 2);
+        bulkChannel.writeInbound(found, moved);
+        assertEquals(0, eventSink.responseEvents().size());
+
+        FullBinaryMemcacheResponse noop = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+            Unpooled.EMPTY_BUFFER);
+        noop.setOpaque(opaque + 3);
+        bulkChannel.writeInbound(noop);
+
+        assertEquals(2, eventSink.responseEvents().size());
+        BulkPartResponse retry = (BulkPartResponse) eventSink.responseEvents().get(0).getMessage();
+        assertEquals(ResponseStatus.RETRY, retry.status());
+        assertEquals(1, retry.request().size());
+        assertEquals("moved", retry.request().key(0));
+        BulkPartResponse answered = (BulkPartResponse) eventSink.responseEvents().get(1).getMessage();
+        assertEquals(ResponseStatus.SUCCESS, answered.status());
+        assertSame(part, answered.request());
+
+        part.observable().onNext(answered);
+        part.observable().onCompleted();
+        BulkGetResponse result = (BulkGetResponse) root.observable().toBlocking().first();
+        assertEquals("found", result.key());
+        assertEquals(7, result.flags());
+        assertEquals("content", result.content().toString(CHARSET));
+        ReferenceCountUtil.release(result);
+
+        FullBinaryMemcacheResponse late = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+            Unpooled.EMPTY_BUFFER);
+        late.setOpaque(opaque + 1);
+        bulkChannel.writeInbound(late);
+        assertEquals(2, eventSink.responseEvents().size());
+        assertNull(bulkChannel.readInbound());
+    }
+
+    @Test
+    public void shouldReleaseBulkPartResultsWhenRootTimedOut() {
+        EmbeddedChannel bulkChannel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class),
+            eventSink, new OpaqueRequestMap<BinaryRequest>(), true));
+
+        BulkGetRequest root = new BulkGetRequest(Arrays.asList("found", "missing"), BUCKET);
+        Timeout expired = mock(Timeout.class);
+        when(expired.isExpired()).thenReturn(true);
+        BulkGetRequest part = root.part(new int[] {0, 1});
+        bulkChannel.writeOutbound(part);
+        readAllOutbound(bulkChannel).release();
+        int opaque = part.opaque();
+
+        ByteBuf content = Unpooled.copiedBuffer("content", CHARSET);
+        FullBinaryMemcacheResponse found = new DefaultFullBinaryMemcacheResponse("",
+            Unpooled.buffer().writeInt(7), content);
+        found.setOpaque(opaque);
+        bulkChannel.writeInbound(found);
+        root.deadlineTimeout(expired);
+        assertEquals(true, part.timedOut());
+
+        FullBinaryMemcacheResponse noop = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+            Unpooled.EMPTY_BUFFER);
+        noop.setOpaque(opaque + 2);
+        bulkChannel.writeInbound(noop);
+
+        assertEquals(0, eventSink.responseEvents().size());
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    public void shouldPipelineBulkMutationsAsQuietMutations() {
+        EmbeddedChannel bulkChannel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class),
+            eventSink, new OpaqueRequestMap<BinaryRequest>(), true));
+
+        ByteBuf content = content("value");
+        BulkMutationRequest request = new BulkMutationRequest(Arrays.<BinaryRequest>asList(
+            new UpsertRequest("a", content, 10, 3, BUCKET), new RemoveRequest("b", 1234L, BUCKET)), BUCKET)
+            .part(new int[] {0, 1});
+        request.partition(1, (short) 5);
+        bulkChannel.writeOutbound(request);
+        ByteBuf outbound = readAllOutbound(bulkChannel);
+
+        int opaque = request.opaque();
+        assertEquals(3 * 24 + 8 + 1 + 5 + 1, outbound.readableBytes());
+        assertEquals(KeyValueHandler.OP_UPSERT_QUIET, outbound.getByte(1));
+        assertEquals(opaque, outbound.getInt(12));
+        assertEquals(3, outbound.getInt(24));
+        assertEquals(10, outbound.getInt(28));
+        assertEquals("avalue", outbound.toString(32, 6, CHARSET));
+        assertEquals(KeyValueHandler.OP_REMOVE_QUIET, outbound.getByte(39));
+        assertEquals(5, outbound.getShort(44));
+        assertEquals(opaque + 1, outbound.getInt(50));
+        assertEquals(1234L, outbound.getLong(54));
+        assertEquals(KeyValueHandler.OP_NOOP, outbound.getByte(64));
+        assertEquals(opaque + 2, outbound.getInt(75));
+        outbound.release();
+        assertEquals(1, content.refCnt());
+    }
+
+    @Test
+    public void shouldOnlyReportFailedBulkMutations() {
+        EmbeddedChannel bulkChannel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class),
+            eventSink, new OpaqueRequestMap<BinaryRequest>(), true));
+
+        ByteBuf stored = content("stored");
+        ByteBuf existing = content("existing");
+        ByteBuf moved = content("moved");
+        InsertRequest failing = new InsertRequest("existing", existing, BUCKET);
+        BulkMutationRequest root = new BulkMutationRequest(Arrays.<BinaryRequest>asList(
+            new UpsertRequest("stored", stored, BUCKET), failing, new UpsertRequest("moved", moved, BUCKET)), BUCKET);
+        BulkMutationRequest part = root.part(new int[] {0, 1, 2});
+        bulkChannel.writeOutbound(part);
+        readAllOutbound(bulkChannel).release();
+        int opaque = part.opaque();
+
+        FullBinaryMemcacheResponse exists = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+            Unpooled.EMPTY_BUFFER);
+        exists.setStatus(BinaryMemcacheResponseStatus.KEY_EEXISTS);
+        exists.setOpaque(opaque + 1);
+        FullBinaryMemcacheResponse notMyVbucket = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+            Unpooled.EMPTY_BUFFER);
+        notMyVbucket.setStatus(KeyValueHandler.STATUS_NOT_MY_VBUCKET);
+        notMyVbucket.setOpaque(opaque + 2);
+        FullBinaryMemcacheResponse noop = new DefaultFullBinaryMemcacheResponse("", Unpooled.EMPTY_BUFFER,
+            Unpooled.EMPTY_BUFFER);
+        noop.setOpaque(opaque + 3);
+        bulkChannel.writeInbound(exists, notMyVbucket, noop);
+
+        assertEquals(0, stored.refCnt());
+        assertEquals(0, existing.refCnt());
+        assertEquals(1, moved.refCnt());
+        assertEquals(2, eventSink.responseEvents().size());
+        BulkPartResponse retry = (BulkPartResponse) eventSink.responseEvents().get(0).getMessage();
+        assertEquals(ResponseStatus.RETRY, retry.status());
+        assertEquals("moved", retry.request().key(0));
+
+        BulkPartResponse answered = (BulkPartResponse) eventSink.responseEvents().get(1).getMessage();
+        part.observable().onNext(answered);
+        part.observable().onCompleted();
+        InsertResponse failed = (InsertResponse) root.observable().toBlocking().first();
+        assertEquals(ResponseStatus.EXISTS, failed.status());
+        assertSame(failing, failed.request());
+        moved.release();
+    }
+
+    private static void assertDirectEncodingMatchesCodec(final BinaryRequest codecRequest,
+        final BinaryRequest directRequest) {
+        EmbeddedChannel codecChannel = new EmbeddedChannel(new BinaryMemcacheClientCodec(),
+            new KeyValueHandler(mock(AbstractEndpoint.class), new CollectingResponseEventSink(),
+                new ArrayDeque<BinaryRequest>(), false));
+        EmbeddedChannel directChannel = new EmbeddedChannel(new KeyValueHandler(mock(AbstractEndpoint.class),
+            new CollectingResponseEventSink(), new ArrayDeque<BinaryRequest>(), true));
+        codecRequest.partition((short) 512);
+        directRequest.partition((short) 512);
+
+        codecChannel.writeOutbound(codecRequest);
+        directChannel.writeOutbound(directRequest);
+        ByteBuf expected = readAllOutbound(codecChannel);
+        ByteBuf actual = readAllOutbound(directChannel);
+        assertEquals(codecRequest.getClass().getSimpleName(), expected, actual);
+        expected.release();
+        actual.release();
+    }
+
+    private static ByteBuf readAllOutbound(final EmbeddedChannel channel) {
+        ByteBuf all = Unpooled.buffer();
+        Object outbound;
+        while ((outbound = channel.readOutbound()) != null) {
+            all.writeBytes((ByteBuf) outbound);
+            ReferenceCountUtil.release(outbound);
+        }
+        return all;
+    }
+
+    private static ByteBuf content(final String value) {
+        return Unpooled.copiedBuffer(value, CharsetUtil.UTF_8);
+    }
+
+}
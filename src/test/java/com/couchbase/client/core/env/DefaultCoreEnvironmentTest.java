@@ -70,4 +70,19 @@ public class DefaultCoreEnvironmentTest {
         System.clearProperty("com.couchbase.kvEndpoints");
     }
 
+    @Test
+    public void shouldParseEnumSysProperties() throws Exception {
+        System.setProperty("com.couchbase.responseBufferWaitStrategy", "busy_spin");
+        System.setProperty("com.couchbase.backpressureStrategy", "BOUNDED_WAIT");
+
+        CoreEnvironment env = DefaultCoreEnvironment.create();
+        assertEquals(WaitStrategyType.BUSY_SPIN, env.responseBufferWaitStrategy());
+        assertEquals(BackpressureStrategy.BOUNDED_WAIT, env.backpressureStrategy());
+        assertEquals(DefaultCoreEnvironment.REQUEST_BUFFER_WAIT_STRATEGY, env.requestBufferWaitStrategy());
+        assertTrue(env.shutdown().toBlocking().single());
+
+        System.clearProperty("com.couchbase.responseBufferWaitStrategy");
+        System.clearProperty("com.couchbase.backpressureStrategy");
+    }
+
 }
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.message.CouchbaseResponse;
+import com.couchbase.client.core.message.ResponseStatus;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import io.netty.util.Timeout;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies the functionality of the {@link AnyReplicaGetRequest}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class AnyReplicaGetRequestTest {
+
+    @Test
+    public void shouldCreateCopiesPerReplica() {
+        AnyReplicaGetRequest request = new AnyReplicaGetRequest("key", "bucket", true);
+
+        BinaryRequest active = request.copy((short) 0);
+        BinaryRequest replica = request.copy((short) 2);
+
+        assertTrue(active instanceof GetRequest);
+        assertEquals("key", active.key());
+        assertTrue(replica instanceof ReplicaGetRequest);
+        assertEquals(2, ((ReplicaGetRequest) replica).replica());
+        assertEquals("bucket", replica.bucket());
+    }
+
+    @Test
+    public void shouldCompleteWithFirstSuccessfulCopy() {
+        AnyReplicaGetRequest request = new AnyReplicaGetRequest("key", "bucket", true);
+        BinaryRequest first = request.copy((short) 0);
+        BinaryRequest second = request.copy((short) 1);
+
+        ByteBuf late = Unpooled.copiedBuffer("late", CharsetUtil.UTF_8);
+        GetResponse success = new GetResponse(ResponseStatus.SUCCESS, 1, 0, "bucket",
+            Unpooled.copiedBuffer("content", CharsetUtil.UTF_8), second);
+        second.observable().onNext(success);
+        second.observable().onCompleted();
+        assertTrue(request.done());
+
+        first.observable().onNext(new GetResponse(ResponseStatus.SUCCESS, 1, 0, "bucket", late, first));
+        first.observable().onCompleted();
+
+        List<CouchbaseResponse> responses = request.observable().toList().toBlocking().single();
+        assertEquals(1, responses.size());
+        assertSame(success, responses.get(0));
+        assertEquals(0, late.refCnt());
+        success.content().release();
+    }
+
+    @Test
+    public void shouldPassOnFailureOfLastCopy() {
+        AnyReplicaGetRequest request = new AnyReplicaGetRequest("key", "bucket", true);
+        BinaryRequest first = request.copy((short) 0);
+        BinaryRequest second = request.copy((short) 1);
+
+        first.observable().onNext(new GetResponse(ResponseStatus.NOT_EXISTS, 0, 0, "bucket",
+            Unpooled.EMPTY_BUFFER, first));
+        first.observable().onCompleted();
+        assertFalse(request.done());
+
+        GetResponse notFound = new GetResponse(ResponseStatus.NOT_EXISTS, 0, 0, "bucket", Unpooled.EMPTY_BUFFER,
+            second);
+        second.observable().onNext(notFound);
+        second.observable().onCompleted();
+
+        assertTrue(request.done());
+        assertSame(notFound, request.observable().toBlocking().single());
+    }
+
+    @Test
+    public void shouldReleaseCopyAnsweredAfterTimeout() {
+        AnyReplicaGetRequest request = new AnyReplicaGetRequest("key", "bucket", true);
+        request.timeout(1, TimeUnit.SECONDS);
+        BinaryRequest copy = request.copy((short) 0);
+        assertFalse(copy.timedOut());
+
+        Timeout expired = mock(Timeout.class);
+        when(expired.isExpired()).thenReturn(true);
+        request.deadlineTimeout(expired);
+        assertTrue(copy.timedOut());
+        assertTrue(request.done());
+
+        ByteBuf content = Unpooled.copiedBuffer("content", CharsetUtil.UTF_8);
+        copy.observable().onNext(new GetResponse(ResponseStatus.SUCCESS, 1, 0, "bucket", content, copy));
+        copy.observable().onCompleted();
+
+        assertEquals(0, content.refCnt());
+        request.observable().onCompleted();
+        assertTrue(request.observable().toList().toBlocking().single().isEmpty());
+    }
+
+    @Test
+    public void shouldTimeOutCopyOnceItsDeadlinePassed() throws Exception {
+        AnyReplicaGetRequest request = new AnyReplicaGetRequest("key", "bucket", true);
+        request.timeout(1, TimeUnit.MILLISECONDS);
+        BinaryRequest copy = request.copy((short) 1);
+
+        Thread.sleep(5);
+        assertTrue(copy.timedOut());
+        assertFalse(request.timedOut());
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.message.kv;
+
+import com.couchbase.client.core.CouchbaseException;
+import com.couchbase.client.core.message.ResponseStatus;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import io.netty.util.Timeout;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies the functionality of the {@link BulkGetRequest} and its parts.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class BulkGetRequestTest {
+
+    @Test
+    public void shouldTimeOutPartsWithRoot() {
+        BulkGetRequest root = new BulkGetRequest(Arrays.asList("a", "b"), "bucket");
+        BulkGetRequest part = root.part(new int[] {0, 1});
+        assertFalse(part.timedOut());
+
+        Timeout expired = mock(Timeout.class);
+        when(expired.isExpired()).thenReturn(true);
+        root.deadlineTimeout(expired);
+        assertTrue(part.timedOut());
+    }
+
+    @Test
+    public void shouldReleaseResultsOfPartAnsweredAfterRootFailed() {
+        BulkGetRequest root = new BulkGetRequest(Arrays.asList("a", "b"), "bucket");
+        BulkGetRequest failing = root.part(new int[] {0});
+        BulkGetRequest answered = root.part(new int[] {1});
+        failing.observable().onError(new CouchbaseException("failed"));
+
+        ByteBuf content = Unpooled.copiedBuffer("content", CharsetUtil.UTF_8);
+        answered.addResult(new BulkGetResponse(ResponseStatus.SUCCESS, 0, 0, "bucket", content, "b", answered));
+        answered.observable().onNext(new BulkPartResponse(ResponseStatus.SUCCESS, "bucket", Unpooled.EMPTY_BUFFER,
+            answered));
+        answered.observable().onCompleted();
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    public void shouldReleaseEverythingWhenDiscarded() {
+        BulkGetRequest root = new BulkGetRequest(Arrays.asList("a", "b"), "bucket");
+        BulkGetRequest part = root.part(new int[] {0, 1});
+        ByteBuf content = Unpooled.copiedBuffer("content", CharsetUtil.UTF_8);
+        ByteBuf config = Unpooled.copiedBuffer("{}", CharsetUtil.UTF_8);
+        part.addResult(new BulkGetResponse(ResponseStatus.SUCCESS, 0, 0, "bucket", content, "a", part));
+        part.retry(1, config);
+
+        part.discard();
+        assertEquals(0, content.refCnt());
+        assertEquals(0, config.refCnt());
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.metrics;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the functionality of the {@link LatencyTracker}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class LatencyTrackerTest {
+
+    @Test
+    public void shouldStartWithFirstRecordedLatency() throws Exception {
+        LatencyTracker tracker = new LatencyTracker();
+        InetAddress node = InetAddress.getByName("127.0.0.1");
+        assertEquals(0, tracker.average(node));
+
+        tracker.estimate(node).record(800);
+        assertEquals(800, tracker.average(node));
+        assertEquals(1600, tracker.percentile95(node));
+    }
+
+    @Test
+    public void shouldMoveAverageTowardsNewLatencies() throws Exception {
+        LatencyTracker tracker = new LatencyTracker();
+        InetAddress node = InetAddress.getByName("127.0.0.1");
+        LatencyTracker.Estimate estimate = tracker.estimate(node);
+        assertSame(estimate, tracker.estimate(node));
+
+        estimate.record(800);
+        estimate.record(1600);
+        assertEquals(900, estimate.average());
+        assertEquals(1900, estimate.percentile95());
+    }
+
+    @Test
+    public void shouldCapVeryLongLatencies() throws Exception {
+        LatencyTracker.Estimate estimate = new LatencyTracker.Estimate();
+        estimate.record(Long.MAX_VALUE);
+        assertEquals(0xFFFFFFFFL, estimate.average());
+        estimate.record(0);
+        assertTrue(estimate.average() > 0);
+    }
+
+    @Test
+    public void shouldDropEstimateOfRemovedNode() throws Exception {
+        LatencyTracker tracker = new LatencyTracker();
+        InetAddress node = InetAddress.getByName("127.0.0.1");
+        tracker.estimate(node).record(800);
+
+        tracker.remove(node);
+        assertEquals(0, tracker.average(node));
+    }
+}
@@ -64,22 +64,22 @@ public class CouchbaseNodeTest {
 
     @Test
     public void shouldBeDisconnectedIfNoServicesRegisteredOnConnect() {
-        CouchbaseNode node = new CouchbaseNode(host, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, environment, null, null);
         assertEquals(LifecycleState.DISCONNECTED, node.connect().toBlocking().single());
     }
 
     @Test
     public void shouldBeEqualOnSameInetAddr() throws Exception {
-        CouchbaseNode node1 = new CouchbaseNode(InetAddress.getByName("1.2.3.4"), environment, null);
-        CouchbaseNode node2 = new CouchbaseNode(InetAddress.getByName("1.2.3.4"), environment, null);
+        CouchbaseNode node1 = new CouchbaseNode(InetAddress.getByName("1.2.3.4"), environment, null, null);
+        CouchbaseNode node2 = new CouchbaseNode(InetAddress.getByName("1.2.3.4"), environment, null, null);
         assertEquals(node1, node2);
         assertEquals(node1.hashCode(), node2.hashCode());
     }
 
     @Test
     public void shouldNotBeEqualOnDifferentInetAddr() throws Exception {
-        CouchbaseNode node1 = new CouchbaseNode(InetAddress.getByName("1.2.3.4"), environment, null);
-        CouchbaseNode node2 = new CouchbaseNode(InetAddress.getByName("2.3.4.5"), environment, null);
+        CouchbaseNode node1 = new CouchbaseNode(InetAddress.getByName("1.2.3.4"), environment, null, null);
+        CouchbaseNode node2 = new CouchbaseNode(InetAddress.getByName("2.3.4.5"), environment, null, null);
         assertNotEquals(node1, node2);
     }
 
@@ -92,7 +92,7 @@ public class CouchbaseNodeTest {
         when(registryMock.services()).thenReturn(Arrays.asList(service1Mock, service2Mock));
         when(service1Mock.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
         when(service2Mock.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
 
         assertEquals(LifecycleState.CONNECTED, node.connect().toBlocking().single());
     }
@@ -106,7 +106,7 @@ public class CouchbaseNodeTest {
         when(registryMock.services()).thenReturn(Arrays.asList(service1Mock, service2Mock));
         when(service1Mock.connect()).thenReturn(Observable.just(LifecycleState.CONNECTED));
         when(service2Mock.connect()).thenReturn(Observable.just(LifecycleState.CONNECTING));
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
 
         assertEquals(LifecycleState.DEGRADED, node.connect().toBlocking().single());
     }
@@ -120,7 +120,7 @@ public class CouchbaseNodeTest {
         when(registryMock.services()).thenReturn(Arrays.asList(service1Mock, service2Mock));
         when(service1Mock.connect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
         when(service2Mock.connect()).thenReturn(Observable.just(LifecycleState.CONNECTING));
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
 
         assertEquals(LifecycleState.CONNECTING, node.connect().toBlocking().single());
     }
@@ -133,7 +133,7 @@ public class CouchbaseNodeTest {
         when(registryMock.services()).thenReturn(Arrays.asList(service1Mock, service2Mock));
         when(service1Mock.connect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
         when(service2Mock.connect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
 
         assertEquals(LifecycleState.DISCONNECTED, node.connect().toBlocking().single());
     }
@@ -152,7 +152,7 @@ public class CouchbaseNodeTest {
         BehaviorSubject<LifecycleState> states2 = BehaviorSubject.create();
         when(service1Mock.states()).thenReturn(states1);
         when(service2Mock.states()).thenReturn(states2);
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
 
         Observable<LifecycleState> disconnect = node.disconnect();
         states1.onNext(LifecycleState.DISCONNECTING);
@@ -168,7 +168,7 @@ public class CouchbaseNodeTest {
         when(registryMock.services()).thenReturn(Arrays.asList(service1Mock, service2Mock));
         when(service1Mock.disconnect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
         when(service2Mock.disconnect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
 
         assertEquals(LifecycleState.DISCONNECTED, node.disconnect().toBlocking().single());
     }
@@ -176,7 +176,7 @@ public class CouchbaseNodeTest {
     @Test
     public void shouldRegisterGlobalService() {
         ServiceRegistry registryMock = mock(ServiceRegistry.class);
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
         Service registered = node.addService(new AddServiceRequest(ServiceType.CONFIG, null, null, 0, host))
             .toBlocking().single();
 
@@ -187,7 +187,7 @@ public class CouchbaseNodeTest {
     @Test
     public void shouldRegisterLocalService() {
         ServiceRegistry registryMock = mock(ServiceRegistry.class);
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
         Service registered = node.addService(new AddServiceRequest(ServiceType.BINARY, "bucket", null, 0, host))
             .toBlocking().single();
 
@@ -200,7 +200,7 @@ public class CouchbaseNodeTest {
         ServiceRegistry registryMock = mock(ServiceRegistry.class);
         Service serviceMock = mock(Service.class);
         when(registryMock.serviceBy(ServiceType.CONFIG, null)).thenReturn(serviceMock);
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
 
         node.removeService(new RemoveServiceRequest(ServiceType.CONFIG, null, host))
             .toBlocking().single();
@@ -213,7 +213,7 @@ public class CouchbaseNodeTest {
         Service serviceMock = mock(Service.class);
         when(registryMock.serviceBy(ServiceType.BINARY, "bucket")).thenReturn(serviceMock);
         when(serviceMock.states()).thenReturn(Observable.<LifecycleState>empty());
-        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null);
+        CouchbaseNode node = new CouchbaseNode(host, registryMock, environment, null, null);
 
         node.removeService(new RemoveServiceRequest(ServiceType.BINARY, "bucket", host))
             .toBlocking().single();
@@ -25,19 +25,26 @@ import com.couchbase.client.core.config.ClusterConfig;
 import com.couchbase.client.core.config.CouchbaseBucketConfig;
 import com.couchbase.client.core.config.DefaultNodeInfo;
 import com.couchbase.client.core.config.NodeInfo;
+import com.couchbase.client.core.message.kv.AnyReplicaGetRequest;
+import com.couchbase.client.core.message.kv.BulkGetRequest;
 import com.couchbase.client.core.message.kv.GetBucketConfigRequest;
 import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.metrics.LatencyTracker;
 import com.couchbase.client.core.node.Node;
 import com.couchbase.client.core.state.LifecycleState;
+import io.netty.util.CharsetUtil;
 import org.junit.Test;
 import java.net.InetAddress;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.CRC32;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -68,6 +75,7 @@ public class KeyValueLocatorTest {
         CouchbaseBucketConfig bucketMock = mock(CouchbaseBucketConfig.class);
         when(getRequestMock.bucket()).thenReturn("bucket");
         when(getRequestMock.key()).thenReturn("key");
+        when(getRequestMock.keyBytes()).thenReturn("key".getBytes(CharsetUtil.UTF_8));
         when(configMock.bucketConfig("bucket")).thenReturn(bucketMock);
         when(bucketMock.nodes()).thenReturn(Arrays.asList(nodeInfo1, nodeInfo2));
         when(bucketMock.numberOfPartitions()).thenReturn(1024);
@@ -98,4 +106,126 @@ public class KeyValueLocatorTest {
         assertEquals(node2Mock.hostname(), foundNodes[0].hostname());
     }
 
+    @Test
+    public void shouldHashLikeCrc32OverUtf8Bytes() throws Exception {
+        String[] keys = { "", "key", "user::1234", "\u00fcber", "\u20ac\u0800\uffff", "\ud83d\ude00", "\ud800bad" };
+        for (String key : keys) {
+            CRC32 crc32 = new CRC32();
+            crc32.update(key.getBytes("UTF-8"));
+            assertEquals(key, crc32.getValue(), KeyValueLocator.crc32(key.getBytes("UTF-8")));
+        }
+    }
+
+    @Test
+    public void shouldReuseNodeArraysUntilNodesChange() throws Exception {
+        KeyValueLocator locator = new KeyValueLocator();
+
+        NodeInfo nodeInfo1 = new DefaultNodeInfo("foo", "192.168.56.101:11210", Collections.EMPTY_MAP);
+        ClusterConfig configMock = mock(ClusterConfig.class);
+        Node node1Mock = mock(Node.class);
+        when(node1Mock.hostname()).thenReturn(InetAddress.getByName("192.168.56.101"));
+        Set<Node> nodes = new HashSet<Node>(Collections.singletonList(node1Mock));
+        CouchbaseBucketConfig bucketMock = mock(CouchbaseBucketConfig.class);
+        when(configMock.bucketConfig("bucket")).thenReturn(bucketMock);
+        when(bucketMock.nodes()).thenReturn(Collections.singletonList(nodeInfo1));
+        when(bucketMock.numberOfPartitions()).thenReturn(1024);
+
+        Node[] first = locator.locate(new GetRequest("key1", "bucket"), nodes, configMock);
+        Node[] second = locator.locate(new GetRequest("key2", "bucket"), nodes, configMock);
+        assertEquals(node1Mock, first[0]);
+        assertSame(first, second);
+
+        Node node2Mock = mock(Node.class);
+        when(node2Mock.hostname()).thenReturn(InetAddress.getByName("192.168.56.101"));
+        nodes.remove(node1Mock);
+        nodes.add(node2Mock);
+        locator.nodesChanged();
+
+        Node[] third = locator.locate(new GetRequest("key1", "bucket"), nodes, configMock);
+        assertEquals(node2Mock, third[0]);
+    }
+
+    @Test
+    public void shouldRouteAvailablePartitionsOfPartialCluster() throws Exception {
+        Locator locator = new KeyValueLocator();
+
+        NodeInfo nodeInfo1 = new DefaultNodeInfo("foo", "192.168.56.101:11210", Collections.EMPTY_MAP);
+        NodeInfo nodeInfo2 = new DefaultNodeInfo("foo", "192.168.56.102:11210", Collections.EMPTY_MAP);
+        ClusterConfig configMock = mock(ClusterConfig.class);
+        Node node1Mock = mock(Node.class);
+        when(node1Mock.hostname()).thenReturn(InetAddress.getByName("192.168.56.101"));
+        Set<Node> nodes = new HashSet<Node>(Collections.singletonList(node1Mock));
+        CouchbaseBucketConfig bucketMock = mock(CouchbaseBucketConfig.class);
+        when(configMock.bucketConfig("bucket")).thenReturn(bucketMock);
+        when(bucketMock.nodes()).thenReturn(Arrays.asList(nodeInfo1, nodeInfo2));
+        when(bucketMock.numberOfPartitions()).thenReturn(1024);
+        when(bucketMock.nodeIndexForMaster(656)).thenReturn((short) 1);
+
+        Node[] missing = locator.locate(new GetRequest("key", "bucket"), nodes, configMock);
+        assertEquals(0, missing.length);
+
+        Node[] found = locator.locate(new GetRequest("key1", "bucket"), nodes, configMock);
+        assertEquals(node1Mock, found[0]);
+    }
+
+    @Test
+    public void shouldGroupBulkGetKeysByNode() throws Exception {
+        KeyValueLocator locator = new KeyValueLocator();
+
+        NodeInfo nodeInfo1 = new DefaultNodeInfo("foo", "192.168.56.101:11210", Collections.EMPTY_MAP);
+        NodeInfo nodeInfo2 = new DefaultNodeInfo("foo", "192.168.56.102:11210", Collections.EMPTY_MAP);
+        ClusterConfig configMock = mock(ClusterConfig.class);
+        Node node1Mock = mock(Node.class);
+        when(node1Mock.hostname()).thenReturn(InetAddress.getByName("192.168.56.101"));
+        Set<Node> nodes = new HashSet<Node>(Collections.singletonList(node1Mock));
+        CouchbaseBucketConfig bucketMock = mock(CouchbaseBucketConfig.class);
+        when(configMock.bucketConfig("bucket")).thenReturn(bucketMock);
+        when(bucketMock.nodes()).thenReturn(Arrays.asList(nodeInfo1, nodeInfo2));
+        when(bucketMock.numberOfPartitions()).thenReturn(1024);
+        when(bucketMock.nodeIndexForMaster(656)).thenReturn((short) 1);
+
+        BulkGetRequest request = new BulkGetRequest(Arrays.asList("key1", "key", "key2"), "bucket");
+        Map<Node, int[]> grouped = locator.locate(request, nodes, configMock);
+
+        assertEquals(2, grouped.size());
+        assertEquals(Arrays.toString(new int[] {0, 2}), Arrays.toString(grouped.get(node1Mock)));
+        assertEquals(Arrays.toString(new int[] {1}), Arrays.toString(grouped.get(null)));
+        assertEquals(656, request.partition(1));
+    }
+
+    @Test
+    public void shouldOrderCopiesByLatency() throws Exception {
+        InetAddress address1 = InetAddress.getByName("192.168.56.101");
+        InetAddress address2 = InetAddress.getByName("192.168.56.102");
+        LatencyTracker latencies = new LatencyTracker();
+        latencies.estimate(address1).record(5000000);
+        latencies.estimate(address2).record(1000000);
+        KeyValueLocator locator = new KeyValueLocator(latencies);
+
+        NodeInfo nodeInfo1 = new DefaultNodeInfo("foo", "192.168.56.101:11210", Collections.EMPTY_MAP);
+        NodeInfo nodeInfo2 = new DefaultNodeInfo("foo", "192.168.56.102:11210", Collections.EMPTY_MAP);
+        ClusterConfig configMock = mock(ClusterConfig.class);
+        Node node1Mock = mock(Node.class);
+        when(node1Mock.hostname()).thenReturn(address1);
+        when(node1Mock.isState(LifecycleState.CONNECTED)).thenReturn(true);
+        Node node2Mock = mock(Node.class);
+        when(node2Mock.hostname()).thenReturn(address2);
+        when(node2Mock.isState(LifecycleState.CONNECTED)).thenReturn(true);
+        Set<Node> nodes = new LinkedHashSet<Node>(Arrays.asList(node1Mock, node2Mock));
+        CouchbaseBucketConfig bucketMock = mock(CouchbaseBucketConfig.class);
+        when(configMock.bucketConfig("bucket")).thenReturn(bucketMock);
+        when(bucketMock.nodes()).thenReturn(Arrays.asList(nodeInfo1, nodeInfo2));
+        when(bucketMock.numberOfPartitions()).thenReturn(1024);
+        when(bucketMock.numberOfReplicas()).thenReturn(1);
+        when(bucketMock.nodeIndexForMaster(656)).thenReturn((short) 0);
+        when(bucketMock.nodeIndexForReplica(656, 0)).thenReturn((short) 1);
+
+        AnyReplicaGetRequest request = new AnyReplicaGetRequest("key", "bucket", false);
+        assertEquals(Arrays.toString(new short[] {1, 0}),
+            Arrays.toString(locator.locateCopies(request, nodes, configMock)));
+
+        when(node2Mock.isState(LifecycleState.CONNECTED)).thenReturn(false);
+        assertEquals(Arrays.toString(new short[] {0}),
+            Arrays.toString(locator.locateCopies(request, nodes, configMock)));
+    }
 }
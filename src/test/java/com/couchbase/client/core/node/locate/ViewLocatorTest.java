@@ -110,17 +110,40 @@ public class ViewLocatorTest {
         when(node2Mock.hostname()).thenReturn(InetAddress.getByName("192.168.56.102"));
         nodes.addAll(Arrays.asList(node1Mock, node2Mock));
 
-        Node[] located = locator.locate(request, nodes, configMock);
-        assertEquals(0, located.length);
+        for (int i = 0; i < 3; i++) {
+            Node[] located = locator.locate(request, nodes, configMock);
+            assertEquals(1, located.length);
+            assertEquals(InetAddress.getByName("192.168.56.102"), located[0].hostname());
+        }
+    }
 
-        located = locator.locate(request, nodes, configMock);
-        assertEquals(1, located.length);
-        InetAddress foundSecond = located[0].hostname();
+    @Test
+    public void shouldPickUpAddedNodeWhenSignaled() throws Exception {
+        ViewLocator locator = new ViewLocator();
 
-        located = locator.locate(request, nodes, configMock);
-        assertEquals(0, located.length);
+        ViewQueryRequest request = mock(ViewQueryRequest.class);
+        when(request.bucket()).thenReturn("default");
+        ClusterConfig configMock = mock(ClusterConfig.class);
+        CouchbaseBucketConfig bucketConfigMock = mock(CouchbaseBucketConfig.class);
+        when(bucketConfigMock.hasPrimaryPartitionsOnNode(any(InetAddress.class))).thenReturn(true);
+        when(configMock.bucketConfig("default")).thenReturn(bucketConfigMock);
+        Set<Node> nodes = new LinkedHashSet<Node>();
+        Node node1Mock = mock(Node.class);
+        when(node1Mock.hostname()).thenReturn(InetAddress.getByName("192.168.56.101"));
+        Node node2Mock = mock(Node.class);
+        when(node2Mock.hostname()).thenReturn(InetAddress.getByName("192.168.56.102"));
+        nodes.add(node1Mock);
+
+        assertEquals(node1Mock, locator.locate(request, nodes, configMock)[0]);
+        assertEquals(node1Mock, locator.locate(request, nodes, configMock)[0]);
+
+        nodes.add(node2Mock);
+        locator.nodesChanged();
 
-        assertEquals(foundSecond, InetAddress.getByName("192.168.56.102"));
+        Set<Node> found = new HashSet<Node>();
+        found.add(locator.locate(request, nodes, configMock)[0]);
+        found.add(locator.locate(request, nodes, configMock)[0]);
+        assertEquals(nodes, found);
     }
 
     @Test
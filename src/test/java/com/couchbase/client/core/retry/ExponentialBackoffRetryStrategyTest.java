@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.retry;
+
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.message.kv.GetRequest;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the functionality of the {@link ExponentialBackoffRetryStrategy}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class ExponentialBackoffRetryStrategyTest {
+
+    @Test
+    public void shouldDoubleDelayWithJitterUpToMax() {
+        RetryStrategy strategy = ExponentialBackoffRetryStrategy.builder()
+            .minDelay(100, TimeUnit.MICROSECONDS)
+            .maxDelay(1, TimeUnit.MILLISECONDS)
+            .build();
+        CouchbaseRequest request = new GetRequest("key", "bucket");
+
+        long[] upperBounds = new long[] { 100, 200, 400, 800, 1000, 1000 };
+        for (long upper : upperBounds) {
+            request.incrementRetryCount();
+            long delay = strategy.retryDelay(request, RetryReason.NOT_MY_VBUCKET);
+            assertTrue("Delay " + delay + " above " + upper, delay <= upper);
+            assertTrue("Delay " + delay + " below " + upper / 2, delay >= upper / 2);
+        }
+    }
+
+    @Test
+    public void shouldGiveUpAfterMaxAttempts() {
+        RetryStrategy strategy = ExponentialBackoffRetryStrategy.builder().maxAttempts(2).build();
+        CouchbaseRequest request = new GetRequest("key", "bucket");
+
+        request.incrementRetryCount();
+        assertTrue(strategy.retryDelay(request, RetryReason.NODE_NOT_AVAILABLE) > 0);
+        request.incrementRetryCount();
+        assertTrue(strategy.retryDelay(request, RetryReason.NODE_NOT_AVAILABLE) > 0);
+        request.incrementRetryCount();
+        assertEquals(RetryStrategy.NO_RETRY, strategy.retryDelay(request, RetryReason.NODE_NOT_AVAILABLE));
+    }
+
+    @Test
+    public void shouldGiveUpAfterMaxDuration() {
+        RetryStrategy strategy = ExponentialBackoffRetryStrategy.builder()
+            .minDelay(1, TimeUnit.SECONDS)
+            .maxDelay(1, TimeUnit.SECONDS)
+            .maxDuration(100, TimeUnit.MILLISECONDS)
+            .build();
+        CouchbaseRequest request = new GetRequest("key", "bucket");
+
+        request.incrementRetryCount();
+        assertEquals(RetryStrategy.NO_RETRY, strategy.retryDelay(request, RetryReason.CHANNEL_NOT_WRITABLE));
+    }
+}
@@ -23,22 +23,34 @@ package com.couchbase.client.core.service;
 
 import com.couchbase.client.core.ResponseEvent;
 import com.couchbase.client.core.endpoint.Endpoint;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.message.internal.SignalFlush;
 import com.couchbase.client.core.service.strategies.SelectionStrategy;
 import com.couchbase.client.core.env.CoreEnvironment;
 import com.couchbase.client.core.env.DefaultCoreEnvironment;
 import com.couchbase.client.core.state.LifecycleState;
 import com.lmax.disruptor.RingBuffer;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import rx.Observable;
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
 import rx.subjects.BehaviorSubject;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -171,6 +183,131 @@ public class AbstractServiceTest {
 
     }
 
+    @Test
+    public void shouldOpenEndpointIfAllAreBusy() {
+        Endpoint busy = connectedEndpoint(1);
+        Endpoint additional = connectedEndpoint(0);
+        Service.EndpointFactory factory = new DummyService.DummyEndpointFactory(
+            Arrays.asList(busy, additional).iterator());
+        SelectionStrategy strategy = mock(SelectionStrategy.class);
+        when(strategy.select(any(CouchbaseRequest.class), any(Endpoint[].class))).thenReturn(busy);
+        Service service = new DummyService(hostname, bucket, password, port, environment, 1, 2, strategy, factory);
+        service.connect().toBlocking().single();
+
+        CouchbaseRequest request = mock(CouchbaseRequest.class);
+        service.send(request);
+        service.send(request);
+
+        verify(busy, times(2)).send(request);
+        verify(additional, times(1)).connect();
+        service.disconnect().toBlocking().single();
+    }
+
+    @Test
+    public void shouldNotOpenEndpointIfOneIsIdle() {
+        Endpoint busy = connectedEndpoint(1);
+        Endpoint idle = connectedEndpoint(0);
+        Endpoint additional = connectedEndpoint(0);
+        Service.EndpointFactory factory = new DummyService.DummyEndpointFactory(
+            Arrays.asList(busy, idle, additional).iterator());
+        SelectionStrategy strategy = mock(SelectionStrategy.class);
+        when(strategy.select(any(CouchbaseRequest.class), any(Endpoint[].class))).thenReturn(busy);
+        Service service = new DummyService(hostname, bucket, password, port, environment, 2, 3, strategy, factory);
+        service.connect().toBlocking().single();
+
+        service.send(mock(CouchbaseRequest.class));
+
+        verify(additional, never()).connect();
+        service.disconnect().toBlocking().single();
+    }
+
+    @Test
+    public void shouldCloseIdleAdditionalEndpoint() throws Exception {
+        CoreEnvironment env = mock(CoreEnvironment.class);
+        when(env.endpointIdleTime()).thenReturn(10L);
+        when(env.scheduler()).thenReturn(Schedulers.computation());
+        Endpoint busy = connectedEndpoint(1);
+        Endpoint additional = connectedEndpoint(0);
+        Service.EndpointFactory factory = new DummyService.DummyEndpointFactory(
+            Arrays.asList(busy, additional).iterator());
+        SelectionStrategy strategy = mock(SelectionStrategy.class);
+        when(strategy.select(any(CouchbaseRequest.class), any(Endpoint[].class))).thenReturn(busy);
+        Service service = new DummyService(hostname, bucket, password, port, env, 1, 2, strategy, factory);
+        service.connect().toBlocking().single();
+
+        service.send(mock(CouchbaseRequest.class));
+        verify(additional).connect();
+
+        verify(additional, timeout(1000)).disconnect();
+        verify(busy, never()).disconnect();
+        service.disconnect().toBlocking().single();
+    }
+
+    @Test
+    public void shouldDisconnectIdleEndpointOnlyOnceDrained() throws Exception {
+        TestScheduler scheduler = Schedulers.test();
+        CoreEnvironment env = mock(CoreEnvironment.class);
+        when(env.endpointIdleTime()).thenReturn(10L);
+        when(env.scheduler()).thenReturn(scheduler);
+        Endpoint busy = connectedEndpoint(1);
+        Endpoint additional = connectedEndpoint(0);
+        Service.EndpointFactory factory = new DummyService.DummyEndpointFactory(
+            Arrays.asList(busy, additional).iterator());
+        SelectionStrategy strategy = mock(SelectionStrategy.class);
+        when(strategy.select(any(CouchbaseRequest.class), any(Endpoint[].class))).thenReturn(busy);
+        Service service = new DummyService(hostname, bucket, password, port, env, 1, 2, strategy, factory);
+        service.connect().toBlocking().single();
+        service.send(mock(CouchbaseRequest.class));
+        verify(additional).connect();
+
+        Thread.sleep(20);
+        scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+        verify(additional, never()).disconnect();
+
+        // a request picked the endpoint right before it got removed
+        when(additional.outstandingRequests()).thenReturn(1);
+        scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+        verify(additional, never()).disconnect();
+
+        when(additional.outstandingRequests()).thenReturn(0);
+        scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+        verify(additional).disconnect();
+        verify(busy, never()).disconnect();
+        service.disconnect().toBlocking().single();
+    }
+
+    @Test
+    public void shouldForwardFlushToAllEndpoints() throws Exception {
+        CoreEnvironment env = mock(CoreEnvironment.class);
+        Endpoint first = connectedEndpoint(0);
+        Endpoint second = connectedEndpoint(0);
+        Service.EndpointFactory factory = new DummyService.DummyEndpointFactory(
+            Arrays.asList(first, second).iterator());
+        SelectionStrategy strategy = mock(SelectionStrategy.class);
+        Service service = new DummyService(hostname, bucket, password, port, env, 2, 2, strategy, factory);
+
+        service.send(SignalFlush.INSTANCE);
+        verify(first).send(SignalFlush.INSTANCE);
+        verify(second).send(SignalFlush.INSTANCE);
+    }
+
+    private static Endpoint connectedEndpoint(final int outstanding) {
+        final BehaviorSubject<LifecycleState> states = BehaviorSubject.create(LifecycleState.DISCONNECTED);
+        Endpoint endpoint = mock(Endpoint.class);
+        when(endpoint.states()).thenReturn(states);
+        when(endpoint.isState(LifecycleState.CONNECTED)).thenReturn(true);
+        when(endpoint.connect()).thenAnswer(new Answer<Observable<LifecycleState>>() {
+            @Override
+            public Observable<LifecycleState> answer(final InvocationOnMock invocation) {
+                states.onNext(LifecycleState.CONNECTED);
+                return Observable.just(LifecycleState.CONNECTED);
+            }
+        });
+        when(endpoint.disconnect()).thenReturn(Observable.just(LifecycleState.DISCONNECTED));
+        when(endpoint.outstandingRequests()).thenReturn(outstanding);
+        return endpoint;
+    }
+
     static class DummyService extends AbstractService {
 
         DummyService(String hostname, String bucket, String password, int port, CoreEnvironment env, int numEndpoints,
@@ -178,6 +315,11 @@ public class AbstractServiceTest {
             super(hostname, bucket, password, port, env, numEndpoints, strategy, null, factory);
         }
 
+        DummyService(String hostname, String bucket, String password, int port, CoreEnvironment env,
+            int minEndpoints, int maxEndpoints, SelectionStrategy strategy, EndpointFactory factory) {
+            super(hostname, bucket, password, port, env, minEndpoints, maxEndpoints, strategy, null, factory);
+        }
+
         @Override
         public ServiceType type() {
             return ServiceType.BINARY;
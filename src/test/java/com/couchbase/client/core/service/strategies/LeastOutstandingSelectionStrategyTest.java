@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.service.strategies;
+
+import com.couchbase.client.core.endpoint.Endpoint;
+import com.couchbase.client.core.message.CouchbaseRequest;
+import com.couchbase.client.core.state.LifecycleState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies the functionality of the {@link LeastOutstandingSelectionStrategy}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class LeastOutstandingSelectionStrategyTest {
+
+    @Test
+    public void shouldSelectLeastLoadedEndpoint() {
+        SelectionStrategy strategy = new LeastOutstandingSelectionStrategy();
+
+        Endpoint idle = endpoint(true, 0);
+        Endpoint busy = endpoint(true, 100);
+        Endpoint[] endpoints = new Endpoint[] {idle, busy};
+
+        for (int i = 0; i < 1000; i++) {
+            assertSame(idle, strategy.select(mock(CouchbaseRequest.class), endpoints));
+        }
+    }
+
+    @Test
+    public void shouldDispatchToFreeEndpoint() {
+        SelectionStrategy strategy = new LeastOutstandingSelectionStrategy();
+
+        Endpoint free = endpoint(true, 0);
+        Endpoint[] endpoints = new Endpoint[8];
+        for (int i = 0; i < endpoints.length - 1; i++) {
+            endpoints[i] = endpoint(true, 1);
+        }
+        endpoints[endpoints.length - 1] = free;
+
+        for (int i = 0; i < 1000; i++) {
+            assertSame(free, strategy.select(mock(CouchbaseRequest.class), endpoints));
+        }
+    }
+
+    @Test
+    public void shouldSkipNotConnectedEndpoints() {
+        SelectionStrategy strategy = new LeastOutstandingSelectionStrategy();
+
+        Endpoint connected = endpoint(true, 100);
+        Endpoint[] endpoints = new Endpoint[] {endpoint(false, 0), endpoint(false, 0), connected, endpoint(false, 0)};
+
+        for (int i = 0; i < 1000; i++) {
+            assertSame(connected, strategy.select(mock(CouchbaseRequest.class), endpoints));
+        }
+    }
+
+    @Test
+    public void shouldReturnNullIfNoneConnected() {
+        SelectionStrategy strategy = new LeastOutstandingSelectionStrategy();
+
+        assertNull(strategy.select(mock(CouchbaseRequest.class), new Endpoint[] {endpoint(false, 0)}));
+        assertNull(strategy.select(mock(CouchbaseRequest.class),
+            new Endpoint[] {endpoint(false, 0), endpoint(false, 0), endpoint(false, 0)}));
+    }
+
+    @Test
+    public void shouldReturnIfEmptyArrayPassedIn() {
+        SelectionStrategy strategy = new LeastOutstandingSelectionStrategy();
+
+        assertNull(strategy.select(mock(CouchbaseRequest.class), new Endpoint[] {}));
+    }
+
+    private static Endpoint endpoint(final boolean connected, final int outstanding) {
+        Endpoint endpoint = mock(Endpoint.class);
+        when(endpoint.isState(LifecycleState.CONNECTED)).thenReturn(connected);
+        when(endpoint.outstandingRequests()).thenReturn(outstanding);
+        return endpoint;
+    }
+}
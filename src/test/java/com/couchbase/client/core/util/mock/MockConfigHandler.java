@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util.mock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.handler.codec.base64.Base64;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+
+/**
+ * Serves the (terse and verbose) bucket config endpoints of port 8091, including the streaming variants.
+ *
+ * Streaming connections are kept open and receive every new config revision, separated by four newlines just
+ * like the server does.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+class MockConfigHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    static final String STREAM_SEPARATOR = "\n\n\n\n";
+
+    private static final String[] CONFIG_PATHS = { "/pools/default/b/", "/pools/default/buckets/" };
+    private static final String[] STREAMING_PATHS = { "/pools/default/bs/", "/pools/default/bucketsStreaming/" };
+
+    private final MockCouchbaseCluster cluster;
+    private final ChannelGroup streams;
+
+    MockConfigHandler(final MockCouchbaseCluster cluster, final ChannelGroup streams) {
+        this.cluster = cluster;
+        this.streams = streams;
+    }
+
+    @Override
+    protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest request) throws Exception {
+        String uri = request.getUri();
+        if (!authenticated(request)) {
+            respond(ctx, HttpResponseStatus.UNAUTHORIZED, "");
+        } else if (matches(uri, CONFIG_PATHS)) {
+            respond(ctx, HttpResponseStatus.OK, cluster.config());
+        } else if (matches(uri, STREAMING_PATHS)) {
+            HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            HttpHeaders.setTransferEncodingChunked(response);
+            ctx.write(response);
+            ctx.writeAndFlush(new DefaultHttpContent(
+                Unpooled.copiedBuffer(cluster.config() + STREAM_SEPARATOR, CharsetUtil.UTF_8)));
+            streams.add(ctx.channel());
+        } else {
+            respond(ctx, HttpResponseStatus.NOT_FOUND, "");
+        }
+    }
+
+    private boolean matches(final String uri, final String[] paths) {
+        for (String path : paths) {
+            if (uri.equals(path + cluster.bucket())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean authenticated(final FullHttpRequest request) {
+        String header = request.headers().get(HttpHeaders.Names.AUTHORIZATION);
+        if (header == null || !header.startsWith("Basic ")) {
+            return cluster.password().isEmpty();
+        }
+        ByteBuf encoded = Unpooled.copiedBuffer(header.substring(6), CharsetUtil.UTF_8);
+        ByteBuf decoded = Base64.decode(encoded);
+        String credentials = decoded.toString(CharsetUtil.UTF_8);
+        encoded.release();
+        decoded.release();
+        return credentials.equals(cluster.bucket() + ":" + cluster.password());
+    }
+
+    private static void respond(final ChannelHandlerContext ctx, final HttpResponseStatus status,
+        final String body) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+            Unpooled.copiedBuffer(body, CharsetUtil.UTF_8));
+        HttpHeaders.setContentLength(response, response.content().readableBytes());
+        ctx.writeAndFlush(response);
+    }
+}
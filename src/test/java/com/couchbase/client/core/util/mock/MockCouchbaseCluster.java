@@ -0,0 +1,403 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util.mock;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process stand-in for a Couchbase cluster serving a single couchbase bucket.
+ *
+ * Every node binds the binary memcache protocol (carrier) and the terse HTTP config endpoints on its own loopback
+ * address (127.0.0.1, 127.0.0.2, ...), so the core sees them as distinct nodes while all of them share the same
+ * ports. If no ports are set, the first node binds ephemeral ports and the others follow. Point the environment
+ * at them through {@link #carrierPort()} and {@link #configPort()} and seed with {@link #seedNode()}.
+ *
+ * Documents are stored once for the whole cluster, but every node only answers for the partitions it owns
+ * and replies with "not my vbucket" (including the current config) otherwise, which makes it possible to test
+ * rebalance behavior through {@link #movePartition(int, int)}. Latency and additional "not my vbucket" responses
+ * can be injected at runtime, so the mock can be used from both unit tests and benchmarks.
+ *
+ * Note that on some platforms (like OSX) only 127.0.0.1 is bound to the loopback interface by default, so
+ * clusters with more than one node need additional aliases to be configured there.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class MockCouchbaseCluster {
+
+    public static final int NODES = 1;
+    public static final int PARTITIONS = 64;
+    public static final int REPLICAS = 0;
+    public static final String BUCKET = "default";
+    public static final String PASSWORD = "";
+
+    private final String bucket;
+    private final String password;
+    private final int numPartitions;
+    private final int numReplicas;
+    private final short[][] partitionMap;
+    private final List<MockNode> nodes;
+    private final ConcurrentMap<String, MockDocument> documents;
+    private final AtomicLong revision;
+    private final AtomicLong casCounter;
+    private final AtomicInteger notMyVbucketInjections;
+
+    private volatile long latency;
+    private volatile String config;
+    private volatile int carrierPort;
+    private volatile int configPort;
+    private EventLoopGroup group;
+
+    protected MockCouchbaseCluster(final Builder builder) {
+        bucket = builder.bucket;
+        password = builder.password;
+        numPartitions = builder.partitions;
+        numReplicas = builder.replicas;
+        carrierPort = builder.carrierPort;
+        configPort = builder.configPort;
+
+        documents = new ConcurrentHashMap<String, MockDocument>();
+        revision = new AtomicLong(1);
+        casCounter = new AtomicLong(System.currentTimeMillis());
+        notMyVbucketInjections = new AtomicInteger();
+
+        nodes = new ArrayList<MockNode>(builder.nodes);
+        for (int i = 0; i < builder.nodes; i++) {
+            nodes.add(new MockNode(this, i, nodeAddress(i)));
+        }
+
+        partitionMap = new short[numPartitions][numReplicas + 1];
+        for (int p = 0; p < numPartitions; p++) {
+            for (int r = 0; r <= numReplicas; r++) {
+                partitionMap[p][r] = (short) (r < nodes.size() ? (p + r) % nodes.size() : -1);
+            }
+        }
+        config = renderConfig();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a single node cluster with default settings.
+     *
+     * @return the (not yet started) cluster.
+     */
+    public static MockCouchbaseCluster create() {
+        return builder().build();
+    }
+
+    /**
+     * Binds all nodes, blocking until they accept connections.
+     *
+     * @return this cluster for chaining purposes.
+     */
+    public synchronized MockCouchbaseCluster start() {
+        if (group != null) {
+            return this;
+        }
+        group = new NioEventLoopGroup(0, new DefaultThreadFactory("cb-mock", true));
+        try {
+            for (MockNode node : nodes) {
+                node.start(group, carrierPort, configPort);
+                carrierPort = node.carrierPort();
+                configPort = node.configPort();
+            }
+        } catch (Exception ex) {
+            stop();
+            throw new IllegalStateException("Could not start the mock cluster.", ex);
+        }
+        synchronized (partitionMap) {
+            config = renderConfig();
+        }
+        return this;
+    }
+
+    /**
+     * Closes all connections and unbinds all nodes.
+     */
+    public synchronized void stop() {
+        if (group == null) {
+            return;
+        }
+        for (MockNode node : nodes) {
+            node.stop();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        group = null;
+    }
+
+    public String bucket() {
+        return bucket;
+    }
+
+    public String password() {
+        return password;
+    }
+
+    public int numNodes() {
+        return nodes.size();
+    }
+
+    public int numPartitions() {
+        return numPartitions;
+    }
+
+    public int carrierPort() {
+        return carrierPort;
+    }
+
+    public int configPort() {
+        return configPort;
+    }
+
+    /**
+     * The hostname to seed the core with.
+     *
+     * @return the address of the first node.
+     */
+    public String seedNode() {
+        return nodes.get(0).address().getHostAddress();
+    }
+
+    /**
+     * Returns the loopback address of the node with the given index.
+     *
+     * @param index the index of the node.
+     * @return the address of the node.
+     */
+    public static InetAddress nodeAddress(final int index) {
+        try {
+            return InetAddress.getByAddress(new byte[] { 127, 0, 0, (byte) (index + 1) });
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Could not build loopback address for node " + index, e);
+        }
+    }
+
+    /**
+     * Delays every response of every node by the given amount, zero disables it again.
+     *
+     * @param delay the delay.
+     * @param unit the unit of the delay.
+     */
+    public void latency(final long delay, final TimeUnit unit) {
+        latency = unit.toNanos(delay);
+    }
+
+    long latency() {
+        return latency;
+    }
+
+    /**
+     * Answers the next key based operations with "not my vbucket", regardless of the partition owner.
+     *
+     * @param count the number of responses to inject.
+     */
+    public void injectNotMyVbucket(final int count) {
+        notMyVbucketInjections.addAndGet(count);
+    }
+
+    boolean consumeNotMyVbucketInjection() {
+        while (true) {
+            int remaining = notMyVbucketInjections.get();
+            if (remaining <= 0) {
+                return false;
+            }
+            if (notMyVbucketInjections.compareAndSet(remaining, remaining - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Moves the active copy of a partition to a different node, like a rebalance would.
+     *
+     * The revision of the config is increased and pushed to all streaming config connections. The former
+     * owner starts to reply with "not my vbucket" immediately.
+     *
+     * @param partition the partition to move.
+     * @param nodeIndex the index of the new owner.
+     */
+    public void movePartition(final int partition, final int nodeIndex) {
+        if (nodeIndex < 0 || nodeIndex >= nodes.size()) {
+            throw new IllegalArgumentException("Unknown node index " + nodeIndex);
+        }
+        synchronized (partitionMap) {
+            partitionMap[partition][0] = (short) nodeIndex;
+            revision.incrementAndGet();
+            config = renderConfig();
+        }
+        for (MockNode node : nodes) {
+            node.pushConfig(config);
+        }
+    }
+
+    /**
+     * Checks if the node is the owner of the given copy of the partition.
+     *
+     * @param nodeIndex the index of the node.
+     * @param partition the partition.
+     * @param replica the replica number, 0 for the active copy.
+     * @return true if the node serves it.
+     */
+    boolean owns(final int nodeIndex, final int partition, final int replica) {
+        if (partition < 0 || partition >= numPartitions || replica > numReplicas) {
+            return false;
+        }
+        synchronized (partitionMap) {
+            if (replica > 0) {
+                for (int r = 1; r <= numReplicas; r++) {
+                    if (partitionMap[partition][r] == nodeIndex) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return partitionMap[partition][0] == nodeIndex;
+        }
+    }
+
+    /**
+     * Returns the current terse bucket configuration.
+     *
+     * @return the config as JSON.
+     */
+    public String config() {
+        return config;
+    }
+
+    ConcurrentMap<String, MockDocument> documents() {
+        return documents;
+    }
+
+    long nextCas() {
+        return casCounter.incrementAndGet();
+    }
+
+    private String renderConfig() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"rev\":").append(revision.get()).append(",\"name\":\"").append(bucket)
+            .append("\",\"nodeLocator\":\"vbucket\",\"uri\":\"/pools/default/buckets/").append(bucket)
+            .append("\",\"streamingUri\":\"/pools/default/bucketsStreaming/").append(bucket)
+            .append("\",\"nodes\":[");
+        for (int i = 0; i < nodes.size(); i++) {
+            json.append(i == 0 ? "" : ",")
+                .append("{\"hostname\":\"").append(nodes.get(i).address().getHostAddress()).append(':')
+                .append(configPort).append("\",\"ports\":{\"direct\":").append(carrierPort).append("}}");
+        }
+        json.append("],\"vBucketServerMap\":{\"hashAlgorithm\":\"CRC\",\"numReplicas\":").append(numReplicas)
+            .append(",\"serverList\":[");
+        for (int i = 0; i < nodes.size(); i++) {
+            json.append(i == 0 ? "\"" : ",\"").append(nodes.get(i).address().getHostAddress()).append(':')
+                .append(carrierPort).append('"');
+        }
+        json.append("],\"vBucketMap\":[");
+        for (int p = 0; p < numPartitions; p++) {
+            json.append(p == 0 ? "[" : ",[");
+            for (int r = 0; r <= numReplicas; r++) {
+                json.append(r == 0 ? "" : ",").append(partitionMap[p][r]);
+            }
+            json.append(']');
+        }
+        return json.append("]}}").toString();
+    }
+
+    public static class Builder {
+
+        private int nodes = NODES;
+        private int partitions = PARTITIONS;
+        private int replicas = REPLICAS;
+        private String bucket = BUCKET;
+        private String password = PASSWORD;
+        private int carrierPort;
+        private int configPort;
+
+        protected Builder() {
+        }
+
+        public Builder nodes(final int nodes) {
+            if (nodes < 1 || nodes > 254) {
+                throw new IllegalArgumentException("Number of nodes must be between 1 and 254.");
+            }
+            this.nodes = nodes;
+            return this;
+        }
+
+        /**
+         * Sets the number of partitions, which needs to be a power of two.
+         */
+        public Builder partitions(final int partitions) {
+            if (partitions < 1 || Integer.bitCount(partitions) != 1) {
+                throw new IllegalArgumentException("Number of partitions must be a power of two.");
+            }
+            this.partitions = partitions;
+            return this;
+        }
+
+        public Builder replicas(final int replicas) {
+            if (replicas < 0 || replicas > 3) {
+                throw new IllegalArgumentException("Number of replicas must be between 0 and 3.");
+            }
+            this.replicas = replicas;
+            return this;
+        }
+
+        public Builder bucket(final String bucket, final String password) {
+            this.bucket = bucket;
+            this.password = password == null ? "" : password;
+            return this;
+        }
+
+        /**
+         * Sets the binary memcache port of all nodes, 0 picks an ephemeral one.
+         */
+        public Builder carrierPort(final int carrierPort) {
+            this.carrierPort = carrierPort;
+            return this;
+        }
+
+        /**
+         * Sets the HTTP config port of all nodes, 0 picks an ephemeral one.
+         */
+        public Builder configPort(final int configPort) {
+            this.configPort = configPort;
+            return this;
+        }
+
+        public MockCouchbaseCluster build() {
+            return new MockCouchbaseCluster(this);
+        }
+    }
+}
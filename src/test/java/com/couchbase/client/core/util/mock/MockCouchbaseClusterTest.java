@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util.mock;
+
+import com.couchbase.client.core.ClusterFacade;
+import com.couchbase.client.core.CouchbaseCore;
+import com.couchbase.client.core.RequestTimeoutException;
+import com.couchbase.client.core.env.CoreEnvironment;
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.cluster.DisconnectRequest;
+import com.couchbase.client.core.message.cluster.OpenBucketRequest;
+import com.couchbase.client.core.message.cluster.OpenBucketResponse;
+import com.couchbase.client.core.message.cluster.SeedNodesRequest;
+import com.couchbase.client.core.message.cluster.SeedNodesResponse;
+import com.couchbase.client.core.message.kv.CounterRequest;
+import com.couchbase.client.core.message.kv.CounterResponse;
+import com.couchbase.client.core.message.kv.GetRequest;
+import com.couchbase.client.core.message.kv.GetResponse;
+import com.couchbase.client.core.message.kv.InsertRequest;
+import com.couchbase.client.core.message.kv.InsertResponse;
+import com.couchbase.client.core.message.kv.ReplicaGetRequest;
+import com.couchbase.client.core.message.kv.UpsertRequest;
+import com.couchbase.client.core.message.kv.UpsertResponse;
+import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import rx.Observable;
+import rx.functions.Func1;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies that the core can bootstrap against and operate on a {@link MockCouchbaseCluster}.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+public class MockCouchbaseClusterTest {
+
+    private static final String BUCKET = "default";
+    private static final String PASSWORD = "secret";
+
+    private static MockCouchbaseCluster mock;
+    private static CoreEnvironment env;
+    private static ClusterFacade cluster;
+
+    @BeforeClass
+    public static void connect() {
+        mock = MockCouchbaseCluster.builder()
+            .nodes(2)
+            .replicas(1)
+            .bucket(BUCKET, PASSWORD)
+            .build()
+            .start();
+        env = DefaultCoreEnvironment.builder()
+            .bootstrapCarrierDirectPort(mock.carrierPort())
+            .bootstrapHttpDirectPort(mock.configPort())
+            .requestShards(2)
+            .build();
+        cluster = new CouchbaseCore(env);
+        cluster.<SeedNodesResponse>send(new SeedNodesRequest(mock.seedNode())).flatMap(
+            new Func1<SeedNodesResponse, Observable<OpenBucketResponse>>() {
+                @Override
+                public Observable<OpenBucketResponse> call(SeedNodesResponse response) {
+                    return cluster.send(new OpenBucketRequest(BUCKET, PASSWORD));
+                }
+            }
+        ).timeout(10, TimeUnit.SECONDS).toBlocking().single();
+    }
+
+    @AfterClass
+    public static void disconnect() {
+        cluster.send(new DisconnectRequest()).toBlocking().first();
+        mock.stop();
+    }
+
+    @Test
+    public void shouldUpsertAndGetDocument() {
+        upsert("mock-upsert", "Hello World");
+
+        GetResponse response = cluster.<GetResponse>send(new GetRequest("mock-upsert", BUCKET)).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, response.status());
+        assertEquals("Hello World", response.content().toString(CharsetUtil.UTF_8));
+        ReferenceCountUtil.releaseLater(response.content());
+    }
+
+    @Test
+    public void shouldFailInsertIfExists() {
+        upsert("mock-insert", "value");
+
+        InsertResponse response = cluster.<InsertResponse>send(new InsertRequest("mock-insert",
+            Unpooled.copiedBuffer("other", CharsetUtil.UTF_8), BUCKET)).toBlocking().single();
+        assertEquals(ResponseStatus.EXISTS, response.status());
+        ReferenceCountUtil.releaseLater(response.content());
+    }
+
+    @Test
+    public void shouldIncrementCounter() {
+        CounterResponse first = cluster.<CounterResponse>send(
+            new CounterRequest("mock-counter", 10, 5, 0, BUCKET)).toBlocking().single();
+        assertEquals(10, first.value());
+
+        CounterResponse second = cluster.<CounterResponse>send(
+            new CounterRequest("mock-counter", 10, 5, 0, BUCKET)).toBlocking().single();
+        assertEquals(15, second.value());
+    }
+
+    @Test
+    public void shouldGetFromReplica() {
+        upsert("mock-replica", "replicated");
+
+        GetResponse response = cluster.<GetResponse>send(new ReplicaGetRequest("mock-replica", BUCKET, (short) 1))
+            .toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, response.status());
+        assertEquals("replicated", response.content().toString(CharsetUtil.UTF_8));
+        ReferenceCountUtil.releaseLater(response.content());
+    }
+
+    @Test
+    public void shouldRetryOnInjectedNotMyVbucket() {
+        upsert("mock-nmvb", "retried");
+        mock.injectNotMyVbucket(3);
+
+        GetResponse response = cluster.<GetResponse>send(new GetRequest("mock-nmvb", BUCKET)).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, response.status());
+        assertEquals("retried", response.content().toString(CharsetUtil.UTF_8));
+        ReferenceCountUtil.releaseLater(response.content());
+    }
+
+    @Test
+    public void shouldFollowMovedPartitions() {
+        for (int i = 0; i < mock.numPartitions(); i++) {
+            mock.movePartition(i, 1);
+        }
+
+        upsert("mock-moved", "moved");
+        GetResponse response = cluster.<GetResponse>send(new GetRequest("mock-moved", BUCKET)).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, response.status());
+        assertTrue(mock.config().contains("\"rev\":" + (mock.numPartitions() + 1)));
+        ReferenceCountUtil.releaseLater(response.content());
+    }
+
+    @Test(expected = RequestTimeoutException.class)
+    public void shouldFailRequestAfterDeadline() throws Exception {
+        upsert("mock-deadline", "slow");
+        mock.latency(200, TimeUnit.MILLISECONDS);
+        try {
+            cluster.<GetResponse>send(new GetRequest("mock-deadline", BUCKET).timeout(20, TimeUnit.MILLISECONDS))
+                .toBlocking().single();
+        } finally {
+            // let the late response drain before other tests use the connection again
+            Thread.sleep(300);
+            mock.latency(0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void upsert(final String key, final String value) {
+        UpsertResponse response = cluster.<UpsertResponse>send(new UpsertRequest(key,
+            Unpooled.copiedBuffer(value, CharsetUtil.UTF_8), BUCKET)).toBlocking().single();
+        assertEquals(ResponseStatus.SUCCESS, response.status());
+        ReferenceCountUtil.releaseLater(response.content());
+    }
+}
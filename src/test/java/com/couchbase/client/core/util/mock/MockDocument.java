@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util.mock;
+
+/**
+ * Immutable representation of a document stored in a {@link MockCouchbaseCluster}.
+ *
+ * Mutations always create a new instance which is swapped in atomically, so concurrent connections never see
+ * a partially applied update.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+final class MockDocument {
+
+    private final byte[] content;
+    private final int flags;
+    private final long cas;
+    private final long expiresAt;
+    private final long lockedUntil;
+
+    MockDocument(final byte[] content, final int flags, final long cas, final long expiresAt,
+        final long lockedUntil) {
+        this.content = content;
+        this.flags = flags;
+        this.cas = cas;
+        this.expiresAt = expiresAt;
+        this.lockedUntil = lockedUntil;
+    }
+
+    public byte[] content() {
+        return content;
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    public long cas() {
+        return cas;
+    }
+
+    public long expiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Checks if the document is expired at the given point in time.
+     *
+     * @param now the current time in milliseconds.
+     * @return true if expired.
+     */
+    public boolean expired(final long now) {
+        return expiresAt > 0 && expiresAt <= now;
+    }
+
+    /**
+     * Checks if the document is locked at the given point in time.
+     *
+     * @param now the current time in milliseconds.
+     * @return true if locked.
+     */
+    public boolean locked(final long now) {
+        return lockedUntil > now;
+    }
+
+    public MockDocument withContent(final byte[] content, final long cas) {
+        return new MockDocument(content, flags, cas, expiresAt, 0);
+    }
+
+    public MockDocument withExpiry(final long expiresAt) {
+        return new MockDocument(content, flags, cas, expiresAt, lockedUntil);
+    }
+
+    public MockDocument withLock(final long cas, final long lockedUntil) {
+        return new MockDocument(content, flags, cas, expiresAt, lockedUntil);
+    }
+
+    public MockDocument unlocked() {
+        return new MockDocument(content, flags, cas, expiresAt, 0);
+    }
+}
@@ -0,0 +1,509 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util.mock;
+
+import com.couchbase.client.core.endpoint.kv.KeyValueHandler;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheOpcodes;
+import com.couchbase.client.deps.io.netty.handler.codec.memcache.binary.BinaryMemcacheResponseStatus;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.CharsetUtil;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers binary memcache frames for a single connection of a {@link MockNode}.
+ *
+ * Only the opcodes the {@link KeyValueHandler} and the SASL PLAIN handshake make use of are supported, everything
+ * else is answered with "unknown command". Frames arrive complete (the pipeline splits them by the body length
+ * of the header), so they are parsed in place without an intermediate message representation.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+class MockKeyValueHandler extends ChannelInboundHandlerAdapter {
+
+    static final int HEADER_SIZE = 24;
+    static final byte MAGIC_RESPONSE = (byte) 0x81;
+
+    static final byte OP_SASL_LIST_MECHS = 0x20;
+    static final byte OP_SASL_AUTH = 0x21;
+    static final byte OP_SASL_STEP = 0x22;
+
+    static final short STATUS_NOT_MY_VBUCKET = KeyValueHandler.STATUS_NOT_MY_VBUCKET;
+    static final short STATUS_TEMPORARY_FAILURE = 0x86;
+
+    private static final long DEFAULT_LOCK_TIME = TimeUnit.SECONDS.toMillis(15);
+    private static final long MAX_LOCK_TIME = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_RELATIVE_EXPIRY = TimeUnit.DAYS.toSeconds(30);
+    private static final int NO_INITIAL = 0xffffffff;
+    private static final byte OBSERVE_FOUND = 0x01;
+    private static final byte OBSERVE_NOT_FOUND = (byte) 0x80;
+
+    private final MockCouchbaseCluster cluster;
+    private final ConcurrentMap<String, MockDocument> documents;
+    private final int nodeIndex;
+    private boolean authenticated;
+
+    MockKeyValueHandler(final MockCouchbaseCluster cluster, final int nodeIndex) {
+        this.cluster = cluster;
+        this.documents = cluster.documents();
+        this.nodeIndex = nodeIndex;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        ByteBuf frame = (ByteBuf) msg;
+        try {
+            handle(ctx, frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private void handle(final ChannelHandlerContext ctx, final ByteBuf frame) {
+        int base = frame.readerIndex();
+        byte opcode = frame.getByte(base + 1);
+        int keyLength = frame.getUnsignedShort(base + 2);
+        int extrasLength = frame.getUnsignedByte(base + 4);
+        int partition = frame.getUnsignedShort(base + 6);
+        int bodyLength = frame.getInt(base + 8);
+        int opaque = frame.getInt(base + 12);
+        long cas = frame.getLong(base + 16);
+
+        ByteBuf extras = frame.slice(base + HEADER_SIZE, extrasLength);
+        String key = frame.toString(base + HEADER_SIZE + extrasLength, keyLength, CharsetUtil.UTF_8);
+        int valueOffset = base + HEADER_SIZE + extrasLength + keyLength;
+        ByteBuf value = frame.slice(valueOffset, bodyLength - extrasLength - keyLength);
+        Frame request = new Frame(ctx, opcode, opaque);
+
+        switch (opcode) {
+            case OP_SASL_LIST_MECHS:
+                request.respond(BinaryMemcacheResponseStatus.SUCCESS, 0, null, utf8("PLAIN"));
+                return;
+            case OP_SASL_AUTH:
+            case OP_SASL_STEP:
+                handleAuth(request, key, value);
+                return;
+            default:
+                break;
+        }
+
+        if (!authenticated) {
+            request.respond(BinaryMemcacheResponseStatus.AUTH_ERROR, 0, null, null);
+            return;
+        }
+
+        if (opcode == KeyValueHandler.OP_GET_BUCKET_CONFIG) {
+            request.respond(BinaryMemcacheResponseStatus.SUCCESS, 0, null, utf8(cluster.config()));
+            return;
+        }
+
+        if (opcode == KeyValueHandler.OP_OBSERVE) {
+            partition = value.getUnsignedShort(0);
+            key = value.toString(4, value.getUnsignedShort(2), CharsetUtil.UTF_8);
+        }
+        boolean served = opcode == KeyValueHandler.OP_GET_REPLICA
+            ? cluster.owns(nodeIndex, partition, 1)
+            : cluster.owns(nodeIndex, partition, 0)
+                || (opcode == KeyValueHandler.OP_OBSERVE && cluster.owns(nodeIndex, partition, 1));
+        if (!served || cluster.consumeNotMyVbucketInjection()) {
+            request.respond(STATUS_NOT_MY_VBUCKET, 0, null, utf8(cluster.config()));
+            return;
+        }
+
+        switch (opcode) {
+            case BinaryMemcacheOpcodes.GET:
+            case KeyValueHandler.OP_GET_REPLICA:
+            case BinaryMemcacheOpcodes.GAT:
+            case KeyValueHandler.OP_GET_AND_LOCK:
+            case BinaryMemcacheOpcodes.TOUCH:
+                handleGet(request, key, extras);
+                break;
+            case BinaryMemcacheOpcodes.SET:
+            case BinaryMemcacheOpcodes.ADD:
+            case BinaryMemcacheOpcodes.REPLACE:
+                handleStore(request, key, extras, value, cas);
+                break;
+            case BinaryMemcacheOpcodes.APPEND:
+            case BinaryMemcacheOpcodes.PREPEND:
+                handleConcat(request, key, value, cas);
+                break;
+            case BinaryMemcacheOpcodes.DELETE:
+                handleDelete(request, key, cas);
+                break;
+            case BinaryMemcacheOpcodes.INCREMENT:
+            case BinaryMemcacheOpcodes.DECREMENT:
+                handleCounter(request, key, extras);
+                break;
+            case KeyValueHandler.OP_UNLOCK:
+                handleUnlock(request, key, cas);
+                break;
+            case KeyValueHandler.OP_OBSERVE:
+                handleObserve(request, key, value);
+                break;
+            default:
+                request.respond(BinaryMemcacheResponseStatus.UNKNOWN_COMMAND, 0, null, null);
+        }
+    }
+
+    /**
+     * Handles SASL PLAIN, where the payload is "authzid \0 user \0 password".
+     */
+    private void handleAuth(final Frame request, final String mechanism, final ByteBuf payload) {
+        if (!"PLAIN".equals(mechanism)) {
+            request.respond(BinaryMemcacheResponseStatus.AUTH_ERROR, 0, null, null);
+            return;
+        }
+        String[] parts = payload.toString(CharsetUtil.UTF_8).split("\0", -1);
+        authenticated = parts.length == 3
+            && parts[1].equals(cluster.bucket())
+            && parts[2].equals(cluster.password());
+        if (authenticated) {
+            request.respond(BinaryMemcacheResponseStatus.SUCCESS, 0, null, utf8("Authenticated"));
+        } else {
+            request.respond(BinaryMemcacheResponseStatus.AUTH_ERROR, 0, null, utf8("Auth failure"));
+        }
+    }
+
+    /**
+     * Handles all reads, as well as touch which shares the side effects of get and touch.
+     */
+    private void handleGet(final Frame request, final String key, final ByteBuf extras) {
+        long now = System.currentTimeMillis();
+        MockDocument next;
+        while (true) {
+            MockDocument current = live(key, now);
+            if (current == null) {
+                request.respond(BinaryMemcacheResponseStatus.KEY_ENOENT, 0, null, null);
+                return;
+            }
+            switch (request.opcode) {
+                case BinaryMemcacheOpcodes.GAT:
+                case BinaryMemcacheOpcodes.TOUCH:
+                    next = current.withExpiry(expiresAt(extras.getInt(0), now));
+                    break;
+                case KeyValueHandler.OP_GET_AND_LOCK:
+                    if (current.locked(now)) {
+                        request.respond(STATUS_TEMPORARY_FAILURE, 0, null, null);
+                        return;
+                    }
+                    long lockTime = extrasOrZero(extras) * 1000L;
+                    lockTime = lockTime <= 0 || lockTime > MAX_LOCK_TIME ? DEFAULT_LOCK_TIME : lockTime;
+                    next = current.withLock(cluster.nextCas(), now + lockTime);
+                    break;
+                default:
+                    next = current;
+            }
+            if (next == current || documents.replace(key, current, next)) {
+                break;
+            }
+        }
+
+        if (request.opcode == BinaryMemcacheOpcodes.TOUCH) {
+            request.respond(BinaryMemcacheResponseStatus.SUCCESS, next.cas(), null, null);
+        } else {
+            long cas = next.locked(now) && request.opcode != KeyValueHandler.OP_GET_AND_LOCK ? -1 : next.cas();
+            ByteBuf flags = Unpooled.buffer(4).writeInt(next.flags());
+            request.respond(BinaryMemcacheResponseStatus.SUCCESS, cas, flags, Unpooled.wrappedBuffer(next.content()));
+        }
+    }
+
+    private void handleStore(final Frame request, final String key, final ByteBuf extras, final ByteBuf value,
+        final long cas) {
+        long now = System.currentTimeMillis();
+        byte[] content = bytes(value);
+        MockDocument next;
+        while (true) {
+            MockDocument current = live(key, now);
+            short status = checkMutation(request.opcode == BinaryMemcacheOpcodes.ADD, current, cas, now);
+            if (status == BinaryMemcacheResponseStatus.SUCCESS && current == null
+                && request.opcode == BinaryMemcacheOpcodes.REPLACE) {
+                status = BinaryMemcacheResponseStatus.KEY_ENOENT;
+            }
+            if (status != BinaryMemcacheResponseStatus.SUCCESS) {
+                request.respond(status, 0, null, null);
+                return;
+            }
+            next = new MockDocument(content, extras.getInt(0), cluster.nextCas(), expiresAt(extras.getInt(4), now), 0);
+            if (swap(key, current, next)) {
+                break;
+            }
+        }
+        request.respond(BinaryMemcacheResponseStatus.SUCCESS, next.cas(), null, null);
+    }
+
+    private void handleConcat(final Frame request, final String key, final ByteBuf value, final long cas) {
+        long now = System.currentTimeMillis();
+        byte[] fragment = bytes(value);
+        MockDocument next;
+        while (true) {
+            MockDocument current = live(key, now);
+            if (current == null) {
+                request.respond(BinaryMemcacheResponseStatus.NOT_STORED, 0, null, null);
+                return;
+            }
+            short status = checkMutation(false, current, cas, now);
+            if (status != BinaryMemcacheResponseStatus.SUCCESS) {
+                request.respond(status, 0, null, null);
+                return;
+            }
+            byte[] existing = current.content();
+            byte[] combined = new byte[existing.length + fragment.length];
+            boolean append = request.opcode == BinaryMemcacheOpcodes.APPEND;
+            System.arraycopy(existing, 0, combined, append ? 0 : fragment.length, existing.length);
+            System.arraycopy(fragment, 0, combined, append ? existing.length : 0, fragment.length);
+            next = current.withContent(combined, cluster.nextCas());
+            if (documents.replace(key, current, next)) {
+                break;
+            }
+        }
+        request.respond(BinaryMemcacheResponseStatus.SUCCESS, next.cas(), null, null);
+    }
+
+    private void handleDelete(final Frame request, final String key, final long cas) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            MockDocument current = live(key, now);
+            if (current == null) {
+                request.respond(BinaryMemcacheResponseStatus.KEY_ENOENT, 0, null, null);
+                return;
+            }
+            short status = checkMutation(false, current, cas, now);
+            if (status != BinaryMemcacheResponseStatus.SUCCESS) {
+                request.respond(status, 0, null, null);
+                return;
+            }
+            if (documents.remove(key, current)) {
+                break;
+            }
+        }
+        request.respond(BinaryMemcacheResponseStatus.SUCCESS, cluster.nextCas(), null, null);
+    }
+
+    /**
+     * Handles incr and decr, where counters are stored as their decimal string representation.
+     */
+    private void handleCounter(final Frame request, final String key, final ByteBuf extras) {
+        long now = System.currentTimeMillis();
+        long delta = extras.getLong(0);
+        long initial = extras.getLong(8);
+        int expiry = extras.getInt(16);
+        long result;
+        MockDocument next;
+        while (true) {
+            MockDocument current = live(key, now);
+            if (current == null) {
+                if (expiry == NO_INITIAL) {
+                    request.respond(BinaryMemcacheResponseStatus.KEY_ENOENT, 0, null, null);
+                    return;
+                }
+                result = initial;
+                next = new MockDocument(utf8Bytes(Long.toString(result)), 0, cluster.nextCas(),
+                    expiresAt(expiry, now), 0);
+            } else {
+                if (current.locked(now)) {
+                    request.respond(STATUS_TEMPORARY_FAILURE, 0, null, null);
+                    return;
+                }
+                long stored;
+                try {
+                    stored = Long.parseLong(new String(current.content(), CharsetUtil.UTF_8).trim());
+                } catch (NumberFormatException ex) {
+                    request.respond(BinaryMemcacheResponseStatus.DELTA_BADVAL, 0, null, null);
+                    return;
+                }
+                if (request.opcode == BinaryMemcacheOpcodes.INCREMENT) {
+                    result = stored + delta;
+                } else {
+                    result = delta > stored ? 0 : stored - delta;
+                }
+                next = current.withContent(utf8Bytes(Long.toString(result)), cluster.nextCas());
+            }
+            if (swap(key, current, next)) {
+                break;
+            }
+        }
+        request.respond(BinaryMemcacheResponseStatus.SUCCESS, next.cas(), null, Unpooled.buffer(8).writeLong(result));
+    }
+
+    private void handleUnlock(final Frame request, final String key, final long cas) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            MockDocument current = live(key, now);
+            if (current == null) {
+                request.respond(BinaryMemcacheResponseStatus.KEY_ENOENT, 0, null, null);
+                return;
+            }
+            if (!current.locked(now) || current.cas() != cas) {
+                request.respond(STATUS_TEMPORARY_FAILURE, 0, null, null);
+                return;
+            }
+            if (documents.replace(key, current, current.unlocked())) {
+                break;
+            }
+        }
+        request.respond(BinaryMemcacheResponseStatus.SUCCESS, 0, null, null);
+    }
+
+    /**
+     * Handles observe for a single key, the mock does not distinguish between persisted and not persisted.
+     */
+    private void handleObserve(final Frame request, final String key, final ByteBuf value) {
+        MockDocument current = live(key, System.currentTimeMillis());
+        int keyLength = value.getUnsignedShort(2);
+        ByteBuf content = Unpooled.buffer(4 + keyLength + 9)
+            .writeBytes(value, 0, 4 + keyLength)
+            .writeByte(current == null ? OBSERVE_NOT_FOUND : OBSERVE_FOUND)
+            .writeLong(current == null ? 0 : current.cas());
+        request.respond(BinaryMemcacheResponseStatus.SUCCESS, 0, null, content);
+    }
+
+    /**
+     * Checks the preconditions shared by all mutations.
+     *
+     * @return the status to respond with if the mutation is not allowed, SUCCESS otherwise.
+     */
+    private static short checkMutation(final boolean insert, final MockDocument current, final long cas,
+        final long now) {
+        if (current == null) {
+            return cas == 0 ? BinaryMemcacheResponseStatus.SUCCESS : BinaryMemcacheResponseStatus.KEY_ENOENT;
+        }
+        if (insert) {
+            return BinaryMemcacheResponseStatus.KEY_EEXISTS;
+        }
+        if (current.locked(now)) {
+            return current.cas() == cas ? BinaryMemcacheResponseStatus.SUCCESS : STATUS_TEMPORARY_FAILURE;
+        }
+        return cas == 0 || cas == current.cas()
+            ? BinaryMemcacheResponseStatus.SUCCESS : BinaryMemcacheResponseStatus.KEY_EEXISTS;
+    }
+
+    /**
+     * Returns the document if it exists and is not expired, lazily removing expired ones.
+     */
+    private MockDocument live(final String key, final long now) {
+        MockDocument document = documents.get(key);
+        if (document != null && document.expired(now)) {
+            documents.remove(key, document);
+            return null;
+        }
+        return document;
+    }
+
+    private boolean swap(final String key, final MockDocument current, final MockDocument next) {
+        if (current == null) {
+            return documents.putIfAbsent(key, next) == null;
+        }
+        return documents.replace(key, current, next);
+    }
+
+    /**
+     * Converts the protocol expiry (relative seconds up to 30 days, absolute unix time above) into millis.
+     */
+    private static long expiresAt(final int expiry, final long now) {
+        long seconds = expiry & 0xffffffffL;
+        if (seconds == 0) {
+            return 0;
+        }
+        return seconds <= MAX_RELATIVE_EXPIRY ? now + seconds * 1000 : seconds * 1000;
+    }
+
+    private static int extrasOrZero(final ByteBuf extras) {
+        return extras.readableBytes() >= 4 ? extras.getInt(0) : 0;
+    }
+
+    private static byte[] bytes(final ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+
+    private static byte[] utf8Bytes(final String value) {
+        return value.getBytes(CharsetUtil.UTF_8);
+    }
+
+    private static ByteBuf utf8(final String value) {
+        return Unpooled.wrappedBuffer(utf8Bytes(value));
+    }
+
+    /**
+     * The header fields of an incoming frame needed to answer it.
+     */
+    private final class Frame {
+
+        private final ChannelHandlerContext ctx;
+        private final byte opcode;
+        private final int opaque;
+
+        Frame(final ChannelHandlerContext ctx, final byte opcode, final int opaque) {
+            this.ctx = ctx;
+            this.opcode = opcode;
+            this.opaque = opaque;
+        }
+
+        /**
+         * Writes the response frame, delayed by the latency configured on the cluster.
+         *
+         * @param status the response status.
+         * @param cas the cas value.
+         * @param extras the extras, may be null.
+         * @param value the value, may be null.
+         */
+        void respond(final short status, final long cas, final ByteBuf extras, final ByteBuf value) {
+            int extrasLength = extras == null ? 0 : extras.readableBytes();
+            int valueLength = value == null ? 0 : value.readableBytes();
+            final ByteBuf response = ctx.alloc().buffer(HEADER_SIZE + extrasLength + valueLength);
+            response
+                .writeByte(MAGIC_RESPONSE)
+                .writeByte(opcode)
+                .writeShort(0)
+                .writeByte(extrasLength)
+                .writeByte(0)
+                .writeShort(status)
+                .writeInt(extrasLength + valueLength)
+                .writeInt(opaque)
+                .writeLong(cas);
+            if (extras != null) {
+                response.writeBytes(extras);
+            }
+            if (value != null) {
+                response.writeBytes(value);
+            }
+
+            long latency = cluster.latency();
+            if (latency > 0) {
+                ctx.executor().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        ctx.writeAndFlush(response);
+                    }
+                }, latency, TimeUnit.NANOSECONDS);
+            } else {
+                ctx.writeAndFlush(response);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2014 Couchbase, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+package com.couchbase.client.core.util.mock;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * A single node of the {@link MockCouchbaseCluster}, serving the carrier and the HTTP config port.
+ *
+ * @author Michael Nitschinger
+ * @since 1.1.0
+ */
+class MockNode {
+
+    /**
+     * Maximum size of a binary memcache frame accepted by the carrier port.
+     */
+    private static final int MAX_FRAME_LENGTH = 21 * 1024 * 1024;
+
+    private final MockCouchbaseCluster cluster;
+    private final int index;
+    private final InetAddress address;
+    private final ChannelGroup channels;
+    private final ChannelGroup streams;
+
+    private volatile Channel carrierChannel;
+    private volatile Channel configChannel;
+
+    MockNode(final MockCouchbaseCluster cluster, final int index, final InetAddress address) {
+        this.cluster = cluster;
+        this.index = index;
+        this.address = address;
+        this.channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+        this.streams = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    }
+
+    void start(final EventLoopGroup group, final int carrierPort, final int configPort) throws Exception {
+        carrierChannel = new ServerBootstrap()
+            .group(group)
+            .channel(NioServerSocketChannel.class)
+            .option(ChannelOption.SO_REUSEADDR, true)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) throws Exception {
+                    channels.add(ch);
+                    ch.pipeline()
+                        .addLast(new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 8, 4, 12, 0))
+                        .addLast(new MockKeyValueHandler(cluster, index));
+                }
+            })
+            .bind(address, carrierPort).sync().channel();
+
+        configChannel = new ServerBootstrap()
+            .group(group)
+            .channel(NioServerSocketChannel.class)
+            .option(ChannelOption.SO_REUSEADDR, true)
+            .childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) throws Exception {
+                    channels.add(ch);
+                    ch.pipeline()
+                        .addLast(new HttpServerCodec())
+                        .addLast(new HttpObjectAggregator(Integer.MAX_VALUE))
+                        .addLast(new MockConfigHandler(cluster, streams));
+                }
+            })
+            .bind(address, configPort).sync().channel();
+    }
+
+    void stop() {
+        channels.close().awaitUninterruptibly();
+        if (carrierChannel != null) {
+            carrierChannel.close().awaitUninterruptibly();
+        }
+        if (configChannel != null) {
+            configChannel.close().awaitUninterruptibly();
+        }
+    }
+
+    /**
+     * Pushes a new config to all clients currently streaming configs from this node.
+     *
+     * @param config the new config.
+     */
+    void pushConfig(final String config) {
+        streams.writeAndFlush(new DefaultHttpContent(
+            Unpooled.copiedBuffer(config + MockConfigHandler.STREAM_SEPARATOR, CharsetUtil.UTF_8)));
+    }
+
+    InetAddress address() {
+        return address;
+    }
+
+    int carrierPort() {
+        return ((InetSocketAddress) carrierChannel.localAddress()).getPort();
+    }
+
+    int configPort() {
+        return ((InetSocketAddress) configChannel.localAddress()).getPort();
+    }
+}